@@ -18,6 +18,8 @@ package com.alibaba.dubbo.rpc.cluster.directory;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
@@ -31,6 +33,7 @@ import com.alibaba.dubbo.rpc.cluster.Directory;
 import com.alibaba.dubbo.rpc.cluster.Router;
 import com.alibaba.dubbo.rpc.cluster.RouterFactory;
 import com.alibaba.dubbo.rpc.cluster.router.MockInvokersSelector;
+import com.alibaba.dubbo.rpc.cluster.router.condition.ConditionRouter;
 
 /**
  * 增加router的Directory
@@ -42,6 +45,9 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
     // 日志输出
     private static final Logger logger = LoggerFactory.getLogger(AbstractDirectory.class);
 
+    // 路由结果缓存上限，超过时整体清空，防止每次返回新列表的目录使缓存无限增长
+    private static final int MAX_ROUTE_CACHE_SIZE = 1024;
+
     private final URL url ;
     
     private volatile boolean destroyed = false;
@@ -49,6 +55,11 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
     private volatile URL consumerUrl ;
     
 	private volatile List<Router> routers;
+
+    // routers中可缓存结果的前缀长度
+    private volatile int cacheableRouters;
+
+    private volatile Map<RouteKey, RouteResult> routeCache = new ConcurrentHashMap<RouteKey, RouteResult>();
     
     public AbstractDirectory(URL url) {
         this(url, null);
@@ -73,11 +84,41 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
         List<Invoker<T>> invokers = doList(invocation);
         List<Router> localRouters = this.routers; // local reference
         if (localRouters != null && localRouters.size() > 0) {
-            for (Router router: localRouters){
-                try {
-                    if (router.getUrl() == null || router.getUrl().getParameter(Constants.RUNTIME_KEY, true)) {
-                        invokers = router.route(invokers, getConsumerUrl(), invocation);
+            int from = 0;
+            int cacheable = this.cacheableRouters;
+            // 前cacheable个路由器的结果只取决于提供者列表、消费者url和mock标记，按此缓存
+            if (cacheable > 0 && invokers != null && invokers.size() > 0) {
+                Map<RouteKey, RouteResult> cache = this.routeCache;
+                RouteKey key = new RouteKey(invokers, getNeedMock(invocation));
+                URL consumer = getConsumerUrl();
+                RouteResult cached = cache.get(key);
+                if (cached != null && cached.consumer == consumer) {
+                    invokers = cached.getInvokers();
+                } else {
+                    boolean failed = false;
+                    for (int i = 0; i < cacheable; i ++) {
+                        try {
+                            invokers = route(localRouters.get(i), invokers, invocation);
+                        } catch (Throwable t) {
+                            failed = true;
+                            logger.error("Failed to execute router: " + getUrl() + ", cause: " + t.getMessage(), t);
+                        }
+                    }
+                    if (! failed) {
+                        if (invokers != null) {
+                            invokers = Collections.unmodifiableList(invokers);
+                        }
+                        if (cache.size() >= MAX_ROUTE_CACHE_SIZE) {
+                            cache.clear();
+                        }
+                        cache.put(key, new RouteResult(consumer, invokers));
                     }
+                }
+                from = cacheable;
+            }
+            for (int i = from; i < localRouters.size(); i ++) {
+                try {
+                    invokers = route(localRouters.get(i), invokers, invocation);
                 } catch (Throwable t) {
                     logger.error("Failed to execute router: " + getUrl() + ", cause: " + t.getMessage(), t);
                 }
@@ -85,7 +126,38 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
         }
         return invokers;
     }
-    
+
+    private List<Invoker<T>> route(Router router, List<Invoker<T>> invokers, Invocation invocation) {
+        if (router.getUrl() == null || router.getUrl().getParameter(Constants.RUNTIME_KEY, true)) {
+            return router.route(invokers, getConsumerUrl(), invocation);
+        }
+        return invokers;
+    }
+
+    private static String getNeedMock(Invocation invocation) {
+        Map<String, String> attachments = invocation == null ? null : invocation.getAttachments();
+        return attachments == null ? null : attachments.get(Constants.INVOCATION_NEED_MOCK);
+    }
+
+    /**
+     * 结果只取决于提供者列表、消费者url和mock标记的路由器，可以缓存其结果：
+     * 条件路由、mock选择器，以及url上声明cache=true的路由器(如只依赖invokers的脚本)。
+     */
+    private static boolean isCacheable(Router router) {
+        if (router instanceof MockInvokersSelector || router instanceof ConditionRouter) {
+            return true;
+        }
+        URL url = router.getUrl();
+        return url != null && (! url.getParameter(Constants.RUNTIME_KEY, true) || url.getParameter(Constants.CACHE_KEY, false));
+    }
+
+    /**
+     * 提供者或路由规则变更后调用，丢弃已缓存的路由结果。
+     */
+    protected void clearRouteCache() {
+        this.routeCache = new ConcurrentHashMap<RouteKey, RouteResult>();
+    }
+
     public URL getUrl() {
         return url;
     }
@@ -114,6 +186,12 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
         // append mock invoker selector
         routers.add(new MockInvokersSelector());
         Collections.sort(routers);
+        int cacheable = 0;
+        while (cacheable < routers.size() && isCacheable(routers.get(cacheable))) {
+            cacheable ++;
+        }
+        clearRouteCache();
+        this.cacheableRouters = cacheable;
     	this.routers = routers;
     }
 
@@ -123,8 +201,55 @@ public abstract class AbstractDirectory<T> implements Directory<T> {
 
     public void destroy(){
         destroyed = true;
+        clearRouteCache();
     }
 
     protected abstract List<Invoker<T>> doList(Invocation invocation) throws RpcException ;
 
+    private static final class RouteKey {
+
+        private final List<?> invokers;
+
+        private final String needMock;
+
+        RouteKey(List<?> invokers, String needMock) {
+            this.invokers = invokers;
+            this.needMock = needMock;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(invokers) * 31 + (needMock == null ? 0 : needMock.hashCode());
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (! (obj instanceof RouteKey)) {
+                return false;
+            }
+            RouteKey other = (RouteKey) obj;
+            return invokers == other.invokers
+                    && (needMock == null ? other.needMock == null : needMock.equals(other.needMock));
+        }
+
+    }
+
+    private static final class RouteResult {
+
+        private final URL consumer;
+
+        private final List<?> invokers;
+
+        RouteResult(URL consumer, List<?> invokers) {
+            this.consumer = consumer;
+            this.invokers = invokers;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> List<Invoker<T>> getInvokers() {
+            return (List<Invoker<T>>) invokers;
+        }
+
+    }
+
 }
\ No newline at end of file
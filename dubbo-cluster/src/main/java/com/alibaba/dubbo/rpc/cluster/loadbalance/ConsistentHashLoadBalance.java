@@ -15,12 +15,11 @@
  */
 package com.alibaba.dubbo.rpc.cluster.loadbalance;
 
-import java.io.UnsupportedEncodingException;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.SortedMap;
-import java.util.TreeMap;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
@@ -32,20 +31,24 @@ import com.alibaba.dubbo.rpc.Invoker;
 /**
  * ConsistentHashLoadBalance
  * 
+ * 虚拟节点用Murmur3哈希计算，环保存在有序的long数组中，选择时二分查找。
+ * 提供者集合是否变化按其中的Invoker对象判断，列表被复制不会导致重建。
+ * 
  * @author william.liangf
  */
 public class ConsistentHashLoadBalance extends AbstractLoadBalance {
 
+    public static final String NAME = "consistenthash";
+
     private final ConcurrentMap<String, ConsistentHashSelector<?>> selectors = new ConcurrentHashMap<String, ConsistentHashSelector<?>>();
 
     @SuppressWarnings("unchecked")
     @Override
     protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
         String key = invokers.get(0).getUrl().getServiceKey() + "." + invocation.getMethodName();
-        int identityHashCode = System.identityHashCode(invokers);
         ConsistentHashSelector<T> selector = (ConsistentHashSelector<T>) selectors.get(key);
-        if (selector == null || selector.getIdentityHashCode() != identityHashCode) {
-            selectors.put(key, new ConsistentHashSelector<T>(invokers, invocation.getMethodName(), identityHashCode));
+        if (selector == null || ! selector.isSelectorOf(invokers)) {
+            selectors.put(key, new ConsistentHashSelector<T>(invokers, invocation.getMethodName()));
             selector = (ConsistentHashSelector<T>) selectors.get(key);
         }
         return selector.select(invocation);
@@ -53,44 +56,62 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
 
     private static final class ConsistentHashSelector<T> {
 
-        private final TreeMap<Long, Invoker<T>> virtualInvokers;
+        // 高32位为虚拟节点哈希，低32位为invokers下标，按数值排序
+        private final long[]                    points;
+
+        private final Invoker<T>[]              virtualInvokers;
 
         private final int                       replicaNumber;
         
-        private final int                       identityHashCode;
+        // 构建时的Invoker对象集合
+        private final Set<Invoker<T>>           members;
+
+        // 最近一次确认过的列表对象，同一列表再次传入时免去逐个比较
+        private volatile List<Invoker<T>>       invokers;
         
         private final int[]                     argumentIndex;
 
-        public ConsistentHashSelector(List<Invoker<T>> invokers, String methodName, int identityHashCode) {
-            this.virtualInvokers = new TreeMap<Long, Invoker<T>>();
-            this.identityHashCode = System.identityHashCode(invokers);
+        @SuppressWarnings("unchecked")
+        public ConsistentHashSelector(List<Invoker<T>> invokers, String methodName) {
+            this.invokers = invokers;
+            this.members = Collections.newSetFromMap(new IdentityHashMap<Invoker<T>, Boolean>());
+            this.members.addAll(invokers);
             URL url = invokers.get(0).getUrl();
-            this.replicaNumber = url.getMethodParameter(methodName, "hash.nodes", 160);
+            this.replicaNumber = Math.max(1, url.getMethodParameter(methodName, "hash.nodes", 160));
             String[] index = Constants.COMMA_SPLIT_PATTERN.split(url.getMethodParameter(methodName, "hash.arguments", "0"));
             argumentIndex = new int[index.length];
             for (int i = 0; i < index.length; i ++) {
                 argumentIndex[i] = Integer.parseInt(index[i]);
             }
-            for (Invoker<T> invoker : invokers) {
-                for (int i = 0; i < replicaNumber / 4; i++) {
-                    byte[] digest = md5(invoker.getUrl().toFullString() + i);
-                    for (int h = 0; h < 4; h++) {
-                        long m = hash(digest, h);
-                        virtualInvokers.put(m, invoker);
-                    }
+            this.virtualInvokers = invokers.toArray(new Invoker[invokers.size()]);
+            this.points = new long[virtualInvokers.length * replicaNumber];
+            int p = 0;
+            for (int j = 0; j < virtualInvokers.length; j ++) {
+                String address = virtualInvokers[j].getUrl().toFullString();
+                for (int i = 0; i < replicaNumber; i++) {
+                    points[p ++] = ((long) hash(address, i) << 32) | j;
                 }
             }
+            Arrays.sort(points);
         }
 
-        public int getIdentityHashCode() {
-            return identityHashCode;
+        /**
+         * 判断传入的提供者集合是否与构建时相同，忽略顺序和列表对象本身。
+         */
+        public boolean isSelectorOf(List<Invoker<T>> invokers) {
+            if (invokers == this.invokers) {
+                return true;
+            }
+            if (invokers.size() != virtualInvokers.length || ! members.containsAll(invokers)) {
+                return false;
+            }
+            this.invokers = invokers;
+            return true;
         }
 
         public Invoker<T> select(Invocation invocation) {
             String key = toKey(invocation.getArguments());
-            byte[] digest = md5(key);
-            Invoker<T> invoker = sekectForKey(hash(digest, 0));
-            return invoker;
+            return sekectForKey(hash(key, 0));
         }
 
         private String toKey(Object[] args) {
@@ -103,47 +124,58 @@ public class ConsistentHashLoadBalance extends AbstractLoadBalance {
             return buf.toString();
         }
 
-        private Invoker<T> sekectForKey(long hash) {
-            Invoker<T> invoker;
-            Long key = hash;
-            if (!virtualInvokers.containsKey(key)) {
-                SortedMap<Long, Invoker<T>> tailMap = virtualInvokers.tailMap(key);
-                if (tailMap.isEmpty()) {
-                    key = virtualInvokers.firstKey();
+        private Invoker<T> sekectForKey(int hash) {
+            // 第一个哈希不小于hash的虚拟节点，超过末尾时回到环首
+            int low = 0;
+            int high = points.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if ((int) (points[mid] >> 32) < hash) {
+                    low = mid + 1;
                 } else {
-                    key = tailMap.firstKey();
+                    high = mid;
                 }
             }
-            invoker = virtualInvokers.get(key);
-            return invoker;
-        }
-
-        private long hash(byte[] digest, int number) {
-            return (((long) (digest[3 + number * 4] & 0xFF) << 24)
-                    | ((long) (digest[2 + number * 4] & 0xFF) << 16)
-                    | ((long) (digest[1 + number * 4] & 0xFF) << 8) 
-                    | (digest[0 + number * 4] & 0xFF)) 
-                    & 0xFFFFFFFFL;
+            if (low == points.length) {
+                low = 0;
+            }
+            return virtualInvokers[(int) points[low]];
         }
 
-        private byte[] md5(String value) {
-            MessageDigest md5;
-            try {
-                md5 = MessageDigest.getInstance("MD5");
-            } catch (NoSuchAlgorithmException e) {
-                throw new IllegalStateException(e.getMessage(), e);
+        /**
+         * Murmur3 x86_32，按UTF-16字符每两个拼成一个32位块，不需要先编码成字节。
+         */
+        private static int hash(CharSequence value, int seed) {
+            final int c1 = 0xcc9e2d51;
+            final int c2 = 0x1b873593;
+            int h = seed;
+            int length = value.length();
+            int i = 1;
+            for (; i < length; i += 2) {
+                int k = value.charAt(i - 1) | (value.charAt(i) << 16);
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                h ^= k;
+                h = Integer.rotateLeft(h, 13);
+                h = h * 5 + 0xe6546b64;
             }
-            md5.reset();
-            byte[] bytes = null;
-            try {
-                bytes = value.getBytes("UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                throw new IllegalStateException(e.getMessage(), e);
+            if ((length & 1) == 1) {
+                int k = value.charAt(length - 1);
+                k *= c1;
+                k = Integer.rotateLeft(k, 15);
+                k *= c2;
+                h ^= k;
             }
-            md5.update(bytes);
-            return md5.digest();
+            h ^= length * 2;
+            h ^= h >>> 16;
+            h *= 0x85ebca6b;
+            h ^= h >>> 13;
+            h *= 0xc2b2ae35;
+            h ^= h >>> 16;
+            return h;
         }
 
     }
 
-}
+}
\ No newline at end of file
@@ -0,0 +1,76 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.loadbalance;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcLatency;
+
+/**
+ * PeakEwmaLoadBalance
+ * 
+ * 随机选取两个提供者，取 ewma延迟 × (在途请求数 + 1) 较小者，
+ * 延迟相同时取权重较大者。延迟由LatencyFilter记录。
+ * 
+ * @see com.alibaba.dubbo.rpc.RpcLatency
+ * @see com.alibaba.dubbo.rpc.filter.LatencyFilter
+ */
+public class PeakEwmaLoadBalance extends AbstractLoadBalance {
+
+    public static final String NAME = Constants.PEAKEWMA_LOADBALANCE;
+
+    // 尚无延迟样本却已有在途请求的提供者，按该延迟计算，避免新节点被瞬间压垮
+    private static final double PENALTY = TimeUnit.SECONDS.toNanos(30);
+
+    private final Random random = new Random();
+
+    protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+        int length = invokers.size();
+        int i = random.nextInt(length);
+        int j = random.nextInt(length - 1);
+        if (j >= i) {
+            j ++;
+        }
+        Invoker<T> a = invokers.get(i);
+        Invoker<T> b = invokers.get(j);
+        String methodName = invocation.getMethodName();
+        double costA = cost(RpcLatency.getLatency(a.getUrl(), methodName));
+        double costB = cost(RpcLatency.getLatency(b.getUrl(), methodName));
+        if (costA < costB) {
+            return a;
+        }
+        if (costB < costA) {
+            return b;
+        }
+        return getWeight(b, invocation) > getWeight(a, invocation) ? b : a;
+    }
+
+    static double cost(RpcLatency latency) {
+        int active = latency.getActive();
+        double ewma = latency.getLatency();
+        if (ewma == 0 && active > 0) {
+            return PENALTY + active;
+        }
+        return ewma * (active + 1);
+    }
+
+}
@@ -15,12 +15,14 @@
  */
 package com.alibaba.dubbo.rpc.cluster.loadbalance;
 
-import java.util.LinkedHashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.utils.AtomicPositiveInteger;
 import com.alibaba.dubbo.rpc.Invocation;
@@ -28,6 +30,14 @@ import com.alibaba.dubbo.rpc.Invoker;
 
 /**
  * Round robin load balance.
+ * <p>
+ * Smooth weighted round robin as nginx does it: every pick adds each weight to the current weight
+ * of its invoker, takes the invoker with the highest current weight and lowers it by the total
+ * weight. Heavy invokers are spread over the cycle instead of being picked in bursts.
+ * <p>
+ * Current weights are kept per invoker, so a subset of the invokers (a reselect after a failure,
+ * another router path) continues their sequence instead of restarting it. Picks take no lock,
+ * concurrent picks may therefore deviate slightly from the exact smooth sequence.
  *
  * @author qian.lei
  * @author william.liangf
@@ -36,68 +46,122 @@ public class RoundRobinLoadBalance extends AbstractLoadBalance {
 
 	public static final String NAME = "roundrobin";
 
-	private final ConcurrentMap<String, AtomicPositiveInteger> sequences = new ConcurrentHashMap<String, AtomicPositiveInteger>();
+	// invokers not picked from for this long are dropped.
+	private static final int RECYCLE_PERIOD = 60000;
 
-	private static final class IntegerWrapper {
-		public IntegerWrapper(int value) {
-			this.value = value;
+	// service key -> method name -> state, looked up without building a key.
+	private final ConcurrentMap<String, ConcurrentMap<String, MethodRoundRobin>> states = new ConcurrentHashMap<String, ConcurrentMap<String, MethodRoundRobin>>();
+
+	protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+		String serviceKey = invokers.get(0).getUrl().getServiceKey();
+		ConcurrentMap<String, MethodRoundRobin> methods = states.get(serviceKey);
+		if (methods == null) {
+			states.putIfAbsent(serviceKey, new ConcurrentHashMap<String, MethodRoundRobin>());
+			methods = states.get(serviceKey);
 		}
+		String methodName = invocation.getMethodName();
+		MethodRoundRobin state = methods.get(methodName);
+		if (state == null) {
+			methods.putIfAbsent(methodName, new MethodRoundRobin());
+			state = methods.get(methodName);
+		}
+		return state.select(invokers, invocation);
+	}
 
-		private int value;
+	/**
+	 * round robin state of one service method.
+	 */
+	private final class MethodRoundRobin {
 
-		public int getValue() {
-			return value;
-		}
+		private final ConcurrentMap<Invoker<?>, WeightedRoundRobin> weights = new ConcurrentHashMap<Invoker<?>, WeightedRoundRobin>();
 
-		public void setValue(int value) {
-			this.value = value;
-		}
+		// for the case all weights are 0.
+		private final AtomicPositiveInteger sequence = new AtomicPositiveInteger();
 
-		public void decrement() {
-			this.value--;
-		}
-	}
+		private final AtomicBoolean recycling = new AtomicBoolean();
 
-	protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
-		String key = invokers.get(0).getUrl().getServiceKey() + "." + invocation.getMethodName();
-		int length = invokers.size(); // 总个数
-		int maxWeight = 0; // 最大权重
-		int minWeight = Integer.MAX_VALUE; // 最小权重
-		final LinkedHashMap<Invoker<T>, IntegerWrapper> invokerToWeightMap = new LinkedHashMap<Invoker<T>, IntegerWrapper>();
-		int weightSum = 0;
-		for (int i = 0; i < length; i++) {
-			int weight = getWeight(invokers.get(i), invocation);
-			maxWeight = Math.max(maxWeight, weight); // 累计最大权重
-			minWeight = Math.min(minWeight, weight); // 累计最小权重
-			if (weight > 0) {
-				invokerToWeightMap.put(invokers.get(i), new IntegerWrapper(weight));
-				weightSum += weight;
+		private volatile long nextRecycle = System.currentTimeMillis() + RECYCLE_PERIOD;
+
+		<T> Invoker<T> select(List<Invoker<T>> list, Invocation invocation) {
+			long now = System.currentTimeMillis();
+			int length = list.size();
+			long totalWeight = 0;
+			long maxCurrent = Long.MIN_VALUE;
+			Invoker<T> selected = null;
+			WeightedRoundRobin selectedWeight = null;
+			for (int i = 0; i < length; i++) {
+				Invoker<T> invoker = list.get(i);
+				WeightedRoundRobin weight = weights.get(invoker);
+				if (weight == null) {
+					weights.putIfAbsent(invoker, new WeightedRoundRobin(invoker, invocation));
+					weight = weights.get(invoker);
+				}
+				int w = weight.getWeight(invoker, invocation, now);
+				if (w > 0) {
+					long current = weight.current.addAndGet(w);
+					totalWeight += w;
+					if (current > maxCurrent) {
+						maxCurrent = current;
+						selected = invoker;
+						selectedWeight = weight;
+					}
+				}
 			}
+			if (now >= nextRecycle) {
+				recycle(now);
+			}
+			if (selected == null) {
+				return list.get(sequence.getAndIncrement() % length);
+			}
+			selectedWeight.current.addAndGet(- totalWeight);
+			return selected;
 		}
-		AtomicPositiveInteger sequence = sequences.get(key);
-		if (sequence == null) {
-			sequences.putIfAbsent(key, new AtomicPositiveInteger());
-			sequence = sequences.get(key);
-		}
-		int currentSequence = sequence.getAndIncrement();
-		if (maxWeight > 0 && minWeight < maxWeight) { // 权重不一样
-			int mod = currentSequence % weightSum;
-			for (int i = 0; i < maxWeight; i++) {
-				for (Map.Entry<Invoker<T>, IntegerWrapper> each : invokerToWeightMap.entrySet()) {
-					final Invoker<T> k = each.getKey();
-					final IntegerWrapper v = each.getValue();
-					if (mod == 0 && v.getValue() > 0) {
-						return k;
-					}
-					if (v.getValue() > 0) {
-						v.decrement();
-						mod--;
+
+		private void recycle(long now) {
+			if (recycling.compareAndSet(false, true)) {
+				try {
+					Iterator<WeightedRoundRobin> iterator = weights.values().iterator();
+					while (iterator.hasNext()) {
+						if (now - iterator.next().lastUpdate > RECYCLE_PERIOD) {
+							iterator.remove();
+						}
 					}
+					nextRecycle = now + RECYCLE_PERIOD;
+				} finally {
+					recycling.set(false);
 				}
 			}
 		}
-		// 取模轮循
-		return invokers.get(currentSequence % length);
 	}
 
-}
\ No newline at end of file
+	/**
+	 * current weight of one invoker.
+	 */
+	private final class WeightedRoundRobin {
+
+		private final AtomicLong current = new AtomicLong();
+
+		private volatile int weight;
+
+		// weight is read again on every pick until the invoker has warmed up.
+		private final long warmupEnd;
+
+		private volatile long lastUpdate;
+
+		WeightedRoundRobin(Invoker<?> invoker, Invocation invocation) {
+			URL url = invoker.getUrl();
+			long timestamp = url.getParameter(Constants.TIMESTAMP_KEY, 0L);
+			this.warmupEnd = timestamp > 0L ? timestamp + url.getParameter(Constants.WARMUP_KEY, Constants.DEFAULT_WARMUP) : 0L;
+			this.weight = RoundRobinLoadBalance.this.getWeight(invoker, invocation);
+		}
+
+		int getWeight(Invoker<?> invoker, Invocation invocation, long now) {
+			lastUpdate = now;
+			if (now < warmupEnd) {
+				weight = RoundRobinLoadBalance.this.getWeight(invoker, invocation);
+			}
+			return weight;
+		}
+	}
+
+}
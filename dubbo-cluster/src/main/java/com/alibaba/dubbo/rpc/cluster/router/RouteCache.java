@@ -0,0 +1,129 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.router;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 路由结果缓存，按传入的提供者列表对象(而非内容)缓存。
+ * 
+ * 同一列表对象第二次路由时结果才进入缓存，每次调用都传入新列表时(如前面有不缓存的路由)只占用待定区，不影响已缓存的结果。
+ * 列表按弱引用持有，目录刷新后丢弃的列表及其结果随GC清除；两个区各自超过上限时清空。
+ */
+public class RouteCache<V> {
+
+    private static final int MAX_ENTRIES = 64;
+
+    private final ConcurrentMap<Object, V> routes = new ConcurrentHashMap<Object, V>();
+
+    // 只出现过一次的列表
+    private final ConcurrentMap<Object, V> pending = new ConcurrentHashMap<Object, V>();
+
+    private final ReferenceQueue<List<?>> queue = new ReferenceQueue<List<?>>();
+
+    /**
+     * @return 列表对象对应的结果，未缓存时返回null
+     */
+    public V get(List<?> invokers) {
+        LookupKey key = new LookupKey(invokers);
+        V value = routes.get(key);
+        if (value == null && ! pending.isEmpty()) {
+            value = pending.remove(key);
+            if (value != null) {
+                if (routes.size() >= MAX_ENTRIES) {
+                    routes.clear();
+                }
+                routes.put(new WeakKey(invokers, queue), value);
+            }
+        }
+        return value;
+    }
+
+    public void put(List<?> invokers, V value) {
+        expunge();
+        WeakKey key = new WeakKey(invokers, queue);
+        if (routes.containsKey(key)) {
+            routes.put(key, value);
+            return;
+        }
+        if (pending.size() >= MAX_ENTRIES) {
+            pending.clear();
+        }
+        pending.put(key, value);
+    }
+
+    private void expunge() {
+        Object key;
+        while ((key = queue.poll()) != null) {
+            routes.remove(key);
+            pending.remove(key);
+        }
+    }
+
+    // 查找用的键，不持有引用队列
+    private static final class LookupKey {
+
+        private final List<?> invokers;
+
+        LookupKey(List<?> invokers) {
+            this.invokers = invokers;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(invokers);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof WeakKey && ((WeakKey) o).get() == invokers;
+        }
+
+    }
+
+    private static final class WeakKey extends WeakReference<List<?>> {
+
+        private final int hash;
+
+        WeakKey(List<?> invokers, ReferenceQueue<List<?>> queue) {
+            super(invokers, queue);
+            this.hash = System.identityHashCode(invokers);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) {
+                return true;
+            }
+            if (! (o instanceof WeakKey)) {
+                return false;
+            }
+            List<?> invokers = get();
+            return invokers != null && invokers == ((WeakKey) o).get();
+        }
+
+    }
+
+}
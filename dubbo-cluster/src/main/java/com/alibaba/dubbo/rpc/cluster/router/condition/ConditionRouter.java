@@ -17,6 +17,8 @@ package com.alibaba.dubbo.rpc.cluster.router.condition;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -36,6 +38,7 @@ import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.cluster.Router;
+import com.alibaba.dubbo.rpc.cluster.router.RouteCache;
 
 /**
  * ConditionRouter
@@ -56,6 +59,9 @@ public class ConditionRouter implements Router, Comparable<Router> {
     
     private final Map<String, MatchPair> thenCondition;
 
+    // 提供者列表(按对象标识) -> 预先求出的结果，每个方法的列表各占一项
+    private final RouteCache<Route> routes = new RouteCache<Route>();
+
     public ConditionRouter(URL url) {
         this.url = url;
         this.priority = url.getParameter(Constants.PRIORITY_KEY, 0);
@@ -79,37 +85,59 @@ public class ConditionRouter implements Router, Comparable<Router> {
         }
     }
 
+    @SuppressWarnings("unchecked")
     public <T> List<Invoker<T>> route(List<Invoker<T>> invokers, URL url, Invocation invocation)
             throws RpcException {
         if (invokers == null || invokers.size() == 0) {
             return invokers;
         }
         try {
-            if (! matchWhen(url)) {
+            // 规则只依赖消费者url和提供者url，两者对象不变时直接复用上次的结果
+            Route route = routes.get(invokers);
+            if (route == null || route.consumer != url) {
+                route = compile(invokers, url);
+                routes.put(invokers, route);
+            }
+            if (route.result == null) {
                 return invokers;
             }
-            List<Invoker<T>> result = new ArrayList<Invoker<T>>();
             if (thenCondition == null) {
             	logger.warn("The current consumer in the service blacklist. consumer: " + NetUtils.getLocalHost() + ", service: " + url.getServiceKey());
-                return result;
-            }
-            for (Invoker<T> invoker : invokers) {
-                if (matchThen(invoker.getUrl(), url)) {
-                    result.add(invoker);
-                }
-            }
-            if (result.size() > 0) {
-                return result;
-            } else if (force) {
+            } else if (route.result.size() == 0) {
             	logger.warn("The route result is empty and force execute. consumer: " + NetUtils.getLocalHost() + ", service: " + url.getServiceKey() + ", router: " + url.getParameterAndDecoded(Constants.RULE_KEY));
-            	return result;
             }
+            return (List<Invoker<T>>) route.result;
         } catch (Throwable t) {
             logger.error("Failed to execute condition router rule: " + getUrl() + ", invokers: " + invokers + ", cause: " + t.getMessage(), t);
         }
         return invokers;
     }
 
+    /**
+     * 对一组提供者预先求出then条件的匹配位图，result为null表示不过滤。
+     */
+    private <T> Route compile(List<Invoker<T>> invokers, URL url) {
+        if (! matchWhen(url)) {
+            return new Route(url, null);
+        }
+        BitSet matched = new BitSet(invokers.size());
+        if (thenCondition != null) {
+            for (int i = 0; i < invokers.size(); i ++) {
+                if (matchThen(invokers.get(i).getUrl(), url)) {
+                    matched.set(i);
+                }
+            }
+        }
+        List<Invoker<T>> result = new ArrayList<Invoker<T>>(matched.cardinality());
+        for (int i = matched.nextSetBit(0); i >= 0; i = matched.nextSetBit(i + 1)) {
+            result.add(invokers.get(i));
+        }
+        if (result.size() == 0 && thenCondition != null && ! force) {
+            return new Route(url, null);
+        }
+        return new Route(url, Collections.unmodifiableList(result));
+    }
+
     public URL getUrl() {
         return url;
     }
@@ -211,6 +239,15 @@ public class ConditionRouter implements Router, Comparable<Router> {
         return condition;
     }
 
+    private static final class Route {
+        final URL consumer;
+        final List<?> result;
+        Route(URL consumer, List<?> result) {
+            this.consumer = consumer;
+            this.result = result;
+        }
+    }
+
     private static final class MatchPair {
         final Set<String> matches = new HashSet<String>();
         final Set<String> mismatches = new HashSet<String>();
@@ -19,11 +19,15 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.script.Bindings;
 import javax.script.Compilable;
 import javax.script.CompiledScript;
+import javax.script.ScriptContext;
 import javax.script.ScriptEngine;
 import javax.script.ScriptEngineManager;
 import javax.script.ScriptException;
@@ -37,10 +41,18 @@ import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.cluster.Router;
+import com.alibaba.dubbo.rpc.cluster.router.RouteCache;
 
 /**
  * ScriptRouter
  * 
+ * 规则在创建时编译一次。引擎声明线程安全(THREADING参数非空)时共享同一份编译结果，
+ * 每次调用使用新的Bindings；否则每个并发调用从池中借用一个各自编译好的引擎，
+ * 池中引擎数不超过MAX_EVALUATORS，池空且已达上限时退回到每次调用编译一次规则。
+ * 
+ * 路由规则url上cache=true表示脚本只依赖invokers，结果按传入的invokers列表对象缓存(见RouteCache)，
+ * 各方法的列表互不覆盖，列表对象不变(即目录未刷新)时直接返回上次结果。
+ * 
  * @author william.liangf
  */
 public class ScriptRouter implements Router {
@@ -57,6 +69,21 @@ public class ScriptRouter implements Router {
 
     private final URL url;
 
+    private final boolean cached;
+
+    // 线程安全引擎共享的求值器，为null时使用pool
+    private final Evaluator shared;
+
+    private final Queue<Evaluator> pool = new ConcurrentLinkedQueue<Evaluator>();
+
+    // 已创建的池化引擎数
+    private final AtomicInteger evaluators = new AtomicInteger();
+
+    private final RouteCache<List<?>> routes = new RouteCache<List<?>>();
+
+    private static final int MAX_EVALUATORS = Constants.DEFAULT_IO_THREADS;
+
+
     public URL getUrl() {
         return url;
     }
@@ -82,19 +109,33 @@ public class ScriptRouter implements Router {
         }
         this.engine = engine;
         this.rule = rule;
+        this.cached = url.getParameter(Constants.CACHE_KEY, false);
+        try {
+            if (engine.getFactory().getParameter("THREADING") != null) {
+                this.shared = new Evaluator(engine, true);
+            } else {
+                this.shared = null;
+                evaluators.incrementAndGet();
+                pool.offer(new Evaluator(engine.getFactory().getScriptEngine(), false));
+            }
+        } catch (ScriptException e) {
+            throw new IllegalStateException("Failed to compile route rule: " + rule + ", cause: " + e.getMessage(), e);
+        }
     }
 
     @SuppressWarnings("unchecked")
     public <T> List<Invoker<T>> route(List<Invoker<T>> invokers, URL url, Invocation invocation) throws RpcException {
+        if (cached) {
+            List<?> result = routes.get(invokers);
+            if (result != null) {
+                return (List<Invoker<T>>) result;
+            }
+        }
+        Evaluator evaluator = null;
         try {
+            evaluator = borrow();
             List<Invoker<T>> invokersCopy = new ArrayList<Invoker<T>>(invokers);
-            Compilable compilable = (Compilable) engine;
-            Bindings bindings = engine.createBindings();
-            bindings.put("invokers", invokersCopy);
-            bindings.put("invocation", invocation);
-            bindings.put("context", RpcContext.getContext());
-            CompiledScript function = compilable.compile(rule);
-            Object obj = function.eval(bindings);
+            Object obj = evaluator.eval(invokersCopy, invocation);
             if (obj instanceof Invoker[]) {
                 invokersCopy = Arrays.asList((Invoker<T>[]) obj);
             } else if (obj instanceof Object[]) {
@@ -105,14 +146,42 @@ public class ScriptRouter implements Router {
             } else {
                 invokersCopy = (List<Invoker<T>>) obj;
             }
+            if (cached) {
+                routes.put(invokers, invokersCopy);
+            }
             return invokersCopy;
         } catch (ScriptException e) {
             //fail then ignore rule .invokers.
             logger.error("route error , rule has been ignored. rule: " + rule + ", method:" + invocation.getMethodName() + ", url: " + RpcContext.getContext().getUrl(), e);
             return invokers;
+        } finally {
+            if (evaluator != null && ! evaluator.shared) {
+                pool.offer(evaluator);
+            }
         }
     }
 
+    private Evaluator borrow() throws ScriptException {
+        if (shared != null) {
+            return shared;
+        }
+        Evaluator evaluator = pool.poll();
+        if (evaluator != null) {
+            return evaluator;
+        }
+        if (evaluators.incrementAndGet() <= MAX_EVALUATORS) {
+            try {
+                return new Evaluator(engine.getFactory().getScriptEngine(), false);
+            } catch (ScriptException e) {
+                evaluators.decrementAndGet();
+                throw e;
+            }
+        }
+        evaluators.decrementAndGet();
+        // 池已满且全部借出，本次在公共引擎上编译规则并使用新的Bindings，用完不归还
+        return new Evaluator(engine, true);
+    }
+
     public int compareTo(Router o) {
         if (o == null || o.getClass() != ScriptRouter.class) {
             return 1;
@@ -121,4 +190,38 @@ public class ScriptRouter implements Router {
         return this.priority == c.priority ? rule.compareTo(c.rule) : (this.priority > c.priority ? 1 : -1);
     }
 
-}
\ No newline at end of file
+    private final class Evaluator {
+
+        private final ScriptEngine engine;
+
+        // 引擎不支持编译时为null，每次直接eval规则
+        private final CompiledScript function;
+
+        private final boolean shared;
+
+        Evaluator(ScriptEngine engine, boolean shared) throws ScriptException {
+            this.engine = engine;
+            this.shared = shared;
+            this.function = engine instanceof Compilable ? ((Compilable) engine).compile(rule) : null;
+        }
+
+        Object eval(List<?> invokers, Invocation invocation) throws ScriptException {
+            // 独占的引擎直接复用自身的Bindings，避免每次创建新的全局对象
+            Bindings bindings = shared ? engine.createBindings() : engine.getBindings(ScriptContext.ENGINE_SCOPE);
+            bindings.put("invokers", invokers);
+            bindings.put("invocation", invocation);
+            bindings.put("context", RpcContext.getContext());
+            try {
+                return function != null ? function.eval(bindings) : engine.eval(rule, bindings);
+            } finally {
+                if (! shared) {
+                    bindings.remove("invokers");
+                    bindings.remove("invocation");
+                    bindings.remove("context");
+                }
+            }
+        }
+
+    }
+
+}
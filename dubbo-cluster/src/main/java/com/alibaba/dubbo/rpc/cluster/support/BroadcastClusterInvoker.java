@@ -15,21 +15,42 @@
  */
 package com.alibaba.dubbo.rpc.cluster.support;
 
+import java.lang.reflect.Array;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.utils.ConfigUtils;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.cluster.Directory;
 import com.alibaba.dubbo.rpc.cluster.LoadBalance;
+import com.alibaba.dubbo.rpc.cluster.Merger;
+import com.alibaba.dubbo.rpc.cluster.merger.MergerFactory;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
  * BroadcastClusterInvoker
  * 
+ * 默认逐个调用所有提供者。配置broadcast.concurrency后并行调用，同时在途的调用数不超过该值，
+ * 整个广播在broadcast.timeout(默认为timeout)内完成，任一提供者失败时汇总报告所有失败的提供者。
+ * 配置merger时通过Merger扩展合并各提供者的结果，否则返回最后一个提供者的结果。
+ * 
  * @author william.liangf
  */
 public class BroadcastClusterInvoker<T> extends AbstractClusterInvoker<T> {
@@ -44,11 +65,17 @@ public class BroadcastClusterInvoker<T> extends AbstractClusterInvoker<T> {
     public Result doInvoke(final Invocation invocation, List<Invoker<T>> invokers, LoadBalance loadbalance) throws RpcException {
         checkInvokers(invokers, invocation);
         RpcContext.getContext().setInvokers((List)invokers);
+        int concurrency = getUrl().getMethodParameter(invocation.getMethodName(), Constants.BROADCAST_CONCURRENCY_KEY, 0);
+        if (concurrency > 0) {
+            return parallelInvoke(invocation, invokers, concurrency);
+        }
         RpcException exception = null;
         Result result = null;
+        List<Result> results = new ArrayList<Result>(invokers.size());
         for (Invoker<T> invoker: invokers) {
             try {
                 result = invoker.invoke(invocation);
+                results.add(result);
             } catch (RpcException e) {
                 exception = e;
                 logger.warn(e.getMessage(), e);
@@ -60,7 +87,151 @@ public class BroadcastClusterInvoker<T> extends AbstractClusterInvoker<T> {
         if (exception != null) {
             throw exception;
         }
-        return result;
+        return merge(invocation, results, result);
+    }
+
+    private Result parallelInvoke(Invocation invocation, List<Invoker<T>> invokers, int concurrency) throws RpcException {
+        String methodName = invocation.getMethodName();
+        int timeout = getUrl().getMethodParameter(methodName, Constants.BROADCAST_TIMEOUT_KEY,
+                getUrl().getMethodParameter(methodName, Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT));
+        boolean async = RpcUtils.isAsync(getUrl(), invocation);
+        Broadcast broadcast = new Broadcast(invocation, invokers);
+        broadcast.deadline = ClusterFutures.withTimeout(broadcast.future, timeout, new StringBuilder(64)
+                .append("Failed to broadcast invoke method ").append(methodName)
+                .append(" in ").append(getUrl().getServiceKey())
+                .append(" to ").append(invokers.size())
+                .append(" providers, waiting results timeout, timeout: ").append(timeout)
+                .append(" ms").toString());
+        for (int i = 0; i < concurrency && i < invokers.size(); i ++) {
+            broadcast.next();
+        }
+        return ClusterFutures.result(broadcast.deadline, async);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Result merge(Invocation invocation, List<Result> results, Result last) throws RpcException {
+        String merger = getUrl().getMethodParameter(invocation.getMethodName(), Constants.MERGER_KEY);
+        if (ConfigUtils.isEmpty(merger)) {
+            return last;
+        }
+        Class<?> returnType;
+        try {
+            returnType = getInterface().getMethod(invocation.getMethodName(), invocation.getParameterTypes()).getReturnType();
+        } catch (NoSuchMethodException e) {
+            returnType = null;
+        }
+        List<Object> values = new ArrayList<Object>(results.size());
+        for (Result r : results) {
+            if (r.hasException()) {
+                logger.warn("Broadcast invoke method " + invocation.getMethodName() + " failed: " + r.getException().getMessage(), r.getException());
+            } else {
+                values.add(r.getValue());
+            }
+        }
+        if (values.size() == 0) {
+            return new RpcResult((Object) null);
+        } else if (values.size() == 1 || returnType == null || returnType == void.class) {
+            return new RpcResult(values.get(0));
+        }
+        Merger resultMerger;
+        if (ConfigUtils.isDefault(merger)) {
+            resultMerger = MergerFactory.getMerger(returnType);
+        } else {
+            resultMerger = ExtensionLoader.getExtensionLoader(Merger.class).getExtension(merger);
+        }
+        if (resultMerger == null) {
+            throw new RpcException("There is no merger to merge result.");
+        }
+        return new RpcResult(resultMerger.merge(values.toArray((Object[]) Array.newInstance(returnType, 0))));
+    }
+
+    /**
+     * 一次并行广播的状态。每完成一个调用就发起下一个，发起由抢到draining的线程循环完成，
+     * 同步返回的协议不会因回调嵌套而加深调用栈。
+     */
+    private class Broadcast {
+
+        final SettableFuture<Result> future = new SettableFuture<Result>();
+
+        volatile ListenableFuture<Result> deadline;
+
+        private final Invocation invocation;
+
+        private final List<Invoker<T>> invokers;
+
+        private final Result[] results;
+
+        private final Queue<String> failures = new ConcurrentLinkedQueue<String>();
+
+        private final Map<String, String> attachments = ClusterFutures.snapshotAttachments();
+
+        private final AtomicInteger completed = new AtomicInteger();
+
+        private final AtomicInteger index = new AtomicInteger();
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private volatile RpcException lastException;
+
+        Broadcast(Invocation invocation, List<Invoker<T>> invokers) {
+            this.invocation = invocation;
+            this.invokers = invokers;
+            this.results = new Result[invokers.size()];
+        }
+
+        void next() {
+            if (pending.getAndIncrement() != 0) {
+                return;
+            }
+            do {
+                int i = index.getAndIncrement();
+                if (i < invokers.size() && ! deadline.isDone()) {
+                    invoke(i);
+                }
+            } while (pending.decrementAndGet() != 0);
+        }
+
+        private void invoke(final int i) {
+            final Invoker<T> invoker = invokers.get(i);
+            ClusterFutures.invoke(invoker, new RpcInvocation(invocation, invoker), attachments).addListener(new FutureListener<Result>() {
+                public void onSuccess(Result result) {
+                    results[i] = result;
+                    done();
+                }
+
+                public void onFailure(Throwable e) {
+                    RpcException exception = e instanceof RpcException ? (RpcException) e : new RpcException(e.getMessage(), e);
+                    logger.warn(exception.getMessage(), exception);
+                    lastException = exception;
+                    failures.add(invoker.getUrl().getAddress() + " (" + e.getMessage() + ")");
+                    done();
+                }
+            });
+        }
+
+        private void done() {
+            if (completed.incrementAndGet() < invokers.size()) {
+                next();
+                return;
+            }
+            if (failures.isEmpty()) {
+                List<Result> list = new ArrayList<Result>(results.length);
+                for (Result result : results) {
+                    list.add(result);
+                }
+                try {
+                    future.set(merge(invocation, list, results[results.length - 1]));
+                } catch (Throwable t) {
+                    future.setException(t);
+                }
+                return;
+            }
+            RpcException exception = lastException;
+            future.setException(new RpcException(exception.getCode(), "Failed to broadcast invoke method "
+                    + invocation.getMethodName() + " in " + getUrl().getServiceKey() + ", " + failures.size()
+                    + " of " + invokers.size() + " providers failed: " + failures + ". Last error is: "
+                    + exception.getMessage(), exception.getCause() != null ? exception.getCause() : exception));
+        }
     }
 
-}
\ No newline at end of file
+}
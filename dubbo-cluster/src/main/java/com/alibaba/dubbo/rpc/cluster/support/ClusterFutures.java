@@ -0,0 +1,210 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.support;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.concurrent.Function;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.Futures;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
+import com.alibaba.dubbo.common.timer.HashedWheelTimer;
+import com.alibaba.dubbo.common.timer.Timeout;
+import com.alibaba.dubbo.common.timer.Timer;
+import com.alibaba.dubbo.common.timer.TimerTask;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+/**
+ * 集群扇出调用的异步支持。
+ * <p>
+ * 各分支在调用线程上以异步方式发起，结果通过回调汇总，超时由共享的时间轮触发，
+ * 不为任何未完成的分支占用线程。不支持异步的协议在调用返回时即已完成。
+ * <p>
+ * 分支响应的回调(选取结果、合并及用户的Merger)派发到共享的有界线程池执行，不占用IO线程；
+ * 线程池饱和时由完成响应的线程直接执行。
+ */
+public class ClusterFutures {
+
+    private static final Timer TIMEOUT_TIMER = new HashedWheelTimer(
+            new NamedThreadFactory("DubboClusterTimeoutTimer", true),
+            Constants.DEFAULT_FUTURE_TIMER_TICK, TimeUnit.MILLISECONDS, Constants.DEFAULT_FUTURE_TIMER_TICKS_PER_WHEEL);
+
+    private static final int CALLBACK_QUEUES = 1024;
+
+    private static final Executor CALLBACK_EXECUTOR;
+
+    static {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(Constants.DEFAULT_IO_THREADS, Constants.DEFAULT_IO_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(CALLBACK_QUEUES),
+                new NamedThreadFactory("DubboClusterCallback", true), new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+        CALLBACK_EXECUTOR = executor;
+    }
+
+    private static final Function<Result, Object> RECREATE = new Function<Result, Object>() {
+        public Object apply(Result result) throws Exception {
+            if (result.hasException()) {
+                Throwable exception = result.getException();
+                if (exception instanceof Exception) {
+                    throw (Exception) exception;
+                }
+                throw new RpcException(exception);
+            }
+            return result.getValue();
+        }
+    };
+
+    /**
+     * 快照调用方设置的隐式参数，每个分支调用前用{@link #invoke(Invoker, Invocation, Map)}恢复，
+     * 因为ConsumerContextFilter会在每次调用后清空它们。
+     * 
+     * @return attachments
+     */
+    public static Map<String, String> snapshotAttachments() {
+        return new HashMap<String, String>(RpcContext.getContext().getAttachments());
+    }
+
+    /**
+     * 异步调用一个分支。返回的future在调用成功或出现业务异常时以Result完成，
+     * 在出现RpcException等调用失败时以异常完成。
+     * 
+     * @param invoker
+     * @param invocation
+     * @param attachments
+     * @return result future
+     */
+    public static ListenableFuture<Result> invoke(Invoker<?> invoker, Invocation invocation, Map<String, String> attachments) {
+        RpcContext context = RpcContext.getContext();
+        context.setAttachments(attachments);
+        context.setFuture(null);
+        if (invocation instanceof RpcInvocation) {
+            ((RpcInvocation) invocation).setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+        } else {
+            context.setAttachment(Constants.ASYNC_KEY, Boolean.TRUE.toString());
+        }
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (Throwable t) {
+            return Futures.immediateFailedFuture(t);
+        }
+        ListenableFuture<Object> future = context.getListenableFuture();
+        context.setFuture(null);
+        if (future == null) {
+            return Futures.immediateFuture(result);
+        }
+        final SettableFuture<Result> branch = new SettableFuture<Result>();
+        future.addListener(new FutureListener<Object>() {
+            public void onSuccess(final Object value) {
+                CALLBACK_EXECUTOR.execute(new Runnable() {
+                    public void run() {
+                        branch.set(new RpcResult(value));
+                    }
+                });
+            }
+
+            public void onFailure(final Throwable cause) {
+                CALLBACK_EXECUTOR.execute(new Runnable() {
+                    public void run() {
+                        if (cause instanceof RpcException) {
+                            branch.setException(cause);
+                        } else {
+                            branch.set(new RpcResult(cause));
+                        }
+                    }
+                });
+            }
+        });
+        return branch;
+    }
+
+    /**
+     * 返回随future完成的新future，超过timeout仍未完成时以RpcException结束，先完成时取消定时。
+     * 
+     * @param future
+     * @param timeout
+     * @param message
+     * @return future with timeout
+     */
+    public static <V> ListenableFuture<V> withTimeout(ListenableFuture<V> future, int timeout, final String message) {
+        if (future.isDone()) {
+            return future;
+        }
+        final SettableFuture<V> result = new SettableFuture<V>();
+        final Timeout handle = TIMEOUT_TIMER.newTimeout(new TimerTask() {
+            public void run(Timeout t) {
+                result.setException(new RpcException(RpcException.TIMEOUT_EXCEPTION, message));
+            }
+        }, timeout, TimeUnit.MILLISECONDS);
+        future.addListener(new FutureListener<V>() {
+            public void onSuccess(V value) {
+                handle.cancel();
+                result.set(value);
+            }
+
+            public void onFailure(Throwable cause) {
+                handle.cancel();
+                result.setException(cause);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * 调用方为异步时，将结果future放入RpcContext并立即返回；否则等待结果。
+     * 
+     * @param future
+     * @param async
+     * @return result
+     * @throws RpcException
+     */
+    public static Result result(ListenableFuture<Result> future, boolean async) throws RpcException {
+        if (async) {
+            RpcContext.getContext().setFuture(future.transform(RECREATE));
+            return new RpcResult();
+        }
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RpcException) {
+                throw (RpcException) cause;
+            }
+            throw new RpcException(cause);
+        } catch (InterruptedException e) {
+            throw new RpcException(e.getMessage(), e);
+        }
+    }
+
+    private ClusterFutures() {
+    }
+
+}
@@ -17,34 +17,33 @@ package com.alibaba.dubbo.rpc.cluster.support;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.alibaba.dubbo.common.Constants;
-import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.cluster.Directory;
 import com.alibaba.dubbo.rpc.cluster.LoadBalance;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
  * 并行调用，只要一个成功即返回，通常用于实时性要求较高的操作，但需要浪费更多服务资源。
  * 
+ * 各分支异步发起，由回调取第一个成功的结果，不为每个分支占用线程。
+ * 
  * <a href="http://en.wikipedia.org/wiki/Fork_(topology)">Fork</a>
  * 
  * @author william.liangf
  */
 public class ForkingClusterInvoker<T> extends AbstractClusterInvoker<T>{
 
-    private final ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("forking-cluster-timer", true)); 
-
     public ForkingClusterInvoker(Directory<T> directory) {
         super(directory);
     }
@@ -68,32 +67,28 @@ public class ForkingClusterInvoker<T> extends AbstractClusterInvoker<T>{
             }
         }
         RpcContext.getContext().setInvokers((List)selected);
+        boolean async = RpcUtils.isAsync(getUrl(), invocation);
+        Map<String, String> attachments = ClusterFutures.snapshotAttachments();
         final AtomicInteger count = new AtomicInteger();
-        final BlockingQueue<Object> ref = new LinkedBlockingQueue<Object>();
+        final SettableFuture<Result> future = new SettableFuture<Result>();
         for (final Invoker<T> invoker : selected) {
-            executor.execute(new Runnable() {
-                public void run() {
-                    try {
-                        Result result = invoker.invoke(invocation);
-                        ref.offer(result);
-                    } catch(Throwable e) {
-                        int value = count.incrementAndGet();
-                        if (value >= selected.size()) {
-                            ref.offer(e);
-                        }
+            ClusterFutures.invoke(invoker, new RpcInvocation(invocation, invoker), attachments).addListener(new FutureListener<Result>() {
+                public void onSuccess(Result result) {
+                    future.set(result);
+                }
+
+                public void onFailure(Throwable e) {
+                    int value = count.incrementAndGet();
+                    if (value >= selected.size()) {
+                        future.setException(new RpcException(e instanceof RpcException ? ((RpcException)e).getCode() : 0, "Failed to forking invoke provider " + selected + ", but no luck to perform the invocation. Last error is: " + e.getMessage(), e.getCause() != null ? e.getCause() : e));
                     }
                 }
             });
-        }
-        try {
-            Object ret = ref.poll(timeout, TimeUnit.MILLISECONDS);
-            if (ret instanceof Throwable) {
-                Throwable e = (Throwable) ret;
-                throw new RpcException(e instanceof RpcException ? ((RpcException)e).getCode() : 0, "Failed to forking invoke provider " + selected + ", but no luck to perform the invocation. Last error is: " + e.getMessage(), e.getCause() != null ? e.getCause() : e);
+            if (future.isDone()) {
+                // 不支持异步的协议同步返回了结果，无需再调用其它分支
+                break;
             }
-            return (Result) ret;
-        } catch (InterruptedException e) {
-            throw new RpcException("Failed to forking invoke provider " + selected + ", but no luck to perform the invocation. Last error is: " + e.getMessage(), e);
         }
+        return ClusterFutures.result(ClusterFutures.withTimeout(future, timeout, "Failed to forking invoke provider " + selected + ", but no luck to perform the invocation. Waiting result timeout, timeout: " + timeout + " ms"), async);
     }
 }
\ No newline at end of file
@@ -19,22 +19,20 @@ import java.lang.reflect.Array;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.concurrent.Function;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.Futures;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.ConfigUtils;
-import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
@@ -44,8 +42,11 @@ import com.alibaba.dubbo.rpc.RpcResult;
 import com.alibaba.dubbo.rpc.cluster.Directory;
 import com.alibaba.dubbo.rpc.cluster.Merger;
 import com.alibaba.dubbo.rpc.cluster.merger.MergerFactory;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
+ * 按组并行调用并合并结果，分支调用与合并均以回调完成，不为每个分支占用线程。
+ * 
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
 @SuppressWarnings( "unchecked" )
@@ -53,15 +54,12 @@ public class MergeableClusterInvoker<T> implements Invoker<T> {
 
     private static final Logger log = LoggerFactory.getLogger(MergeableClusterInvoker.class);
 
-    private ExecutorService executor = Executors.newCachedThreadPool(new NamedThreadFactory("mergeable-cluster-executor", true));
-    
     private final Directory<T> directory;
 
     public MergeableClusterInvoker(Directory<T> directory) {
         this.directory = directory;
     }
 
-    @SuppressWarnings("rawtypes")
 	public Result invoke(final Invocation invocation) throws RpcException {
         List<Invoker<T>> invokers = directory.list(invocation);
         
@@ -75,52 +73,76 @@ public class MergeableClusterInvoker<T> implements Invoker<T> {
             return invokers.iterator().next().invoke(invocation);
         }
         
-        Class<?> returnType;
-        try {
-            returnType = getInterface().getMethod(
-                    invocation.getMethodName(), invocation.getParameterTypes() ).getReturnType();
-        } catch ( NoSuchMethodException e ) {
-            returnType = null;
-        }
-        
-        Map<String, Future<Result>> results = new HashMap<String, Future<Result>>();
+        final Class<?> returnType = getReturnType(invocation);
+
+        boolean async = RpcUtils.isAsync(getUrl(), invocation);
+        Map<String, String> attachments = ClusterFutures.snapshotAttachments();
+        List<ListenableFuture<Result>> results = new ArrayList<ListenableFuture<Result>>( invokers.size() );
         for( final Invoker<T> invoker : invokers ) {
-            Future<Result> future = executor.submit( new Callable<Result>() {
-                public Result call() throws Exception {
-                    return invoker.invoke(new RpcInvocation(invocation, invoker));
+            final String serviceKey = invoker.getUrl().getServiceKey();
+            final SettableFuture<Result> future = new SettableFuture<Result>();
+            ClusterFutures.invoke( invoker, new RpcInvocation(invocation, invoker), attachments ).addListener( new FutureListener<Result>() {
+                public void onSuccess(Result r) {
+                    if (r.hasException()) {
+                        log.error(new StringBuilder(32).append("Invoke ")
+                                      .append(getGroupDescFromServiceKey(serviceKey))
+                                      .append(" failed: ")
+                                      .append(r.getException().getMessage()).toString(),
+                                  r.getException());
+                        future.set( null );
+                    } else {
+                        future.set( r );
+                    }
+                }
+
+                public void onFailure(Throwable e) {
+                    future.setException( new RpcException( new StringBuilder( 32 )
+                                                    .append( "Failed to invoke service " )
+                                                    .append( serviceKey )
+                                                    .append( ": " )
+                                                    .append( e.getMessage() ).toString(),
+                                            e ) );
                 }
             } );
-            results.put( invoker.getUrl().getServiceKey(), future );
+            results.add( future );
         }
 
-        Object result = null;
-        
-        List<Result> resultList = new ArrayList<Result>( results.size() );
-        
-        int timeout = getUrl().getMethodParameter( invocation.getMethodName(), Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT );
-        for ( Map.Entry<String, Future<Result>> entry : results.entrySet() ) {
-            Future<Result> future = entry.getValue();
-            try {
-                Result r = future.get(timeout, TimeUnit.MILLISECONDS);
-                if (r.hasException()) {
-                    log.error(new StringBuilder(32).append("Invoke ")
-                                  .append(getGroupDescFromServiceKey(entry.getKey()))
-                                  .append(" failed: ")
-                                  .append(r.getException().getMessage()).toString(),
-                              r.getException());
-                } else {
-                    resultList.add(r);
+        // 在最后一个分支完成的线程上合并，调用线程只在同步调用时等待合并结果
+        final String mergerName = merger;
+        ListenableFuture<Result> merged = Futures.allAsList( results ).transform( new Function<List<Result>, Result>() {
+            public Result apply(List<Result> results) throws Exception {
+                List<Result> resultList = new ArrayList<Result>( results.size() );
+                for ( Result r : results ) {
+                    if ( r != null ) {
+                        resultList.add( r );
+                    }
                 }
-            } catch ( Exception e ) {
-                throw new RpcException( new StringBuilder( 32 )
-                                                .append( "Failed to invoke service " )
-                                                .append( entry.getKey() )
-                                                .append( ": " )
-                                                .append( e.getMessage() ).toString(),
-                                        e );
+                return merge( mergerName, returnType, resultList );
             }
+        } );
+        int timeout = getUrl().getMethodParameter( invocation.getMethodName(), Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT );
+        return ClusterFutures.result( ClusterFutures.withTimeout( merged, timeout, new StringBuilder( 32 )
+                                                                      .append( "Failed to merge invoke service " )
+                                                                      .append( getUrl().getServiceKey() )
+                                                                      .append( ", waiting results timeout, timeout: " )
+                                                                      .append( timeout )
+                                                                      .append( " ms" ).toString() ),
+                                      async );
+    }
+
+    private Class<?> getReturnType(Invocation invocation) {
+        try {
+            return getInterface().getMethod(
+                    invocation.getMethodName(), invocation.getParameterTypes() ).getReturnType();
+        } catch ( NoSuchMethodException e ) {
+            return null;
         }
-        
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Result merge(String merger, Class<?> returnType, List<Result> resultList) throws RpcException {
+        Object result = null;
+
         if (resultList.size() == 0) {
             return new RpcResult((Object)null);
         } else if (resultList.size() == 1) {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.directory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.cluster.Router;
+import com.alibaba.dubbo.rpc.cluster.router.MockInvoker;
+
+public class StaticDirectoryTest {
+
+    private static class CountingRouter implements Router {
+
+        private final URL url;
+
+        int count;
+
+        CountingRouter(URL url) {
+            this.url = url;
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public <T> List<Invoker<T>> route(List<Invoker<T>> invokers, URL url, Invocation invocation) throws RpcException {
+            count ++;
+            return invokers.subList(1, invokers.size());
+        }
+
+        public int compareTo(Router o) {
+            return 1;
+        }
+
+    }
+
+    private List<Invoker<String>> getInvokers() {
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService")));
+        invokers.add(new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.4:20880/com.foo.BarService")));
+        return invokers;
+    }
+
+    @Test
+    public void testCacheableRouterRunsOnce() {
+        CountingRouter router = new CountingRouter(URL.valueOf("script://javascript?cache=true"));
+        List<Router> routers = new ArrayList<Router>();
+        routers.add(router);
+        StaticDirectory<String> directory = new StaticDirectory<String>(getInvokers(), routers);
+        List<Invoker<String>> first = directory.list(new RpcInvocation());
+        Assert.assertEquals(1, first.size());
+        for (int i = 0; i < 10; i ++) {
+            Assert.assertSame(first, directory.list(new RpcInvocation()));
+        }
+        Assert.assertEquals(1, router.count);
+
+        RpcInvocation mock = new RpcInvocation();
+        mock.setAttachment(Constants.INVOCATION_NEED_MOCK, "false");
+        directory.list(mock);
+        Assert.assertEquals(2, router.count);
+
+        directory.setConsumerUrl(URL.valueOf("consumer://10.20.3.5/com.foo.BarService"));
+        directory.list(new RpcInvocation());
+        Assert.assertEquals(3, router.count);
+    }
+
+    @Test
+    public void testRuntimeRouterRunsEveryCall() {
+        CountingRouter router = new CountingRouter(URL.valueOf("script://javascript"));
+        List<Router> routers = new ArrayList<Router>();
+        routers.add(router);
+        StaticDirectory<String> directory = new StaticDirectory<String>(getInvokers(), routers);
+        for (int i = 0; i < 10; i ++) {
+            Assert.assertEquals(1, directory.list(new RpcInvocation()).size());
+        }
+        Assert.assertEquals(10, router.count);
+    }
+
+}
@@ -16,9 +16,12 @@
 package com.alibaba.dubbo.rpc.cluster.loadbalance;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import junit.framework.Assert;
@@ -33,6 +36,8 @@ import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcLatency;
 import com.alibaba.dubbo.rpc.cluster.LoadBalance;
 
 /**
@@ -112,6 +117,47 @@ public class LoadBalanceTest {
             Assert.assertTrue("abs diff shoud < 1", Math.abs(count-runs/(0f+invokers.size())) <1f);
         }
     }
+    @Test
+    public void testRoundRobinLoadBalance_smoothWeight() {
+        Invoker a = mockInvoker(5);
+        Invoker b = mockInvoker(1);
+        Invoker c = mockInvoker(1);
+        List<Invoker<LoadBalanceTest>> weighted = new ArrayList<Invoker<LoadBalanceTest>>();
+        weighted.add(a);
+        weighted.add(b);
+        weighted.add(c);
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(RoundRobinLoadBalance.NAME);
+        Invoker[] expected = new Invoker[] {a, a, b, a, c, a, a};
+        for (int round = 0; round < 3; round ++) {
+            for (Invoker invoker : expected) {
+                Assert.assertSame(invoker, lb.select(weighted, a.getUrl(), invocation));
+            }
+        }
+    }
+
+    @Test
+    public void testRoundRobinLoadBalance_subsetKeepsSequence() {
+        Invoker a = mockInvoker(1);
+        Invoker b = mockInvoker(1);
+        Invoker c = mockInvoker(1);
+        List<Invoker<LoadBalanceTest>> all = new ArrayList<Invoker<LoadBalanceTest>>();
+        all.add(a);
+        all.add(b);
+        all.add(c);
+        List<Invoker<LoadBalanceTest>> subset = new ArrayList<Invoker<LoadBalanceTest>>();
+        subset.add(b);
+        subset.add(c);
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(RoundRobinLoadBalance.NAME);
+        Assert.assertSame(a, lb.select(all, a.getUrl(), invocation));
+        // a reselect without the failed invoker must not restart the sequence at the first invoker.
+        Assert.assertSame(b, lb.select(subset, a.getUrl(), invocation));
+        Assert.assertSame(c, lb.select(all, a.getUrl(), invocation));
+    }
+
+    private Invoker mockInvoker(int weight) {
+        return mockInvoker(URL.valueOf("test://127.0.0.1/WeightedService?weight=" + weight));
+    }
+
     @Test
     public void testRandomLoadBalance_select() {
         int runs = 1000;
@@ -132,6 +178,82 @@ public class LoadBalanceTest {
             Assert.assertTrue("abs diff shoud < avg", Math.abs(count-runs/(0f+invokers.size())) <runs/(0f+invokers.size()));
         }
     }
+
+    @Test
+    public void testPeakEwmaLoadBalance_select() {
+        Invoker slow = mockInvoker(URL.valueOf("test://127.0.0.1:20880/LatencyService"));
+        Invoker fast1 = mockInvoker(URL.valueOf("test://127.0.0.1:20881/LatencyService"));
+        Invoker fast2 = mockInvoker(URL.valueOf("test://127.0.0.1:20882/LatencyService"));
+        List<Invoker<LoadBalanceTest>> candidates = new ArrayList<Invoker<LoadBalanceTest>>();
+        candidates.add(slow);
+        candidates.add(fast1);
+        candidates.add(fast2);
+        record(slow, TimeUnit.MILLISECONDS.toNanos(100));
+        record(fast1, TimeUnit.MILLISECONDS.toNanos(1));
+        record(fast2, TimeUnit.MILLISECONDS.toNanos(1));
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(PeakEwmaLoadBalance.NAME);
+        int fast1Count = 0;
+        for (int i = 0; i < 1000; i ++) {
+            Invoker selected = lb.select(candidates, slow.getUrl(), invocation);
+            Assert.assertNotSame(slow, selected);
+            if (selected == fast1) {
+                fast1Count ++;
+            }
+        }
+        Assert.assertTrue(fast1Count > 0 && fast1Count < 1000);
+    }
+
+    @Test
+    public void testConsistentHashLoadBalance_select() {
+        List<Invoker<LoadBalanceTest>> candidates = new ArrayList<Invoker<LoadBalanceTest>>();
+        for (int i = 0; i < 5; i ++) {
+            candidates.add(mockInvoker(URL.valueOf("test://127.0.0.1:" + (20880 + i) + "/HashService")));
+        }
+        LoadBalance lb = ExtensionLoader.getExtensionLoader(LoadBalance.class).getExtension(ConsistentHashLoadBalance.NAME);
+        Map<String, Invoker> selected = new HashMap<String, Invoker>();
+        Map<Invoker, AtomicLong> counter = new HashMap<Invoker, AtomicLong>();
+        for (int i = 0; i < 1000; i ++) {
+            String key = "key" + i;
+            Invoker invoker = lb.select(candidates, candidates.get(0).getUrl(), new RpcInvocation("method1", new Class<?>[] {String.class}, new Object[] {key}));
+            selected.put(key, invoker);
+            if (! counter.containsKey(invoker)) {
+                counter.put(invoker, new AtomicLong());
+            }
+            counter.get(invoker).incrementAndGet();
+        }
+        Assert.assertEquals(5, counter.size());
+        for (AtomicLong count : counter.values()) {
+            Assert.assertTrue(count.get() > 100);
+        }
+        // 列表被复制或调换顺序，选择结果不变
+        List<Invoker<LoadBalanceTest>> copy = new ArrayList<Invoker<LoadBalanceTest>>(candidates);
+        Collections.reverse(copy);
+        // 去掉一个提供者，只有原来落在它上面的key会迁移
+        List<Invoker<LoadBalanceTest>> shrunk = new ArrayList<Invoker<LoadBalanceTest>>(candidates);
+        Invoker removed = shrunk.remove(2);
+        for (Map.Entry<String, Invoker> entry : selected.entrySet()) {
+            RpcInvocation invocation = new RpcInvocation("method1", new Class<?>[] {String.class}, new Object[] {entry.getKey()});
+            Assert.assertSame(entry.getValue(), lb.select(copy, copy.get(0).getUrl(), invocation));
+            if (entry.getValue() != removed) {
+                Assert.assertSame(entry.getValue(), lb.select(shrunk, shrunk.get(0).getUrl(), invocation));
+            }
+        }
+    }
+
+    private void record(Invoker invoker, long elapsedNanos) {
+        RpcLatency latency = RpcLatency.getLatency(invoker.getUrl(), invocation.getMethodName());
+        latency.begin();
+        latency.end(elapsedNanos);
+    }
+
+    private Invoker mockInvoker(URL url) {
+        Invoker invoker = EasyMock.createMock(Invoker.class);
+        EasyMock.expect(invoker.isAvailable()).andReturn(true).anyTimes();
+        EasyMock.expect(invoker.getInterface()).andReturn(LoadBalanceTest.class).anyTimes();
+        EasyMock.expect(invoker.getUrl()).andReturn(url).anyTimes();
+        EasyMock.replay(invoker);
+        return invoker;
+    }
     
     
     public Map<Invoker,AtomicLong> getInvokeCounter(int runs,String loadbalanceName) {
@@ -0,0 +1,55 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+public class RouteCacheTest {
+
+    @Test
+    public void testFreshListsKeepCachedRoutes() {
+        RouteCache<String> cache = new RouteCache<String>();
+        List<Object> stable = new ArrayList<Object>();
+        Assert.assertNull(cache.get(stable));
+        cache.put(stable, "stable");
+        // 第二次出现时进入缓存
+        Assert.assertEquals("stable", cache.get(stable));
+        for (int i = 0; i < 1000; i ++) {
+            List<Object> fresh = new ArrayList<Object>();
+            Assert.assertNull(cache.get(fresh));
+            cache.put(fresh, "fresh");
+        }
+        Assert.assertEquals("stable", cache.get(stable));
+        // 内容相同的不同列表不命中
+        Assert.assertNull(cache.get(new ArrayList<Object>(stable)));
+    }
+
+    @Test
+    public void testReplace() {
+        RouteCache<String> cache = new RouteCache<String>();
+        List<Object> invokers = new ArrayList<Object>();
+        cache.put(invokers, "a");
+        Assert.assertEquals("a", cache.get(invokers));
+        cache.put(invokers, "b");
+        Assert.assertEquals("b", cache.get(invokers));
+    }
+
+}
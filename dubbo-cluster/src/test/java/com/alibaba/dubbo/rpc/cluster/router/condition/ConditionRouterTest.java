@@ -130,6 +130,49 @@ public class ConditionRouterTest {
         Assert.assertEquals(invoker3, fileredInvokers.get(1));
     }
 
+    @Test
+    public void testRoute_ReuseCompiledResult(){
+        Router router = new ConditionRouterFactory().getRouter(getRouteUrl("host = " + NetUtils.getLocalHost() + " => " + " host = " + NetUtils.getLocalHost()));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService")) ;
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://" + NetUtils.getLocalHost() + ":20880/com.foo.BarService")) ;
+        invokers.add(invoker1);
+        invokers.add(invoker2);
+        URL consumer = URL.valueOf("consumer://" + NetUtils.getLocalHost() + "/com.foo.BarService");
+        List<Invoker<String>> fileredInvokers = router.route(invokers, consumer, new RpcInvocation());
+        Assert.assertEquals(1, fileredInvokers.size());
+        Assert.assertEquals(invoker2, fileredInvokers.get(0));
+        Assert.assertSame(fileredInvokers, router.route(invokers, consumer, new RpcInvocation()));
+        
+        Invoker<String> invoker3 = new MockInvoker<String>(URL.valueOf("dubbo://" + NetUtils.getLocalHost() + ":20881/com.foo.BarService")) ;
+        List<Invoker<String>> refreshed = new ArrayList<Invoker<String>>(invokers);
+        refreshed.add(invoker3);
+        fileredInvokers = router.route(refreshed, consumer, new RpcInvocation());
+        Assert.assertEquals(2, fileredInvokers.size());
+        Assert.assertEquals(invoker3, fileredInvokers.get(1));
+        
+        fileredInvokers = router.route(refreshed, URL.valueOf("consumer://10.20.3.4/com.foo.BarService"), new RpcInvocation());
+        Assert.assertSame(refreshed, fileredInvokers);
+    }
+
+    @Test
+    public void testRoute_ReuseCompiledResultPerList(){
+        Router router = new ConditionRouterFactory().getRouter(getRouteUrl("host = " + NetUtils.getLocalHost() + " => " + " host = " + NetUtils.getLocalHost()));
+        Invoker<String> invoker1 = new MockInvoker<String>(URL.valueOf("dubbo://10.20.3.3:20880/com.foo.BarService")) ;
+        Invoker<String> invoker2 = new MockInvoker<String>(URL.valueOf("dubbo://" + NetUtils.getLocalHost() + ":20880/com.foo.BarService")) ;
+        // 不同方法使用各自的提供者列表，交替调用时各自的结果都应保留
+        List<Invoker<String>> method1 = new ArrayList<Invoker<String>>();
+        method1.add(invoker1);
+        method1.add(invoker2);
+        List<Invoker<String>> method2 = new ArrayList<Invoker<String>>(method1);
+        URL consumer = URL.valueOf("consumer://" + NetUtils.getLocalHost() + "/com.foo.BarService");
+        List<Invoker<String>> result1 = router.route(method1, consumer, new RpcInvocation());
+        List<Invoker<String>> result2 = router.route(method2, consumer, new RpcInvocation());
+        Assert.assertNotSame(result1, result2);
+        Assert.assertSame(result1, router.route(method1, consumer, new RpcInvocation()));
+        Assert.assertSame(result2, router.route(method2, consumer, new RpcInvocation()));
+    }
+
     @Test
     public void testRoute_Placeholder(){
         Router router = new ConditionRouterFactory().getRouter(getRouteUrl("host = " + NetUtils.getLocalHost() + " => " + " host = $host"));
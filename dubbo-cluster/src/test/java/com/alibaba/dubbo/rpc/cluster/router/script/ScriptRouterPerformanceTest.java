@@ -0,0 +1,108 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.router.script;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineManager;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.cluster.Router;
+import com.alibaba.dubbo.rpc.cluster.router.MockInvoker;
+
+/**
+ * 比较每次调用编译脚本(原实现)、预编译、预编译加结果缓存三种方式的单次路由耗时。
+ * 
+ * <pre>
+ * mvn test -Dtest=ScriptRouterPerformanceTest -Dperformance=true -Druns=10000
+ * </pre>
+ */
+public class ScriptRouterPerformanceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptRouterPerformanceTest.class);
+
+    private static final String RULE = "function route(invokers){ var result = new java.util.ArrayList(invokers.size());"
+            + " for (i = 0; i < invokers.size(); i ++) { if (invokers.get(i).isAvailable()) { result.add(invokers.get(i)); } }"
+            + " return result; } route(invokers)";
+
+    @Test
+    public void testRoute() throws Exception {
+        if (System.getProperty("performance") == null) {
+            logger.warn("Please set -Dperformance=true");
+            return;
+        }
+        int runs = Integer.getInteger("runs", 10000);
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        for (int i = 0; i < 20; i ++) {
+            invokers.add(new MockInvoker<String>(i % 2 == 0));
+        }
+        Invocation invocation = new RpcInvocation();
+        URL url = URL.valueOf("script://javascript?type=javascript").addParameterAndEncoded(Constants.RULE_KEY, RULE);
+        Router router = new ScriptRouterFactory().getRouter(url);
+        Router cachedRouter = new ScriptRouterFactory().getRouter(url.addParameter(Constants.CACHE_KEY, true));
+        ScriptEngine engine = new ScriptEngineManager().getEngineByName("javascript");
+
+        // 预热
+        for (int i = 0; i < runs / 10; i ++) {
+            compileEveryTime(engine, invokers, invocation);
+            router.route(invokers, url, invocation);
+            cachedRouter.route(invokers, url, invocation);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < runs; i ++) {
+            compileEveryTime(engine, invokers, invocation);
+        }
+        long compiled = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i ++) {
+            router.route(invokers, url, invocation);
+        }
+        long precompiled = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        for (int i = 0; i < runs; i ++) {
+            cachedRouter.route(invokers, url, invocation);
+        }
+        long cached = System.nanoTime() - start;
+
+        logger.info("compile per call: " + compiled / runs + "ns/op, precompiled: " + precompiled / runs
+                + "ns/op, precompiled and cached: " + cached / runs + "ns/op");
+    }
+
+    private static Object compileEveryTime(ScriptEngine engine, List<Invoker<String>> invokers, Invocation invocation) throws Exception {
+        Bindings bindings = engine.createBindings();
+        bindings.put("invokers", new ArrayList<Invoker<String>>(invokers));
+        bindings.put("invocation", invocation);
+        bindings.put("context", RpcContext.getContext());
+        return ((Compilable) engine).compile(RULE).eval(bindings);
+    }
+
+}
@@ -18,6 +18,7 @@ package com.alibaba.dubbo.rpc.cluster.router.script;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import junit.framework.Assert;
 
@@ -84,5 +85,62 @@ public class ScriptRouterTest {
         Assert.assertEquals(invoker2, fileredInvokers.get(0));
         Assert.assertEquals(invoker3, fileredInvokers.get(1));
     }
+
+    @Test
+    public void testRoute_CacheByInvokers(){
+        String script = "function route(invokers){ var result = new java.util.ArrayList(); result.add(invokers.get(0)); return result; } route(invokers)";
+        Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script).addParameter(Constants.CACHE_KEY, true));
+        List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>());
+        invokers.add(new MockInvoker<String>());
+        List<Invoker<String>> fileredInvokers = router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation());
+        Assert.assertEquals(1, fileredInvokers.size());
+        Assert.assertSame(fileredInvokers, router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation()));
+        
+        List<Invoker<String>> refreshed = new ArrayList<Invoker<String>>(invokers);
+        refreshed.remove(0);
+        List<Invoker<String>> refreshedInvokers = router.route(refreshed, refreshed.get(0).getUrl(), new RpcInvocation());
+        Assert.assertEquals(1, refreshedInvokers.size());
+        Assert.assertEquals(refreshed.get(0), refreshedInvokers.get(0));
+        // 不同方法的列表交替路由时互不覆盖缓存
+        Assert.assertSame(fileredInvokers, router.route(invokers, invokers.get(0).getUrl(), new RpcInvocation()));
+        Assert.assertSame(refreshedInvokers, router.route(refreshed, refreshed.get(0).getUrl(), new RpcInvocation()));
+    }
+    
+    @Test
+    public void testRoute_Concurrent() throws Exception {
+        String script = "function route(invokers,invocation){ var result = new java.util.ArrayList(); result.add(invokers.get(invocation.getMethodName() == 'a' ? 0 : 1)); return result; } route(invokers,invocation)";
+        final Router router = new ScriptRouterFactory().getRouter(getRouteUrl(script));
+        final List<Invoker<String>> invokers = new ArrayList<Invoker<String>>();
+        invokers.add(new MockInvoker<String>());
+        invokers.add(new MockInvoker<String>());
+        final AtomicInteger errors = new AtomicInteger();
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i ++) {
+            final String method = i % 2 == 0 ? "a" : "b";
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    RpcInvocation invocation = new RpcInvocation();
+                    invocation.setMethodName(method);
+                    for (int j = 0; j < 200; j ++) {
+                        List<Invoker<String>> routed = router.route(invokers, invokers.get(0).getUrl(), invocation);
+                        if (routed.size() != 1 || routed.get(0) != invokers.get("a".equals(method) ? 0 : 1)) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, errors.get());
+    }
+    
+    @Test(expected = IllegalStateException.class)
+    public void testRoute_CompileError(){
+        new ScriptRouterFactory().getRouter(getRouteUrl("function route(invokers){ return invokers"));
+    }
     //TODO 异常场景测试。
 }
\ No newline at end of file
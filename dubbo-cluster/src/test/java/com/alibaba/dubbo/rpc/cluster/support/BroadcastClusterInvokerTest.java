@@ -0,0 +1,106 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.cluster.support;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.easymock.EasyMock;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.cluster.Directory;
+
+/**
+ * BroadcastClusterInvokerTest
+ */
+@SuppressWarnings("unchecked")
+public class BroadcastClusterInvokerTest {
+
+    public interface ListService {
+        List<String> list();
+    }
+
+    RpcInvocation invocation = new RpcInvocation("list", new Class<?>[0], new Object[0]);
+
+    private Invoker<ListService> mockInvoker(int port, Result result, RpcException exception) {
+        Invoker<ListService> invoker = EasyMock.createMock(Invoker.class);
+        if (exception == null) {
+            EasyMock.expect(invoker.invoke(EasyMock.<Invocation>anyObject())).andReturn(result).anyTimes();
+        } else {
+            EasyMock.expect(invoker.invoke(EasyMock.<Invocation>anyObject())).andThrow(exception).anyTimes();
+        }
+        EasyMock.expect(invoker.getUrl()).andReturn(URL.valueOf("dubbo://127.0.0.1:" + port + "/" + ListService.class.getName())).anyTimes();
+        EasyMock.expect(invoker.isAvailable()).andReturn(true).anyTimes();
+        EasyMock.expect(invoker.getInterface()).andReturn(ListService.class).anyTimes();
+        EasyMock.replay(invoker);
+        return invoker;
+    }
+
+    private BroadcastClusterInvoker<ListService> broadcast(String parameters, List<Invoker<ListService>> invokers) {
+        Directory<ListService> dic = EasyMock.createMock(Directory.class);
+        EasyMock.expect(dic.getUrl()).andReturn(URL.valueOf("test://127.0.0.1/" + ListService.class.getName() + "?" + parameters)).anyTimes();
+        EasyMock.expect(dic.list(invocation)).andReturn(invokers).anyTimes();
+        EasyMock.expect(dic.getInterface()).andReturn(ListService.class).anyTimes();
+        EasyMock.replay(dic);
+        return new BroadcastClusterInvoker<ListService>(dic);
+    }
+
+    @Test
+    public void testParallelMerge() {
+        List<Invoker<ListService>> invokers = new ArrayList<Invoker<ListService>>();
+        for (int i = 0; i < 5; i ++) {
+            invokers.add(mockInvoker(20880 + i, new RpcResult(Arrays.asList("v" + i)), null));
+        }
+        Result result = broadcast("broadcast.concurrency=2&merger=true", invokers).invoke(invocation);
+        Assert.assertEquals(Arrays.asList("v0", "v1", "v2", "v3", "v4"), result.getValue());
+    }
+
+    @Test
+    public void testParallelPartialFailure() {
+        List<Invoker<ListService>> invokers = new ArrayList<Invoker<ListService>>();
+        invokers.add(mockInvoker(20880, new RpcResult(Arrays.asList("v0")), null));
+        invokers.add(mockInvoker(20881, null, new RpcException(RpcException.NETWORK_EXCEPTION, "connection refused")));
+        invokers.add(mockInvoker(20882, new RpcResult(Arrays.asList("v2")), null));
+        try {
+            broadcast("broadcast.concurrency=3", invokers).invoke(invocation);
+            Assert.fail();
+        } catch (RpcException expected) {
+            Assert.assertTrue(expected.isNetwork());
+            Assert.assertTrue(expected.getMessage().contains("1 of 3 providers failed"));
+            Assert.assertTrue(expected.getMessage().contains("127.0.0.1:20881"));
+        }
+    }
+
+    @Test
+    public void testSequentialReturnsLastResult() {
+        List<Invoker<ListService>> invokers = new ArrayList<Invoker<ListService>>();
+        invokers.add(mockInvoker(20880, new RpcResult(Arrays.asList("v0")), null));
+        invokers.add(mockInvoker(20881, new RpcResult(Arrays.asList("v1")), null));
+        Result result = broadcast("broadcast.concurrency=0", invokers).invoke(invocation);
+        Assert.assertEquals(Arrays.asList("v1"), result.getValue());
+    }
+
+}
@@ -23,14 +23,19 @@ import java.util.List;
 import junit.framework.Assert;
 
 import org.easymock.EasyMock;
+import org.easymock.IAnswer;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcInvocation;
 import com.alibaba.dubbo.rpc.RpcResult;
@@ -83,19 +88,19 @@ public class ForkingClusterInvokerTest {
 
     private void resetInvokerToException() {
         EasyMock.reset(invoker1);
-        EasyMock.expect(invoker1.invoke(invocation)).andThrow(new RuntimeException()).anyTimes();
+        EasyMock.expect(invoker1.invoke(EasyMock.<Invocation>anyObject())).andThrow(new RuntimeException()).anyTimes();
         EasyMock.expect(invoker1.getUrl()).andReturn(url).anyTimes();
         EasyMock.expect(invoker1.isAvailable()).andReturn(true).anyTimes();
         EasyMock.expect(invoker1.getInterface()).andReturn(ForkingClusterInvokerTest.class).anyTimes();
         EasyMock.replay(invoker1);
         EasyMock.reset(invoker2);
-        EasyMock.expect(invoker2.invoke(invocation)).andThrow(new RuntimeException()).anyTimes();
+        EasyMock.expect(invoker2.invoke(EasyMock.<Invocation>anyObject())).andThrow(new RuntimeException()).anyTimes();
         EasyMock.expect(invoker2.getUrl()).andReturn(url).anyTimes();
         EasyMock.expect(invoker2.isAvailable()).andReturn(true).anyTimes();
         EasyMock.expect(invoker2.getInterface()).andReturn(ForkingClusterInvokerTest.class).anyTimes();
         EasyMock.replay(invoker2);
         EasyMock.reset(invoker3);
-        EasyMock.expect(invoker3.invoke(invocation)).andThrow(new RuntimeException()).anyTimes();
+        EasyMock.expect(invoker3.invoke(EasyMock.<Invocation>anyObject())).andThrow(new RuntimeException()).anyTimes();
         EasyMock.expect(invoker3.getUrl()).andReturn(url).anyTimes();
         EasyMock.expect(invoker3.isAvailable()).andReturn(true).anyTimes();
         EasyMock.expect(invoker3.getInterface()).andReturn(ForkingClusterInvokerTest.class).anyTimes();
@@ -104,25 +109,41 @@ public class ForkingClusterInvokerTest {
 
     private void resetInvokerToNoException() {
         EasyMock.reset(invoker1);
-        EasyMock.expect(invoker1.invoke(invocation)).andReturn(result).anyTimes();
+        EasyMock.expect(invoker1.invoke(EasyMock.<Invocation>anyObject())).andReturn(result).anyTimes();
         EasyMock.expect(invoker1.getUrl()).andReturn(url).anyTimes();
         EasyMock.expect(invoker1.isAvailable()).andReturn(true).anyTimes();
         EasyMock.expect(invoker1.getInterface()).andReturn(ForkingClusterInvokerTest.class).anyTimes();
         EasyMock.replay(invoker1);
         EasyMock.reset(invoker2);
-        EasyMock.expect(invoker2.invoke(invocation)).andReturn(result).anyTimes();
+        EasyMock.expect(invoker2.invoke(EasyMock.<Invocation>anyObject())).andReturn(result).anyTimes();
         EasyMock.expect(invoker2.getUrl()).andReturn(url).anyTimes();
         EasyMock.expect(invoker2.isAvailable()).andReturn(true).anyTimes();
         EasyMock.expect(invoker2.getInterface()).andReturn(ForkingClusterInvokerTest.class).anyTimes();
         EasyMock.replay(invoker2);
         EasyMock.reset(invoker3);
-        EasyMock.expect(invoker3.invoke(invocation)).andReturn(result).anyTimes();
+        EasyMock.expect(invoker3.invoke(EasyMock.<Invocation>anyObject())).andReturn(result).anyTimes();
         EasyMock.expect(invoker3.getUrl()).andReturn(url).anyTimes();
         EasyMock.expect(invoker3.isAvailable()).andReturn(true).anyTimes();
         EasyMock.expect(invoker3.getInterface()).andReturn(ForkingClusterInvokerTest.class).anyTimes();
         EasyMock.replay(invoker3);
     }
 
+    private void resetInvokerToFuture(Invoker<ForkingClusterInvokerTest> invoker, final ListenableFuture<Object> future) {
+        EasyMock.reset(invoker);
+        EasyMock.expect(invoker.invoke(EasyMock.<Invocation>anyObject())).andAnswer(new IAnswer<Result>() {
+            public Result answer() throws Throwable {
+                Invocation branch = (Invocation) EasyMock.getCurrentArguments()[0];
+                Assert.assertEquals("true", branch.getAttachment(Constants.ASYNC_KEY));
+                RpcContext.getContext().setFuture(future);
+                return new RpcResult();
+            }
+        }).anyTimes();
+        EasyMock.expect(invoker.getUrl()).andReturn(url).anyTimes();
+        EasyMock.expect(invoker.isAvailable()).andReturn(true).anyTimes();
+        EasyMock.expect(invoker.getInterface()).andReturn(ForkingClusterInvokerTest.class).anyTimes();
+        EasyMock.replay(invoker);
+    }
+
     @Test
     public void testInvokeExceptoin() {
         resetInvokerToException();
@@ -138,6 +159,24 @@ public class ForkingClusterInvokerTest {
         }
     }
 
+    @Test
+    public void testInvokeAsyncBranches() {
+        SettableFuture<Object> pending = new SettableFuture<Object>();
+        SettableFuture<Object> done = new SettableFuture<Object>();
+        done.set("ok");
+        resetInvokerToFuture(invoker1, pending);
+        resetInvokerToFuture(invoker2, done);
+        resetInvokerToFuture(invoker3, done);
+
+        ForkingClusterInvoker<ForkingClusterInvokerTest> invoker = new ForkingClusterInvoker<ForkingClusterInvokerTest>(
+                                                                                                                        dic);
+        Result ret = invoker.invoke(invocation);
+        Assert.assertEquals("ok", ret.getValue());
+        Assert.assertNull(RpcContext.getContext().getFuture());
+        // the branches are invoked with copies, the caller's invocation stays synchronous.
+        Assert.assertNull(invocation.getAttachment(Constants.ASYNC_KEY));
+    }
+
     @Test()
     public void testInvokeNoExceptoin() {
 
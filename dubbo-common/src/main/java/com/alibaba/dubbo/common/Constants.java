@@ -86,6 +86,8 @@ public class Constants {
 
     public static final String  DEFAULT_LOADBALANCE                = "random";
 
+    public static final String  PEAKEWMA_LOADBALANCE               = "peakewma";
+
     public static final String  DEFAULT_PROTOCOL                   = "dubbo";
 
     public static final String  DEFAULT_EXCHANGER                  = "header";
@@ -134,6 +136,11 @@ public class Constants {
 
     public static final int     DEFAULT_CONNECT_TIMEOUT            = 3000;
 
+    // response timeouts fire at most one tick late.
+    public static final int     DEFAULT_FUTURE_TIMER_TICK          = 10;
+
+    public static final int     DEFAULT_FUTURE_TIMER_TICKS_PER_WHEEL = 512;
+
     public static final int     DEFAULT_RETRIES                    = 2;
 
     // default buffer size is 8k.
@@ -200,6 +207,10 @@ public class Constants {
 
     public static final String  FORKS_KEY                          = "forks";
 
+    public static final String  BROADCAST_CONCURRENCY_KEY          = "broadcast.concurrency";
+
+    public static final String  BROADCAST_TIMEOUT_KEY              = "broadcast.timeout";
+
     public static final String  DEFAULT_THREADPOOL                 = "limited";
 
     public static final String  DEFAULT_CLIENT_THREADPOOL          = "cached";
@@ -222,8 +233,21 @@ public class Constants {
 
     public static final String  BUFFER_KEY                         = "buffer";
 
+    // channel buffer factory extension used by the transports: heap, direct or pooled.
+    public static final String  BUFFER_FACTORY_KEY                 = "buffer.factory";
+
+    public static final String  DEFAULT_BUFFER_FACTORY             = "heap";
+
     public static final String  PAYLOAD_KEY                        = "payload";
 
+    // max messages per batched channel write, batching is off unless greater than 1.
+    public static final String  WRITE_BATCH_KEY                    = "writebatch";
+
+    // max milliseconds a batched write may wait for more messages, 0 only combines concurrent writes.
+    public static final String  WRITE_BATCH_DELAY_KEY              = "writebatch.delay";
+
+    public static final int     DEFAULT_WRITE_BATCH_DELAY          = 0;
+
     public static final String  REFERENCE_FILTER_KEY               = "reference.filter";
 
     public static final String  INVOKER_LISTENER_KEY               = "invoker.listener";
@@ -563,6 +587,30 @@ public class Constants {
 
     public static final long DEFAULT_TPS_LIMIT_INTERVAL            = 60 * 1000;
 
+    public static final String TPS_LIMITER_KEY                     = "tps.limiter";
+
+    public static final String TOKEN_BUCKET_TPS_LIMITER            = "bucket";
+
+    public static final String TPS_LIMIT_SCOPE_KEY                 = "tps.scope";
+
+    public static final String APPLICATION_TPS_LIMIT_SCOPE         = "application";
+
+    public static final String ADAPTIVE_LIMIT_KEY                  = "adaptive.limit";
+
+    public static final String ADAPTIVE_LIMIT_INITIAL_KEY          = "adaptive.limit.initial";
+
+    public static final String ADAPTIVE_LIMIT_MAX_KEY              = "adaptive.limit.max";
+
+    public static final String VEGAS_ADAPTIVE_LIMIT                = "vegas";
+
+    public static final String GRADIENT_ADAPTIVE_LIMIT             = "gradient";
+
+    public static final String DEFAULT_ADAPTIVE_LIMIT              = VEGAS_ADAPTIVE_LIMIT;
+
+    public static final int DEFAULT_ADAPTIVE_LIMIT_INITIAL         = 20;
+
+    public static final int DEFAULT_ADAPTIVE_LIMIT_MAX             = 1000;
+
     public static final String DECODE_IN_IO_THREAD_KEY             = "decode.in.io";
 
     public static final boolean DEFAULT_DECODE_IN_IO_THREAD        = true;
@@ -103,6 +103,8 @@ public final class URL implements Serializable {
 
     private volatile transient String string;
 
+    private volatile transient String serviceKey;
+
     protected URL() {
         this.protocol = null;
         this.username = null;
@@ -1168,6 +1170,9 @@ public final class URL implements Serializable {
     }
 
     public String getServiceKey() {
+        if (serviceKey != null) {
+            return serviceKey;
+        }
         String inf = getServiceInterface();
         if (inf == null) return null;
         StringBuilder buf = new StringBuilder();
@@ -1180,7 +1185,7 @@ public final class URL implements Serializable {
         if (version != null && version.length() > 0) {
             buf.append(":").append(version);
         }
-        return buf.toString();
+        return serviceKey = buf.toString();
     }
 
     public String toServiceString() {
@@ -0,0 +1,32 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.concurrent;
+
+/**
+ * Function applied to the result of a {@link ListenableFuture}.
+ */
+public interface Function<F, T> {
+
+    /**
+     * apply.
+     *
+     * @param input result of the source future.
+     * @return output.
+     * @throws Exception fails the resulting future.
+     */
+    T apply(F input) throws Exception;
+
+}
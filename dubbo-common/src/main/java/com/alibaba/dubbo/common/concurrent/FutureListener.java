@@ -0,0 +1,37 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.concurrent;
+
+/**
+ * Listener of a {@link ListenableFuture}.
+ */
+public interface FutureListener<V> {
+
+    /**
+     * the future completed normally.
+     *
+     * @param result result.
+     */
+    void onSuccess(V result);
+
+    /**
+     * the future completed exceptionally.
+     *
+     * @param cause cause.
+     */
+    void onFailure(Throwable cause);
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.concurrent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Factory and fan-in helpers for {@link ListenableFuture}.
+ */
+public class Futures {
+
+    public static <V> ListenableFuture<V> immediateFuture(V value) {
+        SettableFuture<V> future = new SettableFuture<V>();
+        future.set(value);
+        return future;
+    }
+
+    public static <V> ListenableFuture<V> immediateFailedFuture(Throwable exception) {
+        SettableFuture<V> future = new SettableFuture<V>();
+        future.setException(exception);
+        return future;
+    }
+
+    /**
+     * create a future completed with the results of all the given futures, in order,
+     * or failed with the first failure. no thread waits on the given futures.
+     *
+     * @param futures futures.
+     * @return future of all results.
+     */
+    public static <V> ListenableFuture<List<V>> allAsList(List<? extends ListenableFuture<? extends V>> futures) {
+        final SettableFuture<List<V>> result = new SettableFuture<List<V>>();
+        final int size = futures.size();
+        if (size == 0) {
+            result.set(Collections.<V>emptyList());
+            return result;
+        }
+        final Object[] values = new Object[size];
+        final AtomicInteger remaining = new AtomicInteger(size);
+        for (int i = 0; i < size; i ++) {
+            final int index = i;
+            futures.get(i).addListener(new FutureListener<V>() {
+                @SuppressWarnings("unchecked")
+                public void onSuccess(V value) {
+                    values[index] = value;
+                    if (remaining.decrementAndGet() == 0) {
+                        result.set(new ArrayList<V>((List<V>) Arrays.asList(values)));
+                    }
+                }
+
+                public void onFailure(Throwable cause) {
+                    result.setException(cause);
+                }
+            });
+        }
+        return result;
+    }
+
+    private Futures() {
+    }
+
+}
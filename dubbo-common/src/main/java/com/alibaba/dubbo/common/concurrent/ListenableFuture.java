@@ -0,0 +1,54 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.concurrent;
+
+import java.util.concurrent.Future;
+
+/**
+ * A {@link Future} that accepts completion listeners, so that results can be consumed,
+ * chained and fanned in without blocking a thread per outstanding future.
+ * <p>
+ * Listeners run on the thread that completes the future, or on the registering thread
+ * when the future has already completed, so they should be short and non-blocking.
+ */
+public interface ListenableFuture<V> extends Future<V> {
+
+    /**
+     * add a listener which is notified exactly once when this future completes.
+     *
+     * @param listener listener.
+     */
+    void addListener(FutureListener<? super V> listener);
+
+    /**
+     * create a future completed with the result of applying the function to the result of this future.
+     * a failure of this future or of the function fails the returned future.
+     *
+     * @param function function.
+     * @return transformed future.
+     */
+    <R> ListenableFuture<R> transform(Function<? super V, ? extends R> function);
+
+    /**
+     * create a future completed with the result of the future returned by the function,
+     * so that dependent asynchronous calls can be chained.
+     *
+     * @param function function returning the next future.
+     * @return composed future.
+     */
+    <R> ListenableFuture<R> compose(Function<? super V, ? extends ListenableFuture<R>> function);
+
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.concurrent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * A {@link ListenableFuture} completed explicitly by {@link #set(Object)} or {@link #setException(Throwable)}.
+ */
+public class SettableFuture<V> implements ListenableFuture<V> {
+
+    private static final Logger logger = LoggerFactory.getLogger(SettableFuture.class);
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // guarded by this, null once completed.
+    private List<FutureListener<? super V>> listeners = new ArrayList<FutureListener<? super V>>(1);
+
+    private volatile boolean completed;
+
+    private V value;
+
+    private Throwable exception;
+
+    private boolean cancelled;
+
+    public boolean set(V value) {
+        return complete(value, null, false);
+    }
+
+    public boolean setException(Throwable exception) {
+        if (exception == null) {
+            throw new NullPointerException("exception == null");
+        }
+        return complete(null, exception, false);
+    }
+
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, new CancellationException("future has been cancelled."), true);
+    }
+
+    public boolean isCancelled() {
+        if (! completed) {
+            return false;
+        }
+        synchronized (this) {
+            return cancelled;
+        }
+    }
+
+    public boolean isDone() {
+        return completed;
+    }
+
+    public V get() throws InterruptedException, ExecutionException {
+        done.await();
+        return report();
+    }
+
+    public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (! done.await(timeout, unit)) {
+            throw new TimeoutException("Waiting future timeout, timeout: " + unit.toMillis(timeout) + " ms");
+        }
+        return report();
+    }
+
+    public void addListener(FutureListener<? super V> listener) {
+        if (listener == null) {
+            throw new NullPointerException("listener == null");
+        }
+        synchronized (this) {
+            if (listeners != null) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        notifyListener(listener);
+    }
+
+    public <R> ListenableFuture<R> transform(final Function<? super V, ? extends R> function) {
+        final SettableFuture<R> future = new SettableFuture<R>();
+        addListener(new FutureListener<V>() {
+            public void onSuccess(V result) {
+                R output;
+                try {
+                    output = function.apply(result);
+                } catch (Throwable t) {
+                    future.setException(t);
+                    return;
+                }
+                future.set(output);
+            }
+
+            public void onFailure(Throwable cause) {
+                future.setException(cause);
+            }
+        });
+        return future;
+    }
+
+    public <R> ListenableFuture<R> compose(final Function<? super V, ? extends ListenableFuture<R>> function) {
+        final SettableFuture<R> future = new SettableFuture<R>();
+        addListener(new FutureListener<V>() {
+            public void onSuccess(V result) {
+                ListenableFuture<R> next;
+                try {
+                    next = function.apply(result);
+                } catch (Throwable t) {
+                    future.setException(t);
+                    return;
+                }
+                if (next == null) {
+                    future.set(null);
+                } else {
+                    next.addListener(new FutureListener<R>() {
+                        public void onSuccess(R result) {
+                            future.set(result);
+                        }
+
+                        public void onFailure(Throwable cause) {
+                            future.setException(cause);
+                        }
+                    });
+                }
+            }
+
+            public void onFailure(Throwable cause) {
+                future.setException(cause);
+            }
+        });
+        return future;
+    }
+
+    private boolean complete(V value, Throwable exception, boolean cancelled) {
+        List<FutureListener<? super V>> pending;
+        synchronized (this) {
+            if (listeners == null) {
+                return false;
+            }
+            this.value = value;
+            this.exception = exception;
+            this.cancelled = cancelled;
+            pending = listeners;
+            listeners = null;
+        }
+        completed = true;
+        done.countDown();
+        for (FutureListener<? super V> listener : pending) {
+            notifyListener(listener);
+        }
+        return true;
+    }
+
+    private void notifyListener(FutureListener<? super V> listener) {
+        V v;
+        Throwable t;
+        synchronized (this) {
+            v = value;
+            t = exception;
+        }
+        try {
+            if (t == null) {
+                listener.onSuccess(v);
+            } else {
+                listener.onFailure(t);
+            }
+        } catch (Throwable e) {
+            logger.error("Failed to notify future listener " + listener + ", cause: " + e.getMessage(), e);
+        }
+    }
+
+    private V report() throws ExecutionException {
+        V v;
+        Throwable t;
+        synchronized (this) {
+            v = value;
+            t = exception;
+        }
+        if (t instanceof CancellationException) {
+            throw (CancellationException) t;
+        }
+        if (t != null) {
+            throw new ExecutionException(t);
+        }
+        return v;
+    }
+
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+/**
+ * 分段计数器。
+ * <p>
+ * 无竞争时只更新一个AtomicLong；CAS首次失败后按线程分散到多个相互隔开缓存行的槽位，
+ * 读取时求和。适合写多读少的统计计数，只有真正热点的计数器才会占用分段内存。
+ */
+public class StripedCounter {
+
+    // 每个槽位占用16个long(128字节)，避免相邻槽位伪共享
+    private static final int PADDING = 16;
+
+    private static final int STRIPE_BITS = stripeBits();
+
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    private static final AtomicReferenceFieldUpdater<StripedCounter, AtomicLongArray> CELLS_UPDATER
+            = AtomicReferenceFieldUpdater.newUpdater(StripedCounter.class, AtomicLongArray.class, "cells");
+
+    private final AtomicLong base = new AtomicLong();
+
+    private volatile AtomicLongArray cells;
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void decrement() {
+        add(-1L);
+    }
+
+    public void add(long x) {
+        AtomicLongArray cs = cells;
+        if (cs == null) {
+            long v = base.get();
+            if (base.compareAndSet(v, v + x)) {
+                return;
+            }
+            cs = inflate();
+        }
+        cs.getAndAdd(index(), x);
+    }
+
+    /**
+     * 当前总和。与并发的更新之间不是原子快照。
+     * 
+     * @return sum
+     */
+    public long sum() {
+        long sum = base.get();
+        AtomicLongArray cs = cells;
+        if (cs != null) {
+            for (int i = 0; i < cs.length(); i += PADDING) {
+                sum += cs.get(i);
+            }
+        }
+        return sum;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(sum());
+    }
+
+    private AtomicLongArray inflate() {
+        AtomicLongArray cs = cells;
+        if (cs == null) {
+            CELLS_UPDATER.compareAndSet(this, null, new AtomicLongArray(STRIPES * PADDING));
+            cs = cells;
+        }
+        return cs;
+    }
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h >>> (32 - STRIPE_BITS)) * PADDING;
+    }
+
+    private static int stripeBits() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int bits = 1;
+        while ((1 << bits) < processors && bits < 6) {
+            bits ++;
+        }
+        return bits;
+    }
+
+}
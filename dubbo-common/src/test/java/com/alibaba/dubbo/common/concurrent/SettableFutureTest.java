@@ -0,0 +1,149 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.concurrent;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SettableFutureTest {
+
+    @Test
+    public void testListenerBeforeAndAfterCompletion() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        FutureListener<String> listener = new FutureListener<String>() {
+            public void onSuccess(String result) {
+                count.incrementAndGet();
+            }
+
+            public void onFailure(Throwable cause) {
+            }
+        };
+        SettableFuture<String> future = new SettableFuture<String>();
+        future.addListener(listener);
+        assertEquals(0, count.get());
+        assertTrue(future.set("hello"));
+        assertFalse(future.set("again"));
+        assertEquals(1, count.get());
+        future.addListener(listener);
+        assertEquals(2, count.get());
+        assertEquals("hello", future.get());
+    }
+
+    @Test
+    public void testException() throws Exception {
+        final AtomicReference<Throwable> caught = new AtomicReference<Throwable>();
+        SettableFuture<String> future = new SettableFuture<String>();
+        future.addListener(new FutureListener<String>() {
+            public void onSuccess(String result) {
+            }
+
+            public void onFailure(Throwable cause) {
+                caught.set(cause);
+            }
+        });
+        IllegalStateException exception = new IllegalStateException();
+        future.setException(exception);
+        assertSame(exception, caught.get());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertSame(exception, expected.getCause());
+        }
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testGetTimeout() throws Exception {
+        new SettableFuture<String>().get(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testTransformAndCompose() throws Exception {
+        SettableFuture<String> source = new SettableFuture<String>();
+        final SettableFuture<Integer> next = new SettableFuture<Integer>();
+        ListenableFuture<Integer> length = source.transform(new Function<String, Integer>() {
+            public Integer apply(String input) {
+                return input.length();
+            }
+        });
+        ListenableFuture<Integer> composed = length.compose(new Function<Integer, ListenableFuture<Integer>>() {
+            public ListenableFuture<Integer> apply(Integer input) {
+                return next;
+            }
+        });
+        source.set("hello");
+        assertEquals(Integer.valueOf(5), length.get());
+        assertFalse(composed.isDone());
+        next.set(42);
+        assertEquals(Integer.valueOf(42), composed.get());
+    }
+
+    @Test
+    public void testTransformFailure() throws Exception {
+        SettableFuture<String> source = new SettableFuture<String>();
+        ListenableFuture<Integer> length = source.transform(new Function<String, Integer>() {
+            public Integer apply(String input) {
+                throw new IllegalArgumentException(input);
+            }
+        });
+        source.set("hello");
+        try {
+            length.get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalArgumentException);
+        }
+    }
+
+    @Test
+    public void testAllAsList() throws Exception {
+        List<SettableFuture<Integer>> futures = new ArrayList<SettableFuture<Integer>>();
+        for (int i = 0; i < 3; i++) {
+            futures.add(new SettableFuture<Integer>());
+        }
+        ListenableFuture<List<Integer>> all = Futures.allAsList(futures);
+        futures.get(2).set(2);
+        futures.get(0).set(0);
+        assertFalse(all.isDone());
+        futures.get(1).set(1);
+        assertEquals(Arrays.asList(0, 1, 2), all.get());
+
+        List<ListenableFuture<Integer>> failing = new ArrayList<ListenableFuture<Integer>>();
+        failing.add(Futures.immediateFuture(1));
+        failing.add(Futures.<Integer>immediateFailedFuture(new IllegalStateException()));
+        try {
+            Futures.allAsList(failing).get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.serialize;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.com.caucho.hessian.io.Hessian2Input;
+import com.alibaba.com.caucho.hessian.io.Hessian2Output;
+import com.alibaba.com.caucho.hessian.io.SerializerFactory;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.serialize.SerializationCompareTest.Bean;
+
+/**
+ * 多线程共享同一个SerializerFactory时，Hessian2序列化/反序列化的吞吐随线程数的变化。
+ * 
+ * <pre>
+ * mvn test -Dtest=SerializerFactoryPerformanceTest -Dperformance=true -Druns=100000
+ * </pre>
+ */
+public class SerializerFactoryPerformanceTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(SerializerFactoryPerformanceTest.class);
+
+    private static final int[] THREADS = { 1, 2, 4, 8, 16 };
+
+    @Test
+    public void testSharedFactory() throws Exception {
+        if (System.getProperty("performance") == null) {
+            logger.warn("Please set -Dperformance=true");
+            return;
+        }
+        int runs = Integer.getInteger("runs", 100000);
+        SerializerFactory factory = new SerializerFactory();
+        Bean bean = new Bean();
+
+        // 预热
+        run(factory, bean, 1, runs / 10);
+
+        for (int threads : THREADS) {
+            long elapsed = run(factory, bean, threads, runs);
+            long total = (long) threads * runs;
+            logger.info(threads + " threads: " + elapsed / total + "ns/op, "
+                    + total * 1000000000L / elapsed + " ops/s");
+        }
+    }
+
+    private static long run(final SerializerFactory factory, final Bean bean, int threads, final int runs) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threads);
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+        for (int i = 0; i < threads; i ++) {
+            Thread thread = new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        start.await();
+                        for (int j = 0; j < runs; j ++) {
+                            roundTrip(factory, bean);
+                        }
+                    } catch (Throwable t) {
+                        error.compareAndSet(null, t);
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }, "SerializerFactoryPerformanceTest-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - begin;
+        if (error.get() != null) {
+            throw new IllegalStateException(error.get().getMessage(), error.get());
+        }
+        return elapsed;
+    }
+
+    private static void roundTrip(SerializerFactory factory, Bean bean) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Hessian2Output out = new Hessian2Output(os);
+        out.setSerializerFactory(factory);
+        out.writeObject(bean);
+        out.flushBuffer();
+        Hessian2Input in = new Hessian2Input(new ByteArrayInputStream(os.toByteArray()));
+        in.setSerializerFactory(factory);
+        Assert.assertEquals(Bean.class, in.readObject().getClass());
+    }
+
+}
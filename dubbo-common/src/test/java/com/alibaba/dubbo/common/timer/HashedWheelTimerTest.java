@@ -0,0 +1,113 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.common.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+public class HashedWheelTimerTest {
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void setUp() {
+        timer = new HashedWheelTimer(new NamedThreadFactory("timer-test", true), 10, TimeUnit.MILLISECONDS, 8);
+    }
+
+    @After
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Test
+    public void testExpire() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        long start = System.currentTimeMillis();
+        Timeout timeout = timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+                latch.countDown();
+            }
+        }, 50, TimeUnit.MILLISECONDS);
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+        assertTrue(System.currentTimeMillis() - start >= 40);
+        assertTrue(timeout.isExpired());
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void testExpireAfterSeveralRounds() throws Exception {
+        final CountDownLatch latch = new CountDownLatch(1);
+        // 8 ticks of 10ms per round, so this needs more than two rounds.
+        timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+                latch.countDown();
+            }
+        }, 250, TimeUnit.MILLISECONDS);
+        assertFalse(latch.await(150, TimeUnit.MILLISECONDS));
+        assertTrue(latch.await(2, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final AtomicInteger counter = new AtomicInteger();
+        TimerTask task = new TimerTask() {
+            public void run(Timeout timeout) {
+                counter.incrementAndGet();
+            }
+        };
+        Timeout cancelled = timer.newTimeout(task, 30, TimeUnit.MILLISECONDS);
+        Timeout kept = timer.newTimeout(task, 30, TimeUnit.MILLISECONDS);
+        assertTrue(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(cancelled.cancel());
+        Thread.sleep(200);
+        assertEquals(1, counter.get());
+        assertTrue(kept.isExpired());
+        assertEquals(0, timer.pendingTimeouts());
+    }
+
+    @Test
+    public void testStopReturnsUnprocessed() throws Exception {
+        timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+            }
+        }, 10, TimeUnit.SECONDS);
+        Thread.sleep(50);
+        assertEquals(1, timer.stop().size());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNewTimeoutAfterStop() throws Exception {
+        timer.start();
+        timer.stop();
+        timer.newTimeout(new TimerTask() {
+            public void run(Timeout timeout) {
+            }
+        }, 10, TimeUnit.MILLISECONDS);
+    }
+
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 定长对数线性延迟直方图，[0, 16)逐值计数，之后每个2的幂区间再等分8个桶，相对误差不超过12.5%。
+ * 记录无锁且不分配内存，可跨周期、跨节点按桶合并后再求分位数。(ThreadSafe)
+ * 
+ * @see com.alibaba.dubbo.monitor.MonitorService#HISTOGRAM
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    // 小于此值的延迟逐值计数
+    private static final int LINEAR_LIMIT = SUB_BUCKET_COUNT << 1;
+
+    // 不小于2^MAX_EXPONENT的延迟计入最后一个桶
+    private static final int MAX_EXPONENT = 32;
+
+    public static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXPONENT - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT;
+
+    private static final char ENTRY_SEPARATOR = ',';
+
+    private static final char COUNT_SEPARATOR = ':';
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    public void record(long value) {
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    public void record(long value, long count) {
+        if (count > 0) {
+            counts.addAndGet(indexOf(value), count);
+        }
+    }
+
+    public long getBucketCount(int index) {
+        return counts.get(index);
+    }
+
+    public void addBucketCount(int index, long count) {
+        if (count != 0) {
+            counts.addAndGet(index, count);
+        }
+    }
+
+    public void add(LatencyHistogram histogram) {
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            long count = histogram.counts.get(i);
+            if (count != 0) {
+                counts.addAndGet(i, count);
+            }
+        }
+    }
+
+    /**
+     * 取出当前计数并清零。
+     * 
+     * @return 取出的计数
+     */
+    public LatencyHistogram drain() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            if (counts.get(i) != 0) {
+                histogram.counts.set(i, counts.getAndSet(i, 0));
+            }
+        }
+        return histogram;
+    }
+
+    public long getCount() {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    public boolean isEmpty() {
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            if (counts.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 取得分位数，返回所在桶的上界。
+     * 
+     * @param percentile 百分位，如99.9
+     * @return 分位延迟，无数据时返回0
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long target = Math.max(1, (long) Math.ceil(p * total / 100));
+        long cumulative = 0;
+        int last = 0;
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                last = i;
+                cumulative += count;
+                if (cumulative >= target) {
+                    return highestValueOf(i);
+                }
+            }
+        }
+        // 读取期间有并发清零
+        return highestValueOf(last);
+    }
+
+    static int indexOf(long value) {
+        if (value < LINEAR_LIMIT) {
+            return value < 0 ? 0 : (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return LINEAR_LIMIT + (exponent - SUB_BUCKET_BITS - 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    static long lowestValueOf(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int exponent = (index - LINEAR_LIMIT) / SUB_BUCKET_COUNT + SUB_BUCKET_BITS + 1;
+        int sub = (index - LINEAR_LIMIT) % SUB_BUCKET_COUNT;
+        return ((long) (SUB_BUCKET_COUNT + sub)) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    static long highestValueOf(int index) {
+        if (index >= BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return lowestValueOf(index + 1) - 1;
+    }
+
+    /**
+     * 编码非空桶，格式: 桶下标:计数,桶下标:计数
+     * 
+     * @return 编码，无数据时返回空串
+     */
+    public String encode() {
+        StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < BUCKET_COUNT; i ++) {
+            long count = counts.get(i);
+            if (count != 0) {
+                if (buf.length() > 0) {
+                    buf.append(ENTRY_SEPARATOR);
+                }
+                buf.append(i).append(COUNT_SEPARATOR).append(count);
+            }
+        }
+        return buf.toString();
+    }
+
+    public static LatencyHistogram decode(String value) {
+        LatencyHistogram histogram = new LatencyHistogram();
+        if (value == null || value.length() == 0) {
+            return histogram;
+        }
+        int start = 0;
+        while (start < value.length()) {
+            int end = value.indexOf(ENTRY_SEPARATOR, start);
+            if (end < 0) {
+                end = value.length();
+            }
+            int i = value.indexOf(COUNT_SEPARATOR, start);
+            if (i < 0 || i > end) {
+                throw new IllegalArgumentException("Invalid histogram " + value);
+            }
+            int index = Integer.parseInt(value.substring(start, i));
+            if (index < 0 || index >= BUCKET_COUNT) {
+                throw new IllegalArgumentException("Invalid histogram bucket " + index + " in " + value);
+            }
+            histogram.counts.addAndGet(index, Long.parseLong(value.substring(i + 1, end)));
+            start = end + 1;
+        }
+        return histogram;
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+}
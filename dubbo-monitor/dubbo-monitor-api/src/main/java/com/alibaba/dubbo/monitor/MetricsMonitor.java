@@ -0,0 +1,36 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor;
+
+import com.alibaba.dubbo.common.URL;
+
+/**
+ * 支持预解析计数句柄的Monitor，调用方缓存getRecorder()的返回值，每次调用只需record()，
+ * 由Monitor在发送周期内汇总并构造一次统计URL。(SPI, Prototype, ThreadSafe)
+ * 
+ * @see com.alibaba.dubbo.monitor.MetricsRecorder
+ */
+public interface MetricsMonitor extends Monitor {
+
+    /**
+     * 获取统计维度对应的计数句柄，相同维度返回同一句柄。
+     * 
+     * @param statistics 统计维度，参数同collect()，但无需带计数值
+     * @return 计数句柄
+     */
+    MetricsRecorder getRecorder(URL statistics);
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.StripedCounter;
+
+/**
+ * 单个统计维度的计数句柄，累加值按线程分段计数，最大值CAS更新。(ThreadSafe)
+ * 
+ * @see com.alibaba.dubbo.monitor.MetricsMonitor#getRecorder(URL)
+ */
+public class MetricsRecorder {
+
+    public static final int SUCCESS = 0;
+
+    public static final int FAILURE = 1;
+
+    public static final int INPUT = 2;
+
+    public static final int OUTPUT = 3;
+
+    public static final int ELAPSED = 4;
+
+    public static final int CONCURRENT = 5;
+
+    public static final int MAX_INPUT = 6;
+
+    public static final int MAX_OUTPUT = 7;
+
+    public static final int MAX_ELAPSED = 8;
+
+    public static final int MAX_CONCURRENT = 9;
+
+    public static final int LENGTH = 10;
+
+    private final URL statistics;
+
+    private final StripedCounter success = new StripedCounter();
+
+    private final StripedCounter failure = new StripedCounter();
+
+    private final StripedCounter input = new StripedCounter();
+
+    private final StripedCounter output = new StripedCounter();
+
+    private final StripedCounter elapsed = new StripedCounter();
+
+    // 并发数累加值，汇总时除以调用次数得到周期内平均并发
+    private final StripedCounter concurrent = new StripedCounter();
+
+    private final AtomicLong maxInput = new AtomicLong();
+
+    private final AtomicLong maxOutput = new AtomicLong();
+
+    private final AtomicLong maxElapsed = new AtomicLong();
+
+    private final AtomicLong maxConcurrent = new AtomicLong();
+
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    public MetricsRecorder(URL statistics) {
+        if (statistics == null) {
+            throw new IllegalArgumentException("statistics == null");
+        }
+        this.statistics = statistics;
+    }
+
+    public URL getStatistics() {
+        return statistics;
+    }
+
+    public void record(boolean succeeded, long elapsed, long concurrent, long input, long output) {
+        if (succeeded) {
+            this.success.increment();
+        } else {
+            this.failure.increment();
+        }
+        histogram.record(elapsed);
+        add(elapsed, concurrent, input, output);
+    }
+
+    /**
+     * 批量计入已汇总的统计值，各调用的并发数按concurrent计。
+     * 
+     * @param histogram 延迟直方图，为null时各调用的延迟按平均值计
+     */
+    public void record(long success, long failure, long elapsed, long concurrent, long input, long output, LatencyHistogram histogram) {
+        if (success > 0) {
+            this.success.add(success);
+        }
+        if (failure > 0) {
+            this.failure.add(failure);
+        }
+        long calls = success + failure;
+        if (histogram != null) {
+            this.histogram.add(histogram);
+        } else if (calls > 0) {
+            this.histogram.record(elapsed / calls, calls);
+        }
+        add(elapsed, calls > 1 ? concurrent * calls : concurrent, input, output);
+    }
+
+    private void add(long elapsed, long concurrent, long input, long output) {
+        if (input > 0) {
+            this.input.add(input);
+            updateMax(maxInput, input);
+        }
+        if (output > 0) {
+            this.output.add(output);
+            updateMax(maxOutput, output);
+        }
+        this.elapsed.add(elapsed);
+        updateMax(maxElapsed, elapsed);
+        this.concurrent.add(concurrent);
+        updateMax(maxConcurrent, concurrent);
+    }
+
+    /**
+     * 取出上次drain()以来的统计值并清零，下标见本类常量。
+     * 
+     * @return 统计值
+     */
+    public long[] drain() {
+        long[] numbers = new long[LENGTH];
+        numbers[SUCCESS] = drain(success);
+        numbers[FAILURE] = drain(failure);
+        numbers[INPUT] = drain(input);
+        numbers[OUTPUT] = drain(output);
+        numbers[ELAPSED] = drain(elapsed);
+        long calls = numbers[SUCCESS] + numbers[FAILURE];
+        long concurrents = drain(concurrent);
+        numbers[CONCURRENT] = calls > 0 ? concurrents / calls : 0;
+        numbers[MAX_INPUT] = maxInput.getAndSet(0);
+        numbers[MAX_OUTPUT] = maxOutput.getAndSet(0);
+        numbers[MAX_ELAPSED] = maxElapsed.getAndSet(0);
+        numbers[MAX_CONCURRENT] = maxConcurrent.getAndSet(0);
+        return numbers;
+    }
+
+    /**
+     * 取出上次drainHistogram()以来的延迟直方图并清零。
+     * 
+     * @return 延迟直方图
+     */
+    public LatencyHistogram drainHistogram() {
+        return histogram.drain();
+    }
+
+    // 只减去已读取的值，读取期间新增的计数留到下个周期
+    private static long drain(StripedCounter counter) {
+        long value = counter.sum();
+        if (value != 0) {
+            counter.add(- value);
+        }
+        return value;
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return statistics.toString();
+    }
+
+}
@@ -15,6 +15,7 @@
  */
 package com.alibaba.dubbo.monitor.support;
 
+import java.net.InetSocketAddress;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -25,6 +26,8 @@ import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.monitor.MetricsMonitor;
+import com.alibaba.dubbo.monitor.MetricsRecorder;
 import com.alibaba.dubbo.monitor.Monitor;
 import com.alibaba.dubbo.monitor.MonitorFactory;
 import com.alibaba.dubbo.monitor.MonitorService;
@@ -46,8 +49,22 @@ import com.alibaba.dubbo.rpc.support.RpcUtils;
 public class MonitorFilter implements Filter {
 
     private static final Logger logger = LoggerFactory.getLogger(MonitorFilter.class);
-    
-    private final ConcurrentMap<String, AtomicInteger> concurrents = new ConcurrentHashMap<String, AtomicInteger>();
+
+    // 消费方及无远程地址时的计数句柄键
+    private static final Object NO_REMOTE = new Object();
+
+    // 服务名 -> 方法名 -> 并发计数器
+    private final ConcurrentMap<String, ConcurrentMap<String, AtomicInteger>> concurrents = new ConcurrentHashMap<String, ConcurrentMap<String, AtomicInteger>>();
+
+    // 监控中心地址|调用方向|应用|服务|地址 -> 已解析的Monitor及计数句柄
+    // 不含Invoker URL上的其它参数，注册中心推送参数变更时复用原有句柄
+    private final ConcurrentMap<String, InvokerMonitor> monitors = new ConcurrentHashMap<String, InvokerMonitor>();
+
+    // Invoker -> 已解析的句柄，命中时不再构造上面的键；
+    // 注册中心刷新后旧Invoker的条目在超出活跃句柄数MAX_STALE_INVOKERS个时整体清空，由上面的键重新解析
+    private final ConcurrentMap<Invoker<?>, InvokerMonitor> invokerMonitors = new ConcurrentHashMap<Invoker<?>, InvokerMonitor>();
+
+    private static final int MAX_STALE_INVOKERS = 256;
     
     private MonitorFactory monitorFactory;
     
@@ -60,16 +77,17 @@ public class MonitorFilter implements Filter {
         if (invoker.getUrl().hasParameter(Constants.MONITOR_KEY)) {
             RpcContext context = RpcContext.getContext(); // 提供方必须在invoke()之前获取context信息
             long start = System.currentTimeMillis(); // 记录起始时间戮
-            getConcurrent(invoker, invocation).incrementAndGet(); // 并发计数
+            AtomicInteger concurrent = getConcurrent(invoker, invocation);
+            concurrent.incrementAndGet(); // 并发计数
             try {
                 Result result = invoker.invoke(invocation); // 让调用链往下执行
-                collect(invoker, invocation, result, context, start, false);
+                collect(invoker, invocation, result, context, start, concurrent, false);
                 return result;
             } catch (RpcException e) {
-                collect(invoker, invocation, null, context, start, true);
+                collect(invoker, invocation, null, context, start, concurrent, true);
                 throw e;
             } finally {
-                getConcurrent(invoker, invocation).decrementAndGet(); // 并发计数
+                concurrent.decrementAndGet(); // 并发计数
             }
         } else {
             return invoker.invoke(invocation);
@@ -77,64 +95,158 @@ public class MonitorFilter implements Filter {
     }
     
     // 信息采集
-    private void collect(Invoker<?> invoker, Invocation invocation, Result result, RpcContext context, long start, boolean error) {
+    private void collect(Invoker<?> invoker, Invocation invocation, Result result, RpcContext context, long start, AtomicInteger concurrentCounter, boolean error) {
         try {
             // ---- 服务信息获取 ----
             long elapsed = System.currentTimeMillis() - start; // 计算调用耗时
-            int concurrent = getConcurrent(invoker, invocation).get(); // 当前并发数
-            String application = invoker.getUrl().getParameter(Constants.APPLICATION_KEY);
-            String service = invoker.getInterface().getName(); // 获取服务名称
+            int concurrent = concurrentCounter.get(); // 当前并发数
             String method = RpcUtils.getMethodName(invocation); // 获取方法名
-            URL url = invoker.getUrl().getUrlParameter(Constants.MONITOR_KEY);
-            Monitor monitor = monitorFactory.getMonitor(url);
-            int localPort;
-            String remoteKey;
-            String remoteValue;
-            if (Constants.CONSUMER_SIDE.equals(invoker.getUrl().getParameter(Constants.SIDE_KEY))) {
-                // ---- 服务消费方监控 ----
+            InvokerMonitor invokerMonitor = getInvokerMonitor(invoker);
+            boolean consumer = invokerMonitor.consumer;
+            if (consumer) {
                 context = RpcContext.getContext(); // 消费方必须在invoke()之后获取context信息
-                localPort = 0;
-                remoteKey = MonitorService.PROVIDER;
-                remoteValue = invoker.getUrl().getAddress();
-            } else {
-                // ---- 服务提供方监控 ----
-                localPort = invoker.getUrl().getPort();
-                remoteKey = MonitorService.CONSUMER;
-                remoteValue = context.getRemoteHost();
-            }
-            String input = "", output = "";
-            if (invocation.getAttachment(Constants.INPUT_KEY) != null) {
-                input = invocation.getAttachment(Constants.INPUT_KEY);
-            }
-            if (result != null && result.getAttachment(Constants.OUTPUT_KEY) != null) {
-                output = result.getAttachment(Constants.OUTPUT_KEY);
             }
-            monitor.collect(new URL(Constants.COUNT_PROTOCOL,
-                                NetUtils.getLocalHost(), localPort,
-                                service + "/" + method,
-                                MonitorService.APPLICATION, application,
-                                MonitorService.INTERFACE, service,
-                                MonitorService.METHOD, method,
-                                remoteKey, remoteValue,
-                                error ? MonitorService.FAILURE : MonitorService.SUCCESS, "1",
+            String input = invocation.getAttachment(Constants.INPUT_KEY);
+            String output = result == null ? null : result.getAttachment(Constants.OUTPUT_KEY);
+            if (invokerMonitor.monitor instanceof MetricsMonitor) {
+                // 预解析的计数句柄，不再逐次构造统计URL
+                MetricsRecorder recorder = invokerMonitor.getRecorder(invoker, method, context);
+                recorder.record(! error, elapsed, concurrent, toLong(input), toLong(output));
+            } else {
+                invokerMonitor.monitor.collect(createStatistics(invoker, method, context, consumer)
+                        .addParameters(error ? MonitorService.FAILURE : MonitorService.SUCCESS, "1",
                                 MonitorService.ELAPSED, String.valueOf(elapsed),
                                 MonitorService.CONCURRENT, String.valueOf(concurrent),
-                                Constants.INPUT_KEY, input,
-                                Constants.OUTPUT_KEY, output));
+                                Constants.INPUT_KEY, input == null ? "" : input,
+                                Constants.OUTPUT_KEY, output == null ? "" : output));
+            }
         } catch (Throwable t) {
             logger.error("Failed to monitor count service " + invoker.getUrl() + ", cause: " + t.getMessage(), t);
         }
     }
+
+    // 统计维度，不含计数值
+    private static URL createStatistics(Invoker<?> invoker, String method, RpcContext context, boolean consumer) {
+        String application = invoker.getUrl().getParameter(Constants.APPLICATION_KEY);
+        String service = invoker.getInterface().getName(); // 获取服务名称
+        int localPort;
+        String remoteKey;
+        String remoteValue;
+        if (consumer) {
+            // ---- 服务消费方监控 ----
+            localPort = 0;
+            remoteKey = MonitorService.PROVIDER;
+            remoteValue = invoker.getUrl().getAddress();
+        } else {
+            // ---- 服务提供方监控 ----
+            localPort = invoker.getUrl().getPort();
+            remoteKey = MonitorService.CONSUMER;
+            remoteValue = context.getRemoteHost();
+        }
+        return new URL(Constants.COUNT_PROTOCOL,
+                NetUtils.getLocalHost(), localPort,
+                service + "/" + method,
+                MonitorService.APPLICATION, application,
+                MonitorService.INTERFACE, service,
+                MonitorService.METHOD, method,
+                remoteKey, remoteValue);
+    }
+
+    private static long toLong(String value) {
+        if (value == null || value.length() == 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private InvokerMonitor getInvokerMonitor(Invoker<?> invoker) {
+        InvokerMonitor invokerMonitor = invokerMonitors.get(invoker);
+        if (invokerMonitor == null) {
+            invokerMonitor = resolveInvokerMonitor(invoker);
+            if (invokerMonitors.size() > monitors.size() + MAX_STALE_INVOKERS) {
+                invokerMonitors.clear();
+            }
+            invokerMonitors.put(invoker, invokerMonitor);
+        }
+        return invokerMonitor;
+    }
+
+    private InvokerMonitor resolveInvokerMonitor(Invoker<?> invoker) {
+        URL invokerUrl = invoker.getUrl();
+        String side = invokerUrl.getParameter(Constants.SIDE_KEY);
+        String key = new StringBuilder(128)
+                .append(invokerUrl.getParameter(Constants.MONITOR_KEY)).append('|')
+                .append(side).append('|')
+                .append(invokerUrl.getParameter(Constants.APPLICATION_KEY)).append('|')
+                .append(invoker.getInterface().getName()).append('|')
+                .append(invokerUrl.getAddress()).toString();
+        InvokerMonitor invokerMonitor = monitors.get(key);
+        if (invokerMonitor == null) {
+            URL url = invokerUrl.getUrlParameter(Constants.MONITOR_KEY);
+            boolean consumer = Constants.CONSUMER_SIDE.equals(side);
+            monitors.putIfAbsent(key, new InvokerMonitor(monitorFactory.getMonitor(url), consumer));
+            invokerMonitor = monitors.get(key);
+        }
+        return invokerMonitor;
+    }
     
     // 获取并发计数器
     private AtomicInteger getConcurrent(Invoker<?> invoker, Invocation invocation) {
-        String key = invoker.getInterface().getName() + "." + invocation.getMethodName();
-        AtomicInteger concurrent = concurrents.get(key);
+        String service = invoker.getInterface().getName();
+        ConcurrentMap<String, AtomicInteger> methods = concurrents.get(service);
+        if (methods == null) {
+            concurrents.putIfAbsent(service, new ConcurrentHashMap<String, AtomicInteger>());
+            methods = concurrents.get(service);
+        }
+        String method = invocation.getMethodName();
+        AtomicInteger concurrent = methods.get(method);
         if (concurrent == null) {
-            concurrents.putIfAbsent(key, new AtomicInteger());
-            concurrent = concurrents.get(key);
+            methods.putIfAbsent(method, new AtomicInteger());
+            concurrent = methods.get(method);
         }
         return concurrent;
     }
 
+    private static class InvokerMonitor {
+
+        private final Monitor monitor;
+
+        private final boolean consumer;
+
+        // 方法名 -> 远程地址 -> 计数句柄
+        private final ConcurrentMap<String, ConcurrentMap<Object, MetricsRecorder>> recorders = new ConcurrentHashMap<String, ConcurrentMap<Object, MetricsRecorder>>();
+
+        InvokerMonitor(Monitor monitor, boolean consumer) {
+            this.monitor = monitor;
+            this.consumer = consumer;
+        }
+
+        MetricsRecorder getRecorder(Invoker<?> invoker, String method, RpcContext context) {
+            ConcurrentMap<Object, MetricsRecorder> remotes = recorders.get(method);
+            if (remotes == null) {
+                recorders.putIfAbsent(method, new ConcurrentHashMap<Object, MetricsRecorder>());
+                remotes = recorders.get(method);
+            }
+            Object remote = NO_REMOTE;
+            if (! consumer) {
+                InetSocketAddress address = context.getRemoteAddress();
+                if (address != null && address.getAddress() != null) {
+                    remote = address.getAddress();
+                }
+            }
+            MetricsRecorder recorder = remotes.get(remote);
+            if (recorder == null) {
+                URL statistics = createStatistics(invoker, method, context, consumer);
+                remotes.putIfAbsent(remote, ((MetricsMonitor) monitor).getRecorder(statistics));
+                recorder = remotes.get(remote);
+            }
+            return recorder;
+        }
+
+    }
+
 }
\ No newline at end of file
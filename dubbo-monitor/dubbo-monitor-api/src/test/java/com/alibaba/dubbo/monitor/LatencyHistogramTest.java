@@ -0,0 +1,86 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+/**
+ * LatencyHistogramTest
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (int i = 0; i < LatencyHistogram.BUCKET_COUNT - 1; i ++) {
+            long low = LatencyHistogram.lowestValueOf(i);
+            long high = LatencyHistogram.highestValueOf(i);
+            Assert.assertEquals(i, LatencyHistogram.indexOf(low));
+            Assert.assertEquals(i, LatencyHistogram.indexOf(high));
+            Assert.assertEquals(high + 1, LatencyHistogram.lowestValueOf(i + 1));
+            Assert.assertTrue(high - low <= low / 8);
+        }
+        Assert.assertEquals(0, LatencyHistogram.indexOf(-1));
+        Assert.assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.indexOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentile() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals(0, histogram.getValueAtPercentile(99));
+        for (int i = 1; i <= 1000; i ++) {
+            histogram.record(i);
+        }
+        Assert.assertEquals(1000, histogram.getCount());
+        long p50 = histogram.getValueAtPercentile(50);
+        long p99 = histogram.getValueAtPercentile(99);
+        Assert.assertTrue(p50 >= 500 && p50 <= 500 * 9 / 8);
+        Assert.assertTrue(p99 >= 990 && p99 <= 990 * 9 / 8);
+        Assert.assertEquals(1, histogram.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testEncode() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        Assert.assertEquals("", histogram.encode());
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(100, 5);
+        String value = histogram.encode();
+        LatencyHistogram decoded = LatencyHistogram.decode(value);
+        Assert.assertEquals(value, decoded.encode());
+        Assert.assertEquals(7, decoded.getCount());
+        decoded.add(histogram);
+        Assert.assertEquals(14, decoded.getCount());
+        try {
+            LatencyHistogram.decode("1:2,3");
+            Assert.fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testDrain() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(20);
+        LatencyHistogram drained = histogram.drain();
+        Assert.assertEquals(1, drained.getCount());
+        Assert.assertTrue(histogram.isEmpty());
+        Assert.assertTrue(histogram.drain().isEmpty());
+    }
+
+}
@@ -27,6 +27,8 @@ import org.junit.Test;
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.monitor.MetricsMonitor;
+import com.alibaba.dubbo.monitor.MetricsRecorder;
 import com.alibaba.dubbo.monitor.Monitor;
 import com.alibaba.dubbo.monitor.MonitorFactory;
 import com.alibaba.dubbo.monitor.MonitorService;
@@ -136,4 +138,74 @@ public class MonitorFilterTest {
         Assert.assertEquals(invocation, lastInvocation);
     }
 
+    @Test
+    public void testMetricsMonitor() throws Exception {
+        final MetricsRecorder[] recorders = new MetricsRecorder[1];
+        final int[] created = new int[1];
+        MonitorFilter monitorFilter = new MonitorFilter();
+        monitorFilter.setMonitorFactory(new MonitorFactory() {
+            public Monitor getMonitor(final URL url) {
+                return new MetricsMonitor() {
+                    public URL getUrl() {
+                        return url;
+                    }
+                    public boolean isAvailable() {
+                        return true;
+                    }
+                    public void destroy() {
+                    }
+                    public void collect(URL statistics) {
+                        MonitorFilterTest.this.lastStatistics = statistics;
+                    }
+                    public List<URL> lookup(URL query) {
+                        return null;
+                    }
+                    public MetricsRecorder getRecorder(URL statistics) {
+                        created[0] ++;
+                        recorders[0] = new MetricsRecorder(statistics);
+                        return recorders[0];
+                    }
+                };
+            }
+        });
+        Invocation invocation = new RpcInvocation("aaa", new Class<?>[0], new Object[0]);
+        RpcContext.getContext().setRemoteAddress(NetUtils.getLocalHost(), 20880).setLocalAddress(NetUtils.getLocalHost(), 2345);
+        monitorFilter.invoke(serviceInvoker, invocation);
+        monitorFilter.invoke(serviceInvoker, invocation);
+        Assert.assertNull(lastStatistics);
+        Assert.assertEquals(1, created[0]);
+        URL statistics = recorders[0].getStatistics();
+        Assert.assertEquals("abc", statistics.getParameter(MonitorService.APPLICATION));
+        Assert.assertEquals(MonitorService.class.getName(), statistics.getParameter(MonitorService.INTERFACE));
+        Assert.assertEquals("aaa", statistics.getParameter(MonitorService.METHOD));
+        Assert.assertEquals(NetUtils.getLocalHost() + ":20880", statistics.getParameter(MonitorService.PROVIDER));
+        Assert.assertEquals(null, statistics.getParameter(MonitorService.SUCCESS));
+        long[] numbers = recorders[0].drain();
+        Assert.assertEquals(2, numbers[MetricsRecorder.SUCCESS]);
+        Assert.assertEquals(0, numbers[MetricsRecorder.FAILURE]);
+        Assert.assertEquals(1, numbers[MetricsRecorder.CONCURRENT]);
+        Assert.assertEquals(1, numbers[MetricsRecorder.MAX_CONCURRENT]);
+        Assert.assertEquals(0, recorders[0].drain()[MetricsRecorder.SUCCESS]);
+
+        // 注册中心推送的参数变更不产生新的计数句柄
+        monitorFilter.invoke(new Invoker<MonitorService>() {
+            public Class<MonitorService> getInterface() {
+                return MonitorService.class;
+            }
+            public URL getUrl() {
+                return serviceInvoker.getUrl().addParameter(Constants.TIMESTAMP_KEY, System.currentTimeMillis());
+            }
+            public boolean isAvailable() {
+                return false;
+            }
+            public Result invoke(Invocation invocation) throws RpcException {
+                return null;
+            }
+            public void destroy() {
+            }
+        }, invocation);
+        Assert.assertEquals(1, created[0]);
+        Assert.assertEquals(1, recorders[0].drain()[MetricsRecorder.SUCCESS]);
+    }
+
 }
\ No newline at end of file
@@ -16,20 +16,20 @@
 package com.alibaba.dubbo.monitor.dubbo;
 
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicReference;
 
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.NamedThreadFactory;
-import com.alibaba.dubbo.monitor.Monitor;
+import com.alibaba.dubbo.monitor.LatencyHistogram;
+import com.alibaba.dubbo.monitor.MetricsMonitor;
+import com.alibaba.dubbo.monitor.MetricsRecorder;
 import com.alibaba.dubbo.monitor.MonitorService;
 import com.alibaba.dubbo.rpc.Invoker;
 
@@ -38,12 +38,10 @@ import com.alibaba.dubbo.rpc.Invoker;
  *
  * @author william.liangf
  */
-public class DubboMonitor implements Monitor {
+public class DubboMonitor implements MetricsMonitor {
 
     private static final Logger logger = LoggerFactory.getLogger(DubboMonitor.class);
 
-    private static final int LENGTH = 10;
-
     // 定时任务执行器
     private final ScheduledExecutorService scheduledExecutorService = Executors.newScheduledThreadPool(3, new
             NamedThreadFactory("DubboMonitorSendTimer", true));
@@ -57,8 +55,8 @@ public class DubboMonitor implements Monitor {
 
     private final long monitorInterval;
 
-    private final ConcurrentMap<Statistics, AtomicReference<long[]>> statisticsMap = new
-            ConcurrentHashMap<Statistics, AtomicReference<long[]>>();
+    private final ConcurrentMap<Statistics, MetricsRecorder> statisticsMap = new
+            ConcurrentHashMap<Statistics, MetricsRecorder>();
 
     public DubboMonitor(Invoker<MonitorService> monitorInvoker, MonitorService monitorService) {
         this.monitorInvoker = monitorInvoker;
@@ -82,54 +80,38 @@ public class DubboMonitor implements Monitor {
             logger.info("Send statistics to monitor " + getUrl());
         }
         String timestamp = String.valueOf(System.currentTimeMillis());
-        for (Map.Entry<Statistics, AtomicReference<long[]>> entry : statisticsMap.entrySet()) {
-            // 获取已统计数据
-            Statistics statistics = entry.getKey();
-            AtomicReference<long[]> reference = entry.getValue();
-            long[] numbers = reference.get();
-            long success = numbers[0];
-            long failure = numbers[1];
-            long input = numbers[2];
-            long output = numbers[3];
-            long elapsed = numbers[4];
-            long concurrent = numbers[5];
-            long maxInput = numbers[6];
-            long maxOutput = numbers[7];
-            long maxElapsed = numbers[8];
-            long maxConcurrent = numbers[9];
-
-            // 发送汇总信息
-            URL url = statistics.getUrl().addParameters(MonitorService.TIMESTAMP, timestamp, MonitorService.SUCCESS,
-                    String.valueOf(success), MonitorService.FAILURE, String.valueOf(failure), MonitorService.INPUT,
-                    String.valueOf(input), MonitorService.OUTPUT, String.valueOf(output), MonitorService.ELAPSED,
-                    String.valueOf(elapsed), MonitorService.CONCURRENT, String.valueOf(concurrent), MonitorService
-                            .MAX_INPUT, String.valueOf(maxInput), MonitorService.MAX_OUTPUT, String.valueOf
-                            (maxOutput), MonitorService.MAX_ELAPSED, String.valueOf(maxElapsed), MonitorService
-                            .MAX_CONCURRENT, String.valueOf(maxConcurrent));
+        for (MetricsRecorder recorder : statisticsMap.values()) {
+            // 取出并清零已统计数据
+            long[] numbers = recorder.drain();
+            String histogram = recorder.drainHistogram().encode();
+
+            // 发送汇总信息，每个统计维度每周期只构造一次URL
+            URL url = recorder.getStatistics().addParameters(MonitorService.TIMESTAMP, timestamp,
+                    MonitorService.SUCCESS, String.valueOf(numbers[MetricsRecorder.SUCCESS]),
+                    MonitorService.FAILURE, String.valueOf(numbers[MetricsRecorder.FAILURE]),
+                    MonitorService.INPUT, String.valueOf(numbers[MetricsRecorder.INPUT]),
+                    MonitorService.OUTPUT, String.valueOf(numbers[MetricsRecorder.OUTPUT]),
+                    MonitorService.ELAPSED, String.valueOf(numbers[MetricsRecorder.ELAPSED]),
+                    MonitorService.CONCURRENT, String.valueOf(numbers[MetricsRecorder.CONCURRENT]),
+                    MonitorService.MAX_INPUT, String.valueOf(numbers[MetricsRecorder.MAX_INPUT]),
+                    MonitorService.MAX_OUTPUT, String.valueOf(numbers[MetricsRecorder.MAX_OUTPUT]),
+                    MonitorService.MAX_ELAPSED, String.valueOf(numbers[MetricsRecorder.MAX_ELAPSED]),
+                    MonitorService.MAX_CONCURRENT, String.valueOf(numbers[MetricsRecorder.MAX_CONCURRENT]));
+            if (histogram.length() > 0) {
+                url = url.addParameter(MonitorService.HISTOGRAM, histogram);
+            }
             monitorService.collect(url);
+        }
+    }
 
-            // 减掉已统计数据
-            long[] current;
-            long[] update = new long[LENGTH];
-            do {
-                current = reference.get();
-                if (current == null) {
-                    update[0] = 0;
-                    update[1] = 0;
-                    update[2] = 0;
-                    update[3] = 0;
-                    update[4] = 0;
-                    update[5] = 0;
-                } else {
-                    update[0] = current[0] - success;
-                    update[1] = current[1] - failure;
-                    update[2] = current[2] - input;
-                    update[3] = current[3] - output;
-                    update[4] = current[4] - elapsed;
-                    update[5] = current[5] - concurrent;
-                }
-            } while (!reference.compareAndSet(current, update));
+    public MetricsRecorder getRecorder(URL url) {
+        Statistics statistics = new Statistics(url);
+        MetricsRecorder recorder = statisticsMap.get(statistics);
+        if (recorder == null) {
+            statisticsMap.putIfAbsent(statistics, new MetricsRecorder(url.removeParameter(MonitorService.HISTOGRAM)));
+            recorder = statisticsMap.get(statistics);
         }
+        return recorder;
     }
 
     public void collect(URL url) {
@@ -140,42 +122,9 @@ public class DubboMonitor implements Monitor {
         int output = url.getParameter(MonitorService.OUTPUT, 0);
         int elapsed = url.getParameter(MonitorService.ELAPSED, 0);
         int concurrent = url.getParameter(MonitorService.CONCURRENT, 0);
-        // 初始化原子引用
-        Statistics statistics = new Statistics(url);
-        AtomicReference<long[]> reference = statisticsMap.get(statistics);
-        if (reference == null) {
-            statisticsMap.putIfAbsent(statistics, new AtomicReference<long[]>());
-            reference = statisticsMap.get(statistics);
-        }
-        // CompareAndSet并发加入统计数据
-        long[] current;
-        long[] update = new long[LENGTH];
-        do {
-            current = reference.get();
-            if (current == null) {
-                update[0] = success;
-                update[1] = failure;
-                update[2] = input;
-                update[3] = output;
-                update[4] = elapsed;
-                update[5] = concurrent;
-                update[6] = input;
-                update[7] = output;
-                update[8] = elapsed;
-                update[9] = concurrent;
-            } else {
-                update[0] = current[0] + success;
-                update[1] = current[1] + failure;
-                update[2] = current[2] + input;
-                update[3] = current[3] + output;
-                update[4] = current[4] + elapsed;
-                update[5] = (current[5] + concurrent) / 2;
-                update[6] = current[6] > input ? current[6] : input;
-                update[7] = current[7] > output ? current[7] : output;
-                update[8] = current[8] > elapsed ? current[8] : elapsed;
-                update[9] = current[9] > concurrent ? current[9] : concurrent;
-            }
-        } while (!reference.compareAndSet(current, update));
+        String histogram = url.getParameter(MonitorService.HISTOGRAM);
+        getRecorder(url).record(success, failure, elapsed, concurrent, input, output,
+                histogram == null || histogram.length() == 0 ? null : LatencyHistogram.decode(histogram));
     }
 
     public List<URL> lookup(URL query) {
@@ -24,6 +24,8 @@ import org.junit.Test;
 
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.monitor.LatencyHistogram;
+import com.alibaba.dubbo.monitor.MetricsRecorder;
 import com.alibaba.dubbo.monitor.Monitor;
 import com.alibaba.dubbo.monitor.MonitorFactory;
 import com.alibaba.dubbo.monitor.MonitorService;
@@ -107,6 +109,58 @@ public class DubboMonitorTest {
         monitor.destroy();
     }
     
+    @Test
+    public void testRecorder() throws Exception {
+        DubboMonitor monitor = new DubboMonitor(monitorInvoker, monitorService);
+        try {
+            URL statistics = new URL("dubbo", "10.20.153.10", 0)
+                .addParameter(MonitorService.APPLICATION, "morgan")
+                .addParameter(MonitorService.INTERFACE, "MemberService")
+                .addParameter(MonitorService.METHOD, "findPerson")
+                .addParameter(MonitorService.CONSUMER, "10.20.153.11");
+            MetricsRecorder recorder = monitor.getRecorder(statistics);
+            Assert.assertSame(recorder, monitor.getRecorder(statistics.addParameter(MonitorService.SUCCESS, 1)));
+            MetricsRecorder other = monitor.getRecorder(statistics.addParameter(MonitorService.METHOD, "findAll"));
+            Assert.assertNotSame(recorder, other);
+            other.record(true, 4, 2, 10, 20);
+            other.record(true, 6, 4, 30, 0);
+            other.record(false, 2, 3, 0, 0);
+            long[] numbers = other.drain();
+            Assert.assertEquals(2, numbers[MetricsRecorder.SUCCESS]);
+            Assert.assertEquals(1, numbers[MetricsRecorder.FAILURE]);
+            Assert.assertEquals(40, numbers[MetricsRecorder.INPUT]);
+            Assert.assertEquals(20, numbers[MetricsRecorder.OUTPUT]);
+            Assert.assertEquals(12, numbers[MetricsRecorder.ELAPSED]);
+            Assert.assertEquals(3, numbers[MetricsRecorder.CONCURRENT]);
+            Assert.assertEquals(30, numbers[MetricsRecorder.MAX_INPUT]);
+            Assert.assertEquals(20, numbers[MetricsRecorder.MAX_OUTPUT]);
+            Assert.assertEquals(6, numbers[MetricsRecorder.MAX_ELAPSED]);
+            Assert.assertEquals(4, numbers[MetricsRecorder.MAX_CONCURRENT]);
+            numbers = other.drain();
+            for (long number : numbers) {
+                Assert.assertEquals(0, number);
+            }
+            LatencyHistogram histogram = other.drainHistogram();
+            Assert.assertEquals(3, histogram.getCount());
+            Assert.assertEquals(6, histogram.getValueAtPercentile(100));
+            Assert.assertTrue(other.drainHistogram().isEmpty());
+
+            LatencyHistogram shipped = new LatencyHistogram();
+            shipped.record(1, 9);
+            shipped.record(40);
+            monitor.collect(statistics.addParameter(MonitorService.METHOD, "findAll")
+                    .addParameter(MonitorService.SUCCESS, 10)
+                    .addParameter(MonitorService.ELAPSED, 49)
+                    .addParameter(MonitorService.HISTOGRAM, shipped.encode()));
+            histogram = other.drainHistogram();
+            Assert.assertEquals(10, histogram.getCount());
+            Assert.assertEquals(1, histogram.getValueAtPercentile(90));
+            Assert.assertTrue(histogram.getValueAtPercentile(99) >= 40);
+        } finally {
+            monitor.destroy();
+        }
+    }
+    
     @Test
     public void testMonitorFactory() throws Exception {
         MockMonitorService monitorService = new MockMonitorService();
@@ -212,6 +212,7 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
                 .equals(invokerUrls.get(0).getProtocol())) {
             this.forbidden = true; // 禁止访问
             this.methodInvokerMap = null; // 置空列表
+            clearRouteCache();
             destroyAllInvokers(); // 关闭所有Invoker
         } else {
             this.forbidden = false; // 允许访问
@@ -236,6 +237,7 @@ public class RegistryDirectory<T> extends AbstractDirectory<T> implements Notify
             }
             this.methodInvokerMap = multiGroup ? toMergeMethodInvokerMap(newMethodInvokerMap) : newMethodInvokerMap;
             this.urlInvokerMap = newUrlInvokerMap;
+            clearRouteCache(); // 新的invoker列表需重新路由，释放旧列表的缓存
             try {
                 destroyUnusedInvokers(oldUrlInvokerMap, newUrlInvokerMap); // 关闭未使用的Invoker
             } catch (Exception e) {
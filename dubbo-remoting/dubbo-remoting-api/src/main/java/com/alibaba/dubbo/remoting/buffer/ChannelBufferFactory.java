@@ -18,9 +18,12 @@ package com.alibaba.dubbo.remoting.buffer;
 
 import java.nio.ByteBuffer;
 
+import com.alibaba.dubbo.common.extension.SPI;
+
 /**
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
+@SPI("heap")
 public interface ChannelBufferFactory {
 
     ChannelBuffer getBuffer(int capacity);
@@ -91,6 +91,21 @@ public final class ChannelBuffers {
         return buffer;
     }
 
+    /**
+     * Gives a buffer from a pooled factory back to its pool, does nothing for other buffers.
+     *
+     * @return true if memory was returned to the pool.
+     */
+    public static boolean release(ChannelBuffer buffer) {
+        if (buffer instanceof PooledChannelBuffer) {
+            return ((PooledChannelBuffer) buffer).release();
+        }
+        if (buffer instanceof DynamicChannelBuffer) {
+            return ((DynamicChannelBuffer) buffer).release();
+        }
+        return false;
+    }
+
     public static boolean equals(ChannelBuffer bufferA, ChannelBuffer bufferB) {
         final int aLen = bufferA.readableBytes();
         if (aLen != bufferB.readableBytes()) {
@@ -64,9 +64,17 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
 
         ChannelBuffer newBuffer = factory().getBuffer(newCapacity);
         newBuffer.writeBytes(buffer, 0, writerIndex());
+        ChannelBuffers.release(buffer);
         buffer = newBuffer;
     }
 
+    boolean release() {
+        ChannelBuffer released = buffer;
+        buffer = ChannelBuffers.EMPTY_BUFFER;
+        clear();
+        return ChannelBuffers.release(released);
+    }
+
     
     public int capacity() {
         return buffer.capacity();
@@ -75,6 +83,7 @@ public class DynamicChannelBuffer extends AbstractChannelBuffer {
     
     public ChannelBuffer copy(int index, int length) {
         DynamicChannelBuffer copiedBuffer = new DynamicChannelBuffer(Math.max(length, 64), factory());
+        ChannelBuffers.release(copiedBuffer.buffer);
         copiedBuffer.buffer = buffer.copy(index, length);
         copiedBuffer.setIndex(0, length);
         return copiedBuffer;
@@ -0,0 +1,84 @@
+/*
+ * Copyright 1999-2012 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.dubbo.remoting.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Direct buffer borrowed from a {@link PooledChannelBufferFactory}, its memory goes back to
+ * the pool when the reference count drops to zero. A released buffer must not be used again.
+ */
+public class PooledChannelBuffer extends ByteBufferBackedChannelBuffer {
+
+    private static final AtomicIntegerFieldUpdater<PooledChannelBuffer> REF_CNT_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(PooledChannelBuffer.class, "refCnt");
+
+    private final PooledChannelBufferFactory factory;
+
+    private final ByteBuffer chunk;
+
+    private volatile int refCnt = 1;
+
+    PooledChannelBuffer(PooledChannelBufferFactory factory, ByteBuffer chunk, int capacity) {
+        super((ByteBuffer) chunk.duplicate().limit(capacity));
+        this.factory = factory;
+        this.chunk = chunk;
+        clear();
+    }
+
+    @Override
+    public ChannelBufferFactory factory() {
+        return factory;
+    }
+
+    public int refCnt() {
+        return refCnt;
+    }
+
+    public PooledChannelBuffer retain() {
+        for (;;) {
+            int cnt = refCnt;
+            if (cnt == 0) {
+                throw new IllegalStateException("buffer already released");
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * @return true if this call dropped the last reference and returned the memory to the pool.
+     */
+    public boolean release() {
+        for (;;) {
+            int cnt = refCnt;
+            if (cnt == 0) {
+                throw new IllegalStateException("buffer already released");
+            }
+            if (REF_CNT_UPDATER.compareAndSet(this, cnt, cnt - 1)) {
+                if (cnt == 1) {
+                    factory.recycle(chunk);
+                    return true;
+                }
+                return false;
+            }
+        }
+    }
+
+}
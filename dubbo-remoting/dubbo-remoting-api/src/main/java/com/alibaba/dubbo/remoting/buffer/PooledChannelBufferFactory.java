@@ -0,0 +1,231 @@
+/*
+ * Copyright 1999-2012 Alibaba Group.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.dubbo.remoting.buffer;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Direct buffers recycled by power of two size classes, from 256 bytes up to 64k. Released
+ * buffers go to a small per-thread cache first and then to a shared arena per size class, idle
+ * memory in the arenas is capped by {@link #getMaxResidentBytes()}. Each thread caches at most
+ * 16 buffers and 256k per size class on top of that, which are collected with the thread.
+ * Larger buffers are not pooled.
+ * <p>
+ * Buffers returned here must be given back with {@link ChannelBuffers#release(ChannelBuffer)},
+ * a buffer that is never released is simply collected and does not harm the pool.
+ */
+public class PooledChannelBufferFactory implements ChannelBufferFactory {
+
+    public static final int DEFAULT_MAX_POOLED_CAPACITY = 64 * 1024;
+
+    public static final long DEFAULT_MAX_RESIDENT_BYTES = 64L * 1024 * 1024;
+
+    private static final int MIN_CHUNK_SHIFT = 8;
+
+    private static final int MAX_THREAD_CACHED = 16;
+
+    private static final int THREAD_CACHE_BYTES = 256 * 1024;
+
+    private final int maxPooledCapacity;
+
+    private final long maxResidentBytes;
+
+    private final Queue<ByteBuffer>[] arenas;
+
+    private final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong residentBytes = new AtomicLong();
+
+    public PooledChannelBufferFactory() {
+        this(DEFAULT_MAX_POOLED_CAPACITY, DEFAULT_MAX_RESIDENT_BYTES);
+    }
+
+    @SuppressWarnings("unchecked")
+    public PooledChannelBufferFactory(int maxPooledCapacity, long maxResidentBytes) {
+        if (maxPooledCapacity < (1 << MIN_CHUNK_SHIFT)) {
+            throw new IllegalArgumentException("maxPooledCapacity: " + maxPooledCapacity);
+        }
+        if (maxResidentBytes < 0) {
+            throw new IllegalArgumentException("maxResidentBytes: " + maxResidentBytes);
+        }
+        this.maxPooledCapacity = Integer.highestOneBit(maxPooledCapacity);
+        this.maxResidentBytes = maxResidentBytes;
+        this.arenas = new Queue[sizeClass(this.maxPooledCapacity) + 1];
+        for (int i = 0; i < arenas.length; i ++) {
+            arenas[i] = new ConcurrentLinkedQueue<ByteBuffer>();
+        }
+    }
+
+    public ChannelBuffer getBuffer(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity: " + capacity);
+        }
+        if (capacity == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        if (capacity > maxPooledCapacity) {
+            misses.incrementAndGet();
+            return ChannelBuffers.directBuffer(capacity);
+        }
+        int sizeClass = sizeClass(capacity);
+        ByteBuffer chunk = threadCache.get().poll(sizeClass);
+        if (chunk == null) {
+            chunk = arenas[sizeClass].poll();
+            if (chunk != null) {
+                residentBytes.addAndGet(- chunk.capacity());
+            }
+        }
+        if (chunk != null) {
+            hits.incrementAndGet();
+        } else {
+            chunk = ByteBuffer.allocateDirect(1 << (sizeClass + MIN_CHUNK_SHIFT));
+            misses.incrementAndGet();
+        }
+        return new PooledChannelBuffer(this, chunk, capacity);
+    }
+
+    public ChannelBuffer getBuffer(byte[] array, int offset, int length) {
+        if (array == null) {
+            throw new NullPointerException("array");
+        }
+        if (offset < 0) {
+            throw new IndexOutOfBoundsException("offset: " + offset);
+        }
+        if (length == 0) {
+            return ChannelBuffers.EMPTY_BUFFER;
+        }
+        if (offset + length > array.length) {
+            throw new IndexOutOfBoundsException("length: " + length);
+        }
+
+        ChannelBuffer buf = getBuffer(length);
+        buf.writeBytes(array, offset, length);
+        return buf;
+    }
+
+    public ChannelBuffer getBuffer(ByteBuffer nioBuffer) {
+        if (!nioBuffer.isReadOnly() && nioBuffer.isDirect()) {
+            return ChannelBuffers.wrappedBuffer(nioBuffer);
+        }
+
+        ChannelBuffer buf = getBuffer(nioBuffer.remaining());
+        int pos = nioBuffer.position();
+        buf.writeBytes(nioBuffer);
+        nioBuffer.position(pos);
+        return buf;
+    }
+
+    void recycle(ByteBuffer chunk) {
+        chunk.clear();
+        int sizeClass = sizeClass(chunk.capacity());
+        if (threadCache.get().offer(sizeClass, chunk)) {
+            return;
+        }
+        // only the arenas count as resident, a thread cache dies with its thread.
+        if (residentBytes.addAndGet(chunk.capacity()) > maxResidentBytes) {
+            residentBytes.addAndGet(- chunk.capacity());
+            return;
+        }
+        arenas[sizeClass].offer(chunk);
+    }
+
+    /**
+     * @return buffers served from the pool.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return buffers that had to be allocated, including the ones too large to be pooled.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return bytes held idle in the shared arenas, the thread caches are not counted.
+     */
+    public long getResidentBytes() {
+        return residentBytes.get();
+    }
+
+    public long getMaxResidentBytes() {
+        return maxResidentBytes;
+    }
+
+    public int getMaxPooledCapacity() {
+        return maxPooledCapacity;
+    }
+
+    private static int sizeClass(int capacity) {
+        if (capacity <= (1 << MIN_CHUNK_SHIFT)) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - MIN_CHUNK_SHIFT;
+    }
+
+    private class ThreadCache {
+
+        private final ByteBuffer[][] stacks = new ByteBuffer[arenas.length][];
+
+        private final int[] sizes = new int[arenas.length];
+
+        ThreadCache() {
+            for (int i = 0; i < stacks.length; i ++) {
+                int chunkSize = 1 << (i + MIN_CHUNK_SHIFT);
+                stacks[i] = new ByteBuffer[Math.max(1, Math.min(MAX_THREAD_CACHED, THREAD_CACHE_BYTES / chunkSize))];
+            }
+        }
+
+        ByteBuffer poll(int sizeClass) {
+            int size = sizes[sizeClass];
+            if (size == 0) {
+                return null;
+            }
+            ByteBuffer[] stack = stacks[sizeClass];
+            ByteBuffer chunk = stack[-- size];
+            stack[size] = null;
+            sizes[sizeClass] = size;
+            return chunk;
+        }
+
+        boolean offer(int sizeClass, ByteBuffer chunk) {
+            int size = sizes[sizeClass];
+            ByteBuffer[] stack = stacks[sizeClass];
+            if (size == stack.length) {
+                return false;
+            }
+            stack[size] = chunk;
+            sizes[sizeClass] = size + 1;
+            return true;
+        }
+    }
+
+}
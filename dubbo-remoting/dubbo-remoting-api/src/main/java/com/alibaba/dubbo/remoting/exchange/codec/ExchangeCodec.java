@@ -211,23 +211,17 @@ public class ExchangeCodec extends TelnetCodec {
 
     protected void encodeRequest(Channel channel, ChannelBuffer buffer, Request req) throws IOException {
         Serialization serialization = getSerialization(channel);
-        // header.
-        byte[] header = new byte[HEADER_LENGTH];
-        // set magic number.
-        Bytes.short2bytes(MAGIC, header);
-
         // set request and serialization flag.
-        header[2] = (byte) (FLAG_REQUEST | serialization.getContentTypeId());
+        byte flag = (byte) (FLAG_REQUEST | serialization.getContentTypeId());
 
-        if (req.isTwoWay()) header[2] |= FLAG_TWOWAY;
-        if (req.isEvent()) header[2] |= FLAG_EVENT;
+        if (req.isTwoWay()) flag |= FLAG_TWOWAY;
+        if (req.isEvent()) flag |= FLAG_EVENT;
 
-        // set request id.
-        Bytes.long2bytes(req.getId(), header, 4);
+        // write header in place, the body length is patched after encoding.
+        int savedWriteIndex = buffer.writerIndex();
+        writeHeader(buffer, flag, (byte) 0, req.getId());
 
         // encode request data.
-        int savedWriteIndex = buffer.writerIndex();
-        buffer.writerIndex(savedWriteIndex + HEADER_LENGTH);
         ChannelBufferOutputStream bos = new ChannelBufferOutputStream(buffer);
         ObjectOutput out = serialization.serialize(channel.getUrl(), bos);
         if (req.isEvent()) {
@@ -240,32 +234,22 @@ public class ExchangeCodec extends TelnetCodec {
         bos.close();
         int len = bos.writtenBytes();
         checkPayload(channel, len);
-        Bytes.int2bytes(len, header, 12);
-
-        // write
-        buffer.writerIndex(savedWriteIndex);
-        buffer.writeBytes(header); // write header.
-        buffer.writerIndex(savedWriteIndex + HEADER_LENGTH + len);
+        setBodyLength(buffer, savedWriteIndex, len);
     }
 
     protected void encodeResponse(Channel channel, ChannelBuffer buffer, Response res) throws IOException {
+        int savedWriteIndex = buffer.writerIndex();
         try {
             Serialization serialization = getSerialization(channel);
-            // header.
-            byte[] header = new byte[HEADER_LENGTH];
-            // set magic number.
-            Bytes.short2bytes(MAGIC, header);
             // set request and serialization flag.
-            header[2] = serialization.getContentTypeId();
-            if (res.isHeartbeat()) header[2] |= FLAG_EVENT;
+            byte flag = serialization.getContentTypeId();
+            if (res.isHeartbeat()) flag |= FLAG_EVENT;
             // set response status.
             byte status = res.getStatus();
-            header[3] = status;
-            // set request id.
-            Bytes.long2bytes(res.getId(), header, 4);
 
-            int savedWriteIndex = buffer.writerIndex();
-            buffer.writerIndex(savedWriteIndex + HEADER_LENGTH);
+            // write header in place, the body length is patched after encoding.
+            writeHeader(buffer, flag, status, res.getId());
+
             ChannelBufferOutputStream bos = new ChannelBufferOutputStream(buffer);
             ObjectOutput out = serialization.serialize(channel.getUrl(), bos);
             // encode response data or error message.
@@ -283,12 +267,10 @@ public class ExchangeCodec extends TelnetCodec {
 
             int len = bos.writtenBytes();
             checkPayload(channel, len);
-            Bytes.int2bytes(len, header, 12);
-            // write
-            buffer.writerIndex(savedWriteIndex);
-            buffer.writeBytes(header); // write header.
-            buffer.writerIndex(savedWriteIndex + HEADER_LENGTH + len);
+            setBodyLength(buffer, savedWriteIndex, len);
         } catch (Throwable t) {
+            // discard the partially written frame.
+            buffer.writerIndex(savedWriteIndex);
             // 发送失败信息给Consumer，否则Consumer只能等超时了
             if (! res.isEvent() && res.getStatus() != Response.BAD_RESPONSE) {
                 try {
@@ -319,6 +301,52 @@ public class ExchangeCodec extends TelnetCodec {
         }
     }
     
+    /**
+     * write the 16 bytes header: magic, flag, status, id and a zero body length.
+     */
+    protected static void writeHeader(ChannelBuffer buffer, byte flag, byte status, long id) {
+        buffer.writeByte(MAGIC_HIGH);
+        buffer.writeByte(MAGIC_LOW);
+        buffer.writeByte(flag);
+        buffer.writeByte(status);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            buffer.writeByte((int) (id >>> shift));
+        }
+        buffer.writeByte(0);
+        buffer.writeByte(0);
+        buffer.writeByte(0);
+        buffer.writeByte(0);
+    }
+
+    /**
+     * patch the body length into the header written at headerIndex.
+     */
+    protected static void setBodyLength(ChannelBuffer buffer, int headerIndex, int length) {
+        int index = headerIndex + 12;
+        buffer.setByte(index, length >>> 24);
+        buffer.setByte(index + 1, length >>> 16);
+        buffer.setByte(index + 2, length >>> 8);
+        buffer.setByte(index + 3, length);
+    }
+
+    /**
+     * length of the frame at the reader index, header included, read without moving the buffer.
+     * -1 unless the buffer starts with a complete exchange header.
+     */
+    public static int getFrameLength(ChannelBuffer buffer) {
+        int index = buffer.readerIndex();
+        if (buffer.readableBytes() < HEADER_LENGTH
+                || buffer.getByte(index) != MAGIC_HIGH || buffer.getByte(index + 1) != MAGIC_LOW) {
+            return -1;
+        }
+        index += 12;
+        int length = (buffer.getByte(index) & 0xff) << 24
+                | (buffer.getByte(index + 1) & 0xff) << 16
+                | (buffer.getByte(index + 2) & 0xff) << 8
+                | (buffer.getByte(index + 3) & 0xff);
+        return HEADER_LENGTH + length;
+    }
+
     @Override
     protected Object decodeData(ObjectInput in) throws IOException {
         return decodeRequestData(in);
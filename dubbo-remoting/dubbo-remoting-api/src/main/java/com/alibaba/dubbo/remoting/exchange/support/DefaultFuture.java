@@ -20,13 +20,17 @@ import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.locks.Condition;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.common.timer.HashedWheelTimer;
+import com.alibaba.dubbo.common.timer.Timeout;
+import com.alibaba.dubbo.common.timer.Timer;
+import com.alibaba.dubbo.common.timer.TimerTask;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.RemotingException;
 import com.alibaba.dubbo.remoting.TimeoutException;
@@ -49,6 +53,28 @@ public class DefaultFuture implements ResponseFuture {
 
     private static final Map<Long, DefaultFuture> FUTURES   = new ConcurrentHashMap<Long, DefaultFuture>();
 
+    private static final AtomicReferenceFieldUpdater<DefaultFuture, Response> RESPONSE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultFuture.class, Response.class, "response");
+
+    private static final AtomicReferenceFieldUpdater<DefaultFuture, ResponseCallback> CALLBACK_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultFuture.class, ResponseCallback.class, "callback");
+
+    private static final AtomicReferenceFieldUpdater<DefaultFuture, WaitNode> WAITERS_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(DefaultFuture.class, WaitNode.class, "waiters");
+
+    private static final ResponseCallback         CALLBACK_CONSUMED = new ResponseCallback() {
+        public void done(Object response) {
+        }
+
+        public void caught(Throwable exception) {
+        }
+    };
+
+    // every future registers its own deadline, no more scanning of FUTURES.
+    private static final Timer                    TIMEOUT_TIMER = new HashedWheelTimer(
+            new NamedThreadFactory("DubboResponseTimeoutTimer", true),
+            Constants.DEFAULT_FUTURE_TIMER_TICK, TimeUnit.MILLISECONDS, Constants.DEFAULT_FUTURE_TIMER_TICKS_PER_WHEEL);
+
     // invoke id.
     private final long                            id;
 
@@ -58,18 +84,21 @@ public class DefaultFuture implements ResponseFuture {
 
     private final int                             timeout;
 
-    private final Lock                            lock = new ReentrantLock();
-
-    private final Condition                       done = lock.newCondition();
-
     private final long                            start = System.currentTimeMillis();
 
     private volatile long                         sent;
     
+    // null until completed, set exactly once by CAS.
     private volatile Response                     response;
 
+    // null, the registered callback, or CALLBACK_CONSUMED once it has been handed to a thread for invocation.
     private volatile ResponseCallback             callback;
 
+    // treiber stack of threads parked in get().
+    private volatile WaitNode                     waiters;
+
+    private final Timeout                         timeoutCheck;
+
     public DefaultFuture(Channel channel, Request request, int timeout){
         this.channel = channel;
         this.request = request;
@@ -78,6 +107,8 @@ public class DefaultFuture implements ResponseFuture {
         // put into waiting map.
         FUTURES.put(id, this);
         CHANNELS.put(id, channel);
+        // schedule the timeout check.
+        this.timeoutCheck = TIMEOUT_TIMER.newTimeout(new TimeoutCheckTask(this), this.timeout, TimeUnit.MILLISECONDS);
     }
     
     public Object get() throws RemotingException {
@@ -89,19 +120,29 @@ public class DefaultFuture implements ResponseFuture {
             timeout = Constants.DEFAULT_TIMEOUT;
         }
         if (! isDone()) {
-            long start = System.currentTimeMillis();
-            lock.lock();
-            try {
-                while (! isDone()) {
-                    done.await(timeout, TimeUnit.MILLISECONDS);
-                    if (isDone() || System.currentTimeMillis() - start > timeout) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+            WaitNode node = null;
+            boolean queued = false;
+            while (! isDone()) {
+                if (node == null) {
+                    node = new WaitNode();
+                } else if (! queued) {
+                    node.next = waiters;
+                    queued = WAITERS_UPDATER.compareAndSet(this, node.next, node);
+                } else {
+                    long nanos = deadline - System.nanoTime();
+                    if (nanos <= 0) {
                         break;
                     }
+                    LockSupport.parkNanos(this, nanos);
+                    if (Thread.interrupted()) {
+                        removeWaiter(node);
+                        throw new RuntimeException(new InterruptedException());
+                    }
                 }
-            } catch (InterruptedException e) {
-                throw new RuntimeException(e);
-            } finally {
-                lock.unlock();
+            }
+            if (queued) {
+                removeWaiter(node);
             }
             if (! isDone()) {
                 throw new TimeoutException(sent > 0, channel, getTimeoutMessage(false));
@@ -113,9 +154,10 @@ public class DefaultFuture implements ResponseFuture {
     public void cancel(){
         Response errorResult = new Response(id);
         errorResult.setErrorMessage("request future has been canceled.");
-        response = errorResult ;
         FUTURES.remove(id);
         CHANNELS.remove(id);
+        timeoutCheck.cancel();
+        complete(errorResult);
     }
 
     public boolean isDone() {
@@ -123,25 +165,26 @@ public class DefaultFuture implements ResponseFuture {
     }
 
     public void setCallback(ResponseCallback callback) {
-        if (isDone()) {
-            invokeCallback(callback);
-        } else {
-            boolean isdone = false;
-            lock.lock();
-            try{
-                if (!isDone()) {
-                    this.callback = callback;
-                } else {
-                    isdone = true;
-                }
-            }finally {
-                lock.unlock();
-            }
-            if (isdone){
+        if (callback == null) {
+            throw new NullPointerException("callback cannot be null.");
+        }
+        for (;;) {
+            ResponseCallback current = this.callback;
+            if (current == CALLBACK_CONSUMED) {
+                // completed already, the completing thread will not look at the callback again.
                 invokeCallback(callback);
+                return;
+            }
+            if (CALLBACK_UPDATER.compareAndSet(this, current, callback)) {
+                break;
             }
         }
+        // completed between the check above and the registration, whoever consumes the slot invokes it.
+        if (isDone() && CALLBACK_UPDATER.compareAndSet(this, callback, CALLBACK_CONSUMED)) {
+            invokeCallback(callback);
+        }
     }
+
     private void invokeCallback(ResponseCallback c){
         ResponseCallback callbackCopy = c;
         if (callbackCopy == null){
@@ -206,14 +249,6 @@ public class DefaultFuture implements ResponseFuture {
         return request;
     }
 
-    private int getTimeout() {
-        return timeout;
-    }
-
-    private long getStartTimestamp() {
-        return start;
-    }
-
     public static DefaultFuture getFuture(long id) {
         return FUTURES.get(id);
     }
@@ -237,6 +272,10 @@ public class DefaultFuture implements ResponseFuture {
         try {
             DefaultFuture future = FUTURES.remove(response.getId());
             if (future != null) {
+                // may be null when the response arrives before the constructor scheduled the check.
+                if (future.timeoutCheck != null) {
+                    future.timeoutCheck.cancel();
+                }
                 future.doReceived(response);
             } else {
                 logger.warn("The timeout response finally returned at " 
@@ -251,24 +290,68 @@ public class DefaultFuture implements ResponseFuture {
     }
 
     private void doReceived(Response res) {
-        lock.lock();
-        try {
-            response = res;
-            if (done != null) {
-                done.signal();
+        complete(res);
+    }
+
+    /**
+     * Publish the response with a single CAS, then wake up the parked waiters and run the callback.
+     * Nothing here allocates or blocks.
+     */
+    private boolean complete(Response res) {
+        if (! RESPONSE_UPDATER.compareAndSet(this, null, res)) {
+            return false;
+        }
+        for (WaitNode q; (q = waiters) != null;) {
+            if (WAITERS_UPDATER.compareAndSet(this, q, null)) {
+                while (q != null) {
+                    Thread t = q.thread;
+                    if (t != null) {
+                        q.thread = null;
+                        LockSupport.unpark(t);
+                    }
+                    WaitNode next = q.next;
+                    q.next = null;
+                    q = next;
+                }
+                break;
             }
-        } finally {
-            lock.unlock();
         }
-        if (callback != null) {
-            invokeCallback(callback);
+        ResponseCallback c = CALLBACK_UPDATER.getAndSet(this, CALLBACK_CONSUMED);
+        if (c != null && c != CALLBACK_CONSUMED) {
+            invokeCallback(c);
+        }
+        return true;
+    }
+
+    /**
+     * Unlink a timed out or interrupted waiter. Nodes are marked by clearing their thread and the
+     * whole stack is traversed again on a CAS failure, as done by java.util.concurrent.FutureTask.
+     */
+    private void removeWaiter(WaitNode node) {
+        node.thread = null;
+        retry:
+        for (;;) {
+            for (WaitNode pred = null, q = waiters, s; q != null; q = s) {
+                s = q.next;
+                if (q.thread != null) {
+                    pred = q;
+                } else if (pred != null) {
+                    pred.next = s;
+                    if (pred.thread == null) {
+                        continue retry;
+                    }
+                } else if (! WAITERS_UPDATER.compareAndSet(this, q, s)) {
+                    continue retry;
+                }
+            }
+            break;
         }
     }
 
     private String getTimeoutMessage(boolean scan) {
         long nowTimestamp = System.currentTimeMillis();
         return (sent > 0 ? "Waiting server-side response timeout" : "Sending request timeout in client-side")
-                    + (scan ? " by scan timer" : "") + ". start time: " 
+                    + (scan ? " by timeout timer" : "") + ". start time: " 
                     + (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(start))) + ", end time: " 
                     + (new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date())) + ","
                     + (sent > 0 ? " client elapsed: " + (sent - start) 
@@ -278,37 +361,33 @@ public class DefaultFuture implements ResponseFuture {
                     + " -> " + channel.getRemoteAddress();
     }
 
-    private static class RemotingInvocationTimeoutScan implements Runnable {
-
-        public void run() {
-            while (true) {
-                try {
-                    for (DefaultFuture future : FUTURES.values()) {
-                        if (future == null || future.isDone()) {
-                            continue;
-                        }
-                        if (System.currentTimeMillis() - future.getStartTimestamp() > future.getTimeout()) {
-                            // create exception response.
-                            Response timeoutResponse = new Response(future.getId());
-                            // set timeout status.
-                            timeoutResponse.setStatus(future.isSent() ? Response.SERVER_TIMEOUT : Response.CLIENT_TIMEOUT);
-                            timeoutResponse.setErrorMessage(future.getTimeoutMessage(true));
-                            // handle response.
-                            DefaultFuture.received(future.getChannel(), timeoutResponse);
-                        }
-                    }
-                    Thread.sleep(30);
-                } catch (Throwable e) {
-                    logger.error("Exception when scan the timeout invocation of remoting.", e);
-                }
-            }
-        }
+    private static final class WaitNode {
+
+        volatile Thread   thread = Thread.currentThread();
+
+        volatile WaitNode next;
     }
 
-    static {
-        Thread th = new Thread(new RemotingInvocationTimeoutScan(), "DubboResponseTimeoutScanTimer");
-        th.setDaemon(true);
-        th.start();
+    private static class TimeoutCheckTask implements TimerTask {
+
+        private final DefaultFuture future;
+
+        TimeoutCheckTask(DefaultFuture future) {
+            this.future = future;
+        }
+
+        public void run(Timeout timeout) {
+            if (future.isDone()) {
+                return;
+            }
+            // create exception response.
+            Response timeoutResponse = new Response(future.getId());
+            // set timeout status.
+            timeoutResponse.setStatus(future.isSent() ? Response.SERVER_TIMEOUT : Response.CLIENT_TIMEOUT);
+            timeoutResponse.setErrorMessage(future.getTimeoutMessage(true));
+            // handle response.
+            DefaultFuture.received(future.getChannel(), timeoutResponse);
+        }
     }
 
 }
\ No newline at end of file
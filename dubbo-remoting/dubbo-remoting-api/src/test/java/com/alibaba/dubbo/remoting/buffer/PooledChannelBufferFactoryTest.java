@@ -0,0 +1,116 @@
+package com.alibaba.dubbo.remoting.buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class PooledChannelBufferFactoryTest {
+
+    @Test
+    public void testReuseReleasedBuffer() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        ChannelBuffer first = factory.getBuffer(300);
+        assertEquals(300, first.capacity());
+        assertSame(factory, first.factory());
+        assertEquals(1, factory.getMisses());
+
+        first.writeBytes(new byte[] {1, 2, 3});
+        assertTrue(ChannelBuffers.release(first));
+        // kept by the thread cache, which does not count as resident.
+        assertEquals(0, factory.getResidentBytes());
+
+        ChannelBuffer second = factory.getBuffer(400);
+        assertEquals(400, second.capacity());
+        assertEquals(0, second.writerIndex());
+        assertEquals(1, factory.getHits());
+        assertEquals(0, factory.getResidentBytes());
+        assertTrue(ChannelBuffers.release(second));
+    }
+
+    @Test
+    public void testReferenceCount() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        PooledChannelBuffer buffer = (PooledChannelBuffer) factory.getBuffer(100);
+        buffer.retain();
+        assertEquals(2, buffer.refCnt());
+        assertFalse(buffer.release());
+        assertEquals(0, factory.getResidentBytes());
+        assertTrue(buffer.release());
+        ChannelBuffers.release(factory.getBuffer(100));
+        assertEquals(1, factory.getHits());
+        try {
+            buffer.release();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            buffer.retain();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testLargeBufferNotPooled() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory(1024, 1024 * 1024);
+        ChannelBuffer buffer = factory.getBuffer(4096);
+        assertEquals(4096, buffer.capacity());
+        assertFalse(buffer instanceof PooledChannelBuffer);
+        assertFalse(ChannelBuffers.release(buffer));
+        assertEquals(1, factory.getMisses());
+        assertEquals(0, factory.getResidentBytes());
+    }
+
+    @Test
+    public void testResidentBytesLimit() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory(1024, 1024);
+        // 16 fill the thread cache, one goes to the arena and the last one is dropped.
+        List<ChannelBuffer> buffers = new ArrayList<ChannelBuffer>();
+        for (int i = 0; i < 18; i ++) {
+            buffers.add(factory.getBuffer(1024));
+        }
+        for (ChannelBuffer buffer : buffers) {
+            assertTrue(ChannelBuffers.release(buffer));
+        }
+        assertEquals(1024, factory.getResidentBytes());
+    }
+
+    @Test
+    public void testDynamicBufferReleasesOnGrowth() {
+        PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        ChannelBuffer buffer = ChannelBuffers.dynamicBuffer(256, factory);
+        buffer.writeBytes(new byte[1000]);
+        assertTrue(ChannelBuffers.release(buffer));
+        assertEquals(0, buffer.capacity());
+        ChannelBuffers.release(factory.getBuffer(256));
+        ChannelBuffers.release(factory.getBuffer(1024));
+        assertEquals(2, factory.getHits());
+    }
+
+    @Test
+    public void testReleaseOnOtherThread() throws Exception {
+        final PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+        final ChannelBuffer buffer = factory.getBuffer(2048);
+        final CountDownLatch released = new CountDownLatch(1);
+        new Thread() {
+            public void run() {
+                ChannelBuffers.release(buffer);
+                released.countDown();
+            }
+        }.start();
+        released.await();
+        // cached by a thread which is gone, it must not count against the resident limit.
+        assertEquals(0, factory.getResidentBytes());
+        // cached by the releasing thread, so this thread allocates.
+        ChannelBuffers.release(factory.getBuffer(2048));
+        assertEquals(2, factory.getMisses());
+    }
+}
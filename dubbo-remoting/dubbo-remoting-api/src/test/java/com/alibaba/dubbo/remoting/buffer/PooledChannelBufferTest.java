@@ -0,0 +1,31 @@
+package com.alibaba.dubbo.remoting.buffer;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+
+public class PooledChannelBufferTest extends AbstractChannelBufferTest {
+
+    private final PooledChannelBufferFactory factory = new PooledChannelBufferFactory();
+
+    private ChannelBuffer buffer;
+
+    @Override
+    protected ChannelBuffer newBuffer(int capacity) {
+        buffer = factory.getBuffer(capacity);
+        Assert.assertEquals(0, buffer.writerIndex());
+        return buffer;
+    }
+
+    @Override
+    protected ChannelBuffer[] components() {
+        return new ChannelBuffer[]{buffer};
+    }
+
+    @After
+    public void release() {
+        if (buffer instanceof PooledChannelBuffer) {
+            Assert.assertTrue(ChannelBuffers.release(buffer));
+        }
+    }
+}
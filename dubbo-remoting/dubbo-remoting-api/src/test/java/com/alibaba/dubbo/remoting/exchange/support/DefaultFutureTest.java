@@ -0,0 +1,161 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.exchange.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.remoting.TimeoutException;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
+import com.alibaba.dubbo.remoting.exchange.support.header.MockChannel;
+
+public class DefaultFutureTest {
+
+    private final MockChannel channel = new MockChannel();
+
+    @Test
+    public void testGetWakesUpOnReceived() throws Exception {
+        final Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 3000);
+        new Thread() {
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                }
+                DefaultFuture.received(channel, response(request, "hello"));
+            }
+        }.start();
+        assertEquals("hello", future.get());
+        assertTrue(future.isDone());
+    }
+
+    @Test
+    public void testAllWaitersReleased() throws Exception {
+        final Request request = new Request();
+        final DefaultFuture future = new DefaultFuture(channel, request, 3000);
+        final int waiters = 16;
+        final CountDownLatch started = new CountDownLatch(waiters);
+        final CountDownLatch finished = new CountDownLatch(waiters);
+        for (int i = 0; i < waiters; i++) {
+            new Thread() {
+                public void run() {
+                    started.countDown();
+                    try {
+                        if ("hello".equals(future.get())) {
+                            finished.countDown();
+                        }
+                    } catch (Exception e) {
+                    }
+                }
+            }.start();
+        }
+        started.await();
+        Thread.sleep(50);
+        DefaultFuture.received(channel, response(request, "hello"));
+        assertTrue(finished.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimeoutFiredByTimer() throws Exception {
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 100);
+        long start = System.currentTimeMillis();
+        try {
+            future.get(3000);
+            fail();
+        } catch (TimeoutException expected) {
+            assertTrue(System.currentTimeMillis() - start < 1000);
+        }
+        assertTrue(future.isDone());
+        assertTrue(DefaultFuture.getFuture(request.getId()) == null);
+    }
+
+    @Test
+    public void testGetTimeoutWithoutResponse() throws Exception {
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 3000);
+        try {
+            future.get(50);
+            fail();
+        } catch (TimeoutException expected) {
+        }
+        DefaultFuture.received(channel, response(request, "late"));
+        assertEquals("late", future.get());
+    }
+
+    @Test
+    public void testCallbackInvokedOnce() throws Exception {
+        final AtomicInteger count = new AtomicInteger();
+        ResponseCallback callback = new ResponseCallback() {
+            public void done(Object response) {
+                count.incrementAndGet();
+            }
+
+            public void caught(Throwable exception) {
+            }
+        };
+        Request before = new Request();
+        DefaultFuture future = new DefaultFuture(channel, before, 3000);
+        future.setCallback(callback);
+        DefaultFuture.received(channel, response(before, "hello"));
+        assertEquals(1, count.get());
+
+        Request after = new Request();
+        future = new DefaultFuture(channel, after, 3000);
+        DefaultFuture.received(channel, response(after, "hello"));
+        future.setCallback(callback);
+        assertEquals(2, count.get());
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        final AtomicInteger invoked = new AtomicInteger();
+        Request request = new Request();
+        DefaultFuture future = new DefaultFuture(channel, request, 3000);
+        future.setCallback(new ResponseCallback() {
+            public void done(Object response) {
+                invoked.incrementAndGet();
+            }
+
+            public void caught(Throwable exception) {
+                invoked.incrementAndGet();
+            }
+        });
+        future.cancel();
+        assertTrue(future.isDone());
+        assertEquals(1, invoked.get());
+        // a response arriving after the cancel is ignored.
+        DefaultFuture.received(channel, response(request, "hello"));
+        assertEquals(1, invoked.get());
+    }
+
+    private static Response response(Request request, Object result) {
+        Response response = new Response(request.getId());
+        response.setResult(result);
+        return response;
+    }
+
+}
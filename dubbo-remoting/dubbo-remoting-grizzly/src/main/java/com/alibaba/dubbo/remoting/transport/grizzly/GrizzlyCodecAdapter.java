@@ -25,10 +25,12 @@ import org.glassfish.grizzly.filterchain.NextAction;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec2;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferFactory;
 import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
 import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
 
@@ -47,6 +49,8 @@ public class GrizzlyCodecAdapter extends BaseFilter {
 
     private final int             bufferSize;
 
+    private final ChannelBufferFactory bufferFactory;
+
     private ChannelBuffer previousData = ChannelBuffers.EMPTY_BUFFER;
     
     public GrizzlyCodecAdapter(Codec2 codec, URL url, ChannelHandler handler) {
@@ -55,6 +59,8 @@ public class GrizzlyCodecAdapter extends BaseFilter {
         this.handler = handler;
         int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
         this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.bufferFactory = ExtensionLoader.getExtensionLoader(ChannelBufferFactory.class).getExtension(
+            url.getParameter(Constants.BUFFER_FACTORY_KEY, Constants.DEFAULT_BUFFER_FACTORY));
     }
 
     @Override
@@ -62,17 +68,21 @@ public class GrizzlyCodecAdapter extends BaseFilter {
         Connection<?> connection = context.getConnection();
         GrizzlyChannel channel = GrizzlyChannel.getOrAddChannel(connection, url, handler);
         try {
-            ChannelBuffer channelBuffer = ChannelBuffers.dynamicBuffer(1024); // 不需要关闭
-            
-            Object msg = context.getMessage();
-            codec.encode(channel, channelBuffer, msg);
-            
-            GrizzlyChannel.removeChannelIfDisconnectd(connection);
-            Buffer buffer = connection.getTransport().getMemoryManager().allocate(channelBuffer.readableBytes());
-            buffer.put(channelBuffer.toByteBuffer());
-            buffer.flip();
-            buffer.allowBufferDispose(true);
-            context.setMessage(buffer);
+            ChannelBuffer channelBuffer = ChannelBuffers.dynamicBuffer(1024, bufferFactory);
+            try {
+                Object msg = context.getMessage();
+                codec.encode(channel, channelBuffer, msg);
+                
+                GrizzlyChannel.removeChannelIfDisconnectd(connection);
+                Buffer buffer = connection.getTransport().getMemoryManager().allocate(channelBuffer.readableBytes());
+                buffer.put(channelBuffer.toByteBuffer());
+                buffer.flip();
+                buffer.allowBufferDispose(true);
+                context.setMessage(buffer);
+            } finally {
+                // copied into the grizzly buffer above, can go back to the pool right away.
+                ChannelBuffers.release(channelBuffer);
+            }
         } finally {
             GrizzlyChannel.removeChannelIfDisconnectd(connection);
         }
@@ -25,10 +25,12 @@ import org.apache.mina.filter.codec.ProtocolEncoderOutput;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
 import com.alibaba.dubbo.remoting.Channel;
 import com.alibaba.dubbo.remoting.Codec2;
 import com.alibaba.dubbo.remoting.ChannelHandler;
 import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferFactory;
 import com.alibaba.dubbo.remoting.buffer.ChannelBuffers;
 import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
 
@@ -51,12 +53,16 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
 
     private final int            bufferSize;
 
+    private final ChannelBufferFactory bufferFactory;
+
     public MinaCodecAdapter(Codec2 codec, URL url, ChannelHandler handler) {
         this.codec = codec;
         this.url = url;
         this.handler = handler;
         int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
         this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.bufferFactory = ExtensionLoader.getExtensionLoader(ChannelBufferFactory.class).getExtension(
+            url.getParameter(Constants.BUFFER_FACTORY_KEY, Constants.DEFAULT_BUFFER_FACTORY));
     }
 
     public ProtocolEncoder getEncoder() {
@@ -101,7 +107,7 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
                     frame = buffer;
                 } else {
                     int size = buffer.readableBytes() + in.remaining();
-                    frame = ChannelBuffers.dynamicBuffer(size > bufferSize ? size : bufferSize);
+                    frame = ChannelBuffers.dynamicBuffer(size > bufferSize ? size : bufferSize, bufferFactory);
                     frame.writeBytes(buffer, buffer.readableBytes());
                     frame.writeBytes(in.buf());
                 }
@@ -119,6 +125,7 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
                     try {
                         msg = codec.decode(channel, frame);
                     } catch (Exception e) {
+                        ChannelBuffers.release(frame);
                         buffer = ChannelBuffers.EMPTY_BUFFER;
                         throw e;
                     }
@@ -127,6 +134,7 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
                         break;
                     } else {
                         if (savedReadIndex == frame.readerIndex()) {
+                            ChannelBuffers.release(frame);
                             buffer = ChannelBuffers.EMPTY_BUFFER;
                             throw new Exception("Decode without read data.");
                         }
@@ -140,6 +148,7 @@ final class MinaCodecAdapter implements ProtocolCodecFactory {
                     frame.discardReadBytes();
                     buffer = frame;
                 } else {
+                    ChannelBuffers.release(frame);
                     buffer = ChannelBuffers.EMPTY_BUFFER;
                 }
                 MinaChannel.removeChannelIfDisconnectd(session);
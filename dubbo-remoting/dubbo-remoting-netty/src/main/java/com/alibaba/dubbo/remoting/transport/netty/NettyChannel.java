@@ -47,12 +47,18 @@ final class NettyChannel extends AbstractChannel {
 
     private final Map<String, Object> attributes = new ConcurrentHashMap<String, Object>();
 
+    // null unless write batching is enabled.
+    private final NettyWriteQueue writeQueue;
+
     private NettyChannel(org.jboss.netty.channel.Channel channel, URL url, ChannelHandler handler) {
         super(url, handler);
         if (channel == null) {
             throw new IllegalArgumentException("netty channel == null;");
         }
         this.channel = channel;
+        int batch = url.getParameter(Constants.WRITE_BATCH_KEY, 0);
+        this.writeQueue = batch > 1 ? new NettyWriteQueue(this, channel, batch,
+                url.getParameter(Constants.WRITE_BATCH_DELAY_KEY, Constants.DEFAULT_WRITE_BATCH_DELAY)) : null;
     }
 
     static NettyChannel getOrAddChannel(org.jboss.netty.channel.Channel ch, URL url, ChannelHandler handler) {
@@ -93,10 +99,16 @@ final class NettyChannel extends AbstractChannel {
     public void send(Object message, boolean sent) throws RemotingException {
         super.send(message, sent);
 
+        if (writeQueue != null && ! sent) {
+            writeQueue.write(message, false);
+            return;
+        }
+
         boolean success = true;
         int timeout = 0;
         try {
-            ChannelFuture future = channel.write(message);
+            // queued behind the messages already in the write queue, the future completes with their batch.
+            ChannelFuture future = writeQueue != null ? writeQueue.write(message, true) : channel.write(message);
             if (sent) {
                 timeout = getUrl().getPositiveParameter(Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
                 success = future.await(timeout);
@@ -132,6 +144,13 @@ final class NettyChannel extends AbstractChannel {
         } catch (Exception e) {
             logger.warn(e.getMessage(), e);
         }
+        try {
+            if (writeQueue != null) {
+                writeQueue.close();
+            }
+        } catch (Exception e) {
+            logger.warn(e.getMessage(), e);
+        }
         try {
             if (logger.isInfoEnabled()) {
                 logger.info("Close netty channel " + channel);
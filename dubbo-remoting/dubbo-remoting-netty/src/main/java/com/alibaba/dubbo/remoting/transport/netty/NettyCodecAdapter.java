@@ -16,10 +16,15 @@
 package com.alibaba.dubbo.remoting.transport.netty;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.jboss.netty.buffer.ChannelBuffer;
 import org.jboss.netty.buffer.ChannelBuffers;
 import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelEvent;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
 import org.jboss.netty.channel.ChannelHandler;
 import org.jboss.netty.channel.ChannelHandler.Sharable;
 import org.jboss.netty.channel.ChannelHandlerContext;
@@ -31,8 +36,13 @@ import org.jboss.netty.handler.codec.oneone.OneToOneEncoder;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.ExtensionLoader;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.remoting.Codec2;
-import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferFactory;
+import com.alibaba.dubbo.remoting.buffer.HeapChannelBufferFactory;
+import com.alibaba.dubbo.remoting.exchange.codec.ExchangeCodec;
 
 /**
  * NettyCodecAdapter.
@@ -41,6 +51,10 @@ import com.alibaba.dubbo.remoting.buffer.DynamicChannelBuffer;
  */
 final class NettyCodecAdapter {
 
+    private static final Logger logger = LoggerFactory.getLogger(NettyCodecAdapter.class);
+
+    private static final int INITIAL_FRAME_SIZE = 256;
+
     private final ChannelHandler encoder = new InternalEncoder();
     
     private final ChannelHandler decoder = new InternalDecoder();
@@ -50,6 +64,10 @@ final class NettyCodecAdapter {
     private final URL            url;
     
     private final int            bufferSize;
+
+    private final ChannelBufferFactory bufferFactory;
+
+    private final boolean        heapBuffers;
     
     private final com.alibaba.dubbo.remoting.ChannelHandler handler;
 
@@ -59,6 +77,9 @@ final class NettyCodecAdapter {
         this.handler = handler;
         int b = url.getPositiveParameter(Constants.BUFFER_KEY, Constants.DEFAULT_BUFFER_SIZE);
         this.bufferSize = b >= Constants.MIN_BUFFER_SIZE && b <= Constants.MAX_BUFFER_SIZE ? b : Constants.DEFAULT_BUFFER_SIZE;
+        this.bufferFactory = ExtensionLoader.getExtensionLoader(ChannelBufferFactory.class).getExtension(
+            url.getParameter(Constants.BUFFER_FACTORY_KEY, Constants.DEFAULT_BUFFER_FACTORY));
+        this.heapBuffers = bufferFactory instanceof HeapChannelBufferFactory;
     }
 
     public ChannelHandler getEncoder() {
@@ -72,24 +93,104 @@ final class NettyCodecAdapter {
     @Sharable
     private class InternalEncoder extends OneToOneEncoder {
 
+        // running estimate of the frame size on this pipeline, so the frame buffer rarely has to grow.
+        private int expectedSize = INITIAL_FRAME_SIZE;
+
+        @Override
+        public void handleDownstream(ChannelHandlerContext ctx, ChannelEvent evt) throws Exception {
+            if (heapBuffers || ! (evt instanceof MessageEvent)) {
+                super.handleDownstream(ctx, evt);
+                return;
+            }
+            // encode into a buffer of the configured factory, handed to netty without copy
+            // and given back once the write completes.
+            MessageEvent e = (MessageEvent) evt;
+            final com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer =
+                com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(expectedSize, bufferFactory);
+            boolean handedOver = false;
+            try {
+                encode(ctx.getChannel(), buffer, e.getMessage());
+                adjustExpectedSize(buffer.readableBytes());
+                e.getFuture().addListener(new ChannelFutureListener() {
+                    public void operationComplete(ChannelFuture future) throws Exception {
+                        com.alibaba.dubbo.remoting.buffer.ChannelBuffers.release(buffer);
+                    }
+                });
+                handedOver = true;
+                Channels.write(ctx, e.getFuture(), ChannelBuffers.wrappedBuffer(buffer.toByteBuffer()),
+                               e.getRemoteAddress());
+            } finally {
+                if (! handedOver) {
+                    com.alibaba.dubbo.remoting.buffer.ChannelBuffers.release(buffer);
+                }
+            }
+        }
+
         @Override
         protected Object encode(ChannelHandlerContext ctx, Channel ch, Object msg) throws Exception {
-            com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer =
-                com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(1024);
+            // serialize straight into the transport buffer handed to netty, no intermediate copy.
+            ChannelBuffer frame = ChannelBuffers.dynamicBuffer(expectedSize);
+            encode(ch, new NettyBackedChannelBuffer(frame), msg);
+            adjustExpectedSize(frame.readableBytes());
+            return frame;
+        }
+
+        private void encode(Channel ch, com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer, Object msg)
+                throws IOException {
             NettyChannel channel = NettyChannel.getOrAddChannel(ch, url, handler);
             try {
-            	codec.encode(channel, buffer, msg);
+                if (msg instanceof NettyWriteQueue.Batch) {
+                    encodeBatch(channel, buffer, (NettyWriteQueue.Batch) msg);
+                } else {
+                    codec.encode(channel, buffer, msg);
+                }
             } finally {
                 NettyChannel.removeChannelIfDisconnected(ch);
             }
-            return ChannelBuffers.wrappedBuffer(buffer.toByteBuffer());
+        }
+
+        private void adjustExpectedSize(int size) {
+            int expected = expectedSize;
+            if (size > expected) {
+                int next = expected;
+                while (next < size && next < bufferSize) {
+                    next <<= 1;
+                }
+                expectedSize = Math.min(next, bufferSize);
+            } else if (size < expected >>> 2 && expected > INITIAL_FRAME_SIZE) {
+                expectedSize = expected >>> 1;
+            }
+        }
+
+        private void encodeBatch(NettyChannel channel, com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer,
+                                 NettyWriteQueue.Batch batch) {
+            for (NettyWriteQueue.Pending pending : batch.pendings) {
+                int savedWriteIndex = buffer.writerIndex();
+                try {
+                    codec.encode(channel, buffer, pending.message);
+                } catch (Throwable t) {
+                    // drop only the broken frame, the others of the batch belong to other callers.
+                    buffer.writerIndex(savedWriteIndex);
+                    logger.warn("Failed to encode batched message " + pending.message + " to "
+                            + channel.getRemoteAddress() + ", cause: " + t.getMessage(), t);
+                    pending.fail(channel, t);
+                }
+            }
         }
     }
 
     private class InternalDecoder extends SimpleChannelUpstreamHandler {
 
-        private com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer =
-            com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
+        // undecoded input, kept as received until the frame at its head is complete.
+        private final List<ChannelBuffer> segments = new ArrayList<ChannelBuffer>();
+
+        private int cumulated;
+
+        // length of the exchange frame at the head of the segments, -1 if unknown.
+        private int frameLength = -1;
+
+        // factory buffer of the last drain, released once its bytes are consumed.
+        private com.alibaba.dubbo.remoting.buffer.ChannelBuffer drained;
 
         @Override
         public void messageReceived(ChannelHandlerContext ctx, MessageEvent event) throws Exception {
@@ -105,22 +206,19 @@ final class NettyCodecAdapter {
                 return;
             }
 
-            com.alibaba.dubbo.remoting.buffer.ChannelBuffer message;
-            if (buffer.readable()) {
-                if (buffer instanceof DynamicChannelBuffer) {
-                    buffer.writeBytes(input.toByteBuffer());
-                    message = buffer;
-                } else {
-                    int size = buffer.readableBytes() + input.readableBytes();
-                    message = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.dynamicBuffer(
-                        size > bufferSize ? size : bufferSize);
-                    message.writeBytes(buffer, buffer.readableBytes());
-                    message.writeBytes(input.toByteBuffer());
-                }
+            ChannelBuffer frame;
+            if (segments.isEmpty()) {
+                frame = input;
             } else {
-                message = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.wrappedBuffer(
-                    input.toByteBuffer());
+                segments.add(input);
+                cumulated += readable;
+                if (frameLength > cumulated) {
+                    // the codec already accepted the header, wait for the whole frame.
+                    return;
+                }
+                frame = drain();
             }
+            com.alibaba.dubbo.remoting.buffer.ChannelBuffer message = new NettyBackedChannelBuffer(frame);
 
             NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
             Object msg;
@@ -133,7 +231,7 @@ final class NettyCodecAdapter {
                     try {
                         msg = codec.decode(channel, message);
                     } catch (IOException e) {
-                        buffer = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
+                        message.skipBytes(message.readableBytes());
                         throw e;
                     }
                     if (msg == Codec2.DecodeResult.NEED_MORE_INPUT) {
@@ -141,7 +239,7 @@ final class NettyCodecAdapter {
                         break;
                     } else {
                         if (saveReaderIndex == message.readerIndex()) {
-                            buffer = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
+                            message.skipBytes(message.readableBytes());
                             throw new IOException("Decode without read data.");
                         }
                         if (msg != null) {
@@ -151,15 +249,53 @@ final class NettyCodecAdapter {
                 } while (message.readable());
             } finally {
                 if (message.readable()) {
-                    message.discardReadBytes();
-                    buffer = message;
+                    ChannelBuffer rest = frame.slice(frame.readerIndex(), frame.readableBytes());
+                    segments.add(rest);
+                    cumulated = rest.readableBytes();
+                    frameLength = ExchangeCodec.getFrameLength(new NettyBackedChannelBuffer(rest));
                 } else {
-                    buffer = com.alibaba.dubbo.remoting.buffer.ChannelBuffers.EMPTY_BUFFER;
+                    releaseDrained();
                 }
                 NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
             }
         }
 
+        /**
+         * take all the segments as one buffer, copied once if the frame spans several reads.
+         * The copy goes to a buffer of the configured factory unless it is the heap one.
+         */
+        private ChannelBuffer drain() {
+            ChannelBuffer frame;
+            if (segments.size() == 1) {
+                frame = segments.get(0);
+            } else if (heapBuffers) {
+                frame = ChannelBuffers.buffer(cumulated);
+                for (ChannelBuffer segment : segments) {
+                    frame.writeBytes(segment);
+                }
+            } else {
+                com.alibaba.dubbo.remoting.buffer.ChannelBuffer buffer = bufferFactory.getBuffer(cumulated);
+                for (ChannelBuffer segment : segments) {
+                    buffer.writeBytes(segment.toByteBuffer());
+                }
+                // the segments may still point into the previous drain, it is copied now.
+                releaseDrained();
+                drained = buffer;
+                frame = ChannelBuffers.wrappedBuffer(buffer.toByteBuffer());
+            }
+            segments.clear();
+            cumulated = 0;
+            frameLength = -1;
+            return frame;
+        }
+
+        private void releaseDrained() {
+            if (drained != null) {
+                com.alibaba.dubbo.remoting.buffer.ChannelBuffers.release(drained);
+                drained = null;
+            }
+        }
+
         @Override
         public void exceptionCaught(ChannelHandlerContext ctx, ExceptionEvent e) throws Exception {
             ctx.sendUpstream(e);
@@ -99,7 +99,16 @@ public class NettyHandler extends SimpleChannelHandler {
         super.writeRequested(ctx, e);
         NettyChannel channel = NettyChannel.getOrAddChannel(ctx.getChannel(), url, handler);
         try {
-            handler.sent(channel, e.getMessage());
+            Object message = e.getMessage();
+            if (message instanceof NettyWriteQueue.Batch) {
+                for (NettyWriteQueue.Pending pending : ((NettyWriteQueue.Batch) message).pendings) {
+                    if (! pending.isFailed()) {
+                        handler.sent(channel, pending.message);
+                    }
+                }
+            } else {
+                handler.sent(channel, message);
+            }
         } finally {
             NettyChannel.removeChannelIfDisconnected(ctx.getChannel());
         }
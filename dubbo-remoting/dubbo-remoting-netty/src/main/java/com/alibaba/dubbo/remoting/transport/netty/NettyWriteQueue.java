@@ -0,0 +1,232 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.netty.channel.Channel;
+import org.jboss.netty.channel.ChannelFuture;
+import org.jboss.netty.channel.ChannelFutureListener;
+import org.jboss.netty.channel.DefaultChannelFuture;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+import com.alibaba.dubbo.common.utils.StringUtils;
+import com.alibaba.dubbo.remoting.exchange.Request;
+import com.alibaba.dubbo.remoting.exchange.Response;
+import com.alibaba.dubbo.remoting.exchange.support.DefaultFuture;
+
+/**
+ * Per channel write queue used when write batching is enabled.
+ * <p>
+ * Messages written by business threads are queued and drained by a single thread at a time
+ * into a {@link Batch}, which the encoder writes as one buffer, so that one socket write
+ * carries many small frames. Without a delay the draining thread is the first writer which finds
+ * the queue idle, and writers arriving while it drains are combined into its next batch; with a
+ * delay the queue is additionally flushed by a shared scheduler once the delay elapsed. The
+ * scheduler has as many threads as the default I/O workers, since the flushing thread encodes.
+ * <p>
+ * Every message goes through the queue, so messages are written in the order they were queued.
+ * A message which cannot be encoded or written, or which is still queued when the channel closes,
+ * fails the future of its request, so the caller does not wait for the timeout.
+ *
+ * @see com.alibaba.dubbo.common.Constants#WRITE_BATCH_KEY
+ */
+final class NettyWriteQueue {
+
+    private static final ScheduledExecutorService FLUSH_SCHEDULER = Executors.newScheduledThreadPool(
+            Constants.DEFAULT_IO_THREADS, new NamedThreadFactory("NettyWriteBatchFlusher", true));
+
+    private final NettyChannel owner;
+
+    private final Channel channel;
+
+    private final int maxBatch;
+
+    private final int delay;
+
+    private final Queue<Pending> queue = new ConcurrentLinkedQueue<Pending>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final AtomicBoolean flushing = new AtomicBoolean();
+
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    private volatile boolean closed;
+
+    private final Runnable flushTask = new Runnable() {
+        public void run() {
+            scheduled.set(false);
+            flush();
+        }
+    };
+
+    NettyWriteQueue(NettyChannel owner, Channel channel, int maxBatch, int delay) {
+        this.owner = owner;
+        this.channel = channel;
+        this.maxBatch = maxBatch;
+        this.delay = delay;
+    }
+
+    /**
+     * queue the message.
+     *
+     * @param sent whether the caller waits for the message to be written.
+     * @return the future completed once the batch carrying the message is written, null unless sent.
+     */
+    ChannelFuture write(Object message, boolean sent) {
+        Pending pending = new Pending(message, sent ? new DefaultChannelFuture(channel, false) : null);
+        queue.offer(pending);
+        if (closed) {
+            // raced with close(), which may have drained the queue before the offer.
+            failAll();
+        } else if (delay > 0 && size.incrementAndGet() < maxBatch && ! sent) {
+            if (scheduled.compareAndSet(false, true)) {
+                FLUSH_SCHEDULER.schedule(flushTask, delay, TimeUnit.MILLISECONDS);
+            }
+        } else {
+            flush();
+        }
+        return pending.future;
+    }
+
+    /**
+     * drain the queue unless another thread is draining it, in which case that thread picks up the messages.
+     */
+    void flush() {
+        // re-check after releasing the flag, a writer may have failed the CAS while we were draining.
+        while (! queue.isEmpty() && flushing.compareAndSet(false, true)) {
+            try {
+                while (writeBatch()) {
+                }
+            } finally {
+                flushing.set(false);
+            }
+        }
+    }
+
+    /**
+     * fail the queued messages, the channel is closing.
+     */
+    void close() {
+        closed = true;
+        failAll();
+    }
+
+    private void failAll() {
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.fail(owner, new ClosedChannelException());
+        }
+    }
+
+    private boolean writeBatch() {
+        Pending pending = queue.poll();
+        if (pending == null) {
+            return false;
+        }
+        final Batch batch = new Batch();
+        batch.pendings.add(pending);
+        while (batch.pendings.size() < maxBatch && (pending = queue.poll()) != null) {
+            batch.pendings.add(pending);
+        }
+        if (delay > 0) {
+            size.addAndGet(- batch.pendings.size());
+        }
+        channel.write(batch).addListener(new ChannelFutureListener() {
+            public void operationComplete(ChannelFuture future) throws Exception {
+                Throwable cause = future.isSuccess() ? null
+                        : future.getCause() != null ? future.getCause() : new ClosedChannelException();
+                for (Pending pending : batch.pendings) {
+                    if (cause == null) {
+                        pending.done();
+                    } else {
+                        pending.fail(owner, cause);
+                    }
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * The messages written by the queue in one channel write, only known to the handlers of this transport.
+     */
+    static final class Batch {
+
+        final List<Pending> pendings = new ArrayList<Pending>();
+
+    }
+
+    /**
+     * A queued message.
+     */
+    static final class Pending {
+
+        final Object message;
+
+        // null unless the caller waits for the write.
+        final ChannelFuture future;
+
+        private final AtomicBoolean failed = new AtomicBoolean();
+
+        Pending(Object message, ChannelFuture future) {
+            this.message = message;
+            this.future = future;
+        }
+
+        boolean isFailed() {
+            return failed.get();
+        }
+
+        void done() {
+            if (future != null && ! failed.get()) {
+                future.setSuccess();
+            }
+        }
+
+        /**
+         * report the failure to the writer: the waiting caller, and the future of a request.
+         */
+        void fail(NettyChannel channel, Throwable cause) {
+            if (! failed.compareAndSet(false, true)) {
+                return;
+            }
+            if (future != null) {
+                future.setFailure(cause);
+            }
+            if (message instanceof Request && DefaultFuture.getFuture(((Request) message).getId()) != null) {
+                Request request = (Request) message;
+                Response response = new Response(request.getId(), request.getVersion());
+                response.setStatus(Response.CLIENT_ERROR);
+                response.setErrorMessage("Failed to send request " + request + " to " + channel.getRemoteAddress()
+                        + ", cause: " + StringUtils.toString(cause));
+                DefaultFuture.received(channel, response);
+            }
+        }
+    }
+
+}
@@ -72,6 +72,18 @@ public abstract class ClientToServerTest extends TestCase {
         Assert.assertEquals("hello,world", result.getName());
     }
 
+    @Test
+    public void testLargeMessage() throws Exception {
+        // arrives in many reads, the frame is put together from the received segments.
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 256 * 1024; i ++) {
+            name.append((char) ('a' + i % 26));
+        }
+        ResponseFuture future = client.request(new World(name.toString()));
+        Hello result = (Hello)future.get();
+        Assert.assertEquals("hello," + name, result.getName());
+    }
+
 //    @Test
 //    public void testCallback() throws Exception {
 //        final Object waitter = new Object();
@@ -0,0 +1,95 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.TimeoutException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.Replier;
+
+/**
+ * NettyWriteBatchClientToServerTest
+ */
+public class NettyWriteBatchClientToServerTest extends ClientToServerTest {
+
+    protected ExchangeServer newServer(int port, Replier<?> receiver) throws RemotingException {
+        return Exchangers.bind(URL.valueOf("exchange://localhost:" + port + "?server=netty&writebatch=16"), receiver);
+    }
+
+    protected ExchangeChannel newClient(int port) throws RemotingException {
+        return Exchangers.connect(URL.valueOf("exchange://localhost:" + port
+                + "?client=netty&writebatch=16&writebatch.delay=1"));
+    }
+
+    @Test
+    public void testConcurrentFutures() throws Exception {
+        final List<ResponseFuture> futures = new ArrayList<ResponseFuture>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 8; i++) {
+            final int n = i;
+            Thread thread = new Thread() {
+                public void run() {
+                    for (int j = 0; j < 50; j++) {
+                        try {
+                            ResponseFuture future = client.request(new World("world" + n + "-" + j));
+                            synchronized (futures) {
+                                futures.add(future);
+                            }
+                        } catch (RemotingException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(400, futures.size());
+        for (ResponseFuture future : futures) {
+            Hello result = (Hello) future.get();
+            Assert.assertTrue(result.getName().startsWith("hello,world"));
+        }
+    }
+
+    @Test
+    public void testEncodeFailure() throws Exception {
+        // not serializable, the batch is written without it and its future fails instead of timing out.
+        ResponseFuture future = client.request(new Object(), 60000);
+        try {
+            future.get();
+            Assert.fail();
+        } catch (RemotingException expected) {
+            Assert.assertFalse(expected instanceof TimeoutException);
+        }
+        Hello result = (Hello) client.request(new World("world")).get();
+        Assert.assertEquals("hello,world", result.getName());
+    }
+
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import java.nio.ByteBuffer;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+import com.alibaba.dubbo.remoting.buffer.ChannelBuffer;
+import com.alibaba.dubbo.remoting.buffer.ChannelBufferFactory;
+
+/**
+ * Wrap unpooled netty 4 buffers.
+ */
+public class NettyBackedChannelBufferFactory implements ChannelBufferFactory {
+
+    private static final NettyBackedChannelBufferFactory INSTANCE = new NettyBackedChannelBufferFactory();
+
+    public static ChannelBufferFactory getInstance() {
+        return INSTANCE;
+    }
+
+    
+    public ChannelBuffer getBuffer(int capacity) {
+        return new NettyBackedChannelBuffer(Unpooled.buffer(capacity));
+    }
+
+    
+    public ChannelBuffer getBuffer(byte[] array, int offset, int length) {
+        ByteBuf buffer = Unpooled.buffer(length);
+        buffer.writeBytes(array, offset, length);
+        return new NettyBackedChannelBuffer(buffer);
+    }
+
+    
+    public ChannelBuffer getBuffer(ByteBuffer nioBuffer) {
+        return new NettyBackedChannelBuffer(Unpooled.wrappedBuffer(nioBuffer));
+    }
+}
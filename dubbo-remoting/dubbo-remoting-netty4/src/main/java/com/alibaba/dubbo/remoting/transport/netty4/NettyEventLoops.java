@@ -0,0 +1,81 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+
+/**
+ * Event loops shared by all netty 4 clients and servers of the process. Native epoll is used
+ * when netty-transport-native-epoll is on the classpath and loads on this platform, NIO otherwise.
+ *
+ * @see Epoll#isAvailable()
+ */
+final class NettyEventLoops {
+
+    private static final Logger logger = LoggerFactory.getLogger(NettyEventLoops.class);
+
+    private static final boolean EPOLL = Epoll.isAvailable();
+
+    private static final EventLoopGroup BOSS_GROUP = newEventLoopGroup(1, "NettyServerBoss");
+
+    private static final EventLoopGroup WORKER_GROUP = newEventLoopGroup(Constants.DEFAULT_IO_THREADS, "NettyWorker");
+
+    static {
+        if (logger.isInfoEnabled()) {
+            logger.info("Using " + (EPOLL ? "native epoll" : "nio") + " transport for netty4");
+        }
+    }
+
+    private NettyEventLoops() {
+    }
+
+    static EventLoopGroup bossGroup() {
+        return BOSS_GROUP;
+    }
+
+    static EventLoopGroup workerGroup() {
+        return WORKER_GROUP;
+    }
+
+    static EventLoopGroup newEventLoopGroup(int threads, String name) {
+        // netty thread factory, its threads make the pooled allocator caches cheaper to reach.
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(name, true);
+        return EPOLL ? new EpollEventLoopGroup(threads, threadFactory) : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    static Class<? extends ServerChannel> serverChannelClass() {
+        return EPOLL ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    static Class<? extends SocketChannel> socketChannelClass() {
+        return EPOLL ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+}
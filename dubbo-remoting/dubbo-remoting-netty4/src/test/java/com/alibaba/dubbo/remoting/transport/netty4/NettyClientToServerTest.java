@@ -0,0 +1,86 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.remoting.transport.netty4;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
+import com.alibaba.dubbo.remoting.exchange.support.Replier;
+
+public class NettyClientToServerTest {
+
+    private ExchangeServer server;
+
+    private ExchangeClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        int port = NetUtils.getAvailablePort();
+        server = Exchangers.bind(URL.valueOf("exchange://localhost:" + port + "?server=netty4"), new Replier<String>() {
+            public Object reply(ExchangeChannel channel, String request) throws RemotingException {
+                return "hello," + request;
+            }
+        });
+        client = Exchangers.connect(URL.valueOf("exchange://localhost:" + port + "?client=netty4"));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try {
+            if (server != null)
+                server.close();
+        } finally {
+            if (client != null)
+                client.close();
+        }
+    }
+
+    @Test
+    public void testFuture() throws Exception {
+        ResponseFuture future = client.request("world");
+        assertEquals("hello,world", future.get());
+    }
+
+    @Test
+    public void testLargeMessage() throws Exception {
+        // spans many reads, decoded from the netty cumulation.
+        StringBuilder request = new StringBuilder();
+        for (int i = 0; i < 100000; i ++) {
+            request.append(i % 10);
+        }
+        ResponseFuture future = client.request(request.toString());
+        assertEquals("hello," + request, future.get());
+    }
+
+    @Test
+    public void testConnected() throws Exception {
+        assertTrue(client.isConnected());
+        assertTrue(server.isBound());
+    }
+
+}
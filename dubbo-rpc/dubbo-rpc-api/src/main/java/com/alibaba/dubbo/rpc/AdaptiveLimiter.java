@@ -0,0 +1,337 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+
+/**
+ * Adaptive concurrency limiter. (API, Cached, ThreadSafe)
+ * 
+ * 按URL和方法统计无负载RTT(窗口最小RTT)与当前RTT(窗口平均RTT)，
+ * 每个采样窗口结束时用TCP-Vegas或梯度算法调整允许的并发数：
+ * RTT接近无负载RTT时说明没有排队，逐步放大上限；RTT变长或调用失败时收缩上限。
+ * 
+ * @see com.alibaba.dubbo.rpc.filter.AdaptiveLimitFilter
+ */
+public class AdaptiveLimiter {
+
+    private static final String LIMITER_KEY = "adaptive.limiter";
+
+    /**
+     * 采样窗口最短时长
+     */
+    public static final long DEFAULT_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    /**
+     * 窗口内最少采样数，不足时延长窗口
+     */
+    public static final int DEFAULT_MIN_SAMPLES = 10;
+
+    // 每隔若干窗口用当前窗口的最小RTT重置无负载RTT，以适应服务本身变慢
+    private static final int PROBE_WINDOWS = 600;
+
+    private static final int MIN_LIMIT = 1;
+
+    // 梯度算法：RTT在无负载RTT的TOLERANCE倍以内视为未排队
+    private static final double TOLERANCE = 2.0;
+
+    private static final double SMOOTHING = 0.5;
+
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * 取得方法的限流器，未配置adaptive.limit时返回null。
+     * 限流器挂在方法级RpcStatus上，配置变更时重建并沿用当前上限。
+     * 
+     * @param url
+     * @param methodName
+     * @return limiter
+     */
+    public static AdaptiveLimiter getLimiter(URL url, String methodName) {
+        String algorithm = url.getMethodParameter(methodName, Constants.ADAPTIVE_LIMIT_KEY);
+        if (algorithm == null || algorithm.length() == 0 || "false".equalsIgnoreCase(algorithm)) {
+            return null;
+        }
+        if ("true".equalsIgnoreCase(algorithm) || Constants.DEFAULT_KEY.equalsIgnoreCase(algorithm)) {
+            algorithm = Constants.DEFAULT_ADAPTIVE_LIMIT;
+        }
+        int max = url.getMethodParameter(methodName, Constants.ADAPTIVE_LIMIT_MAX_KEY, Constants.DEFAULT_ADAPTIVE_LIMIT_MAX);
+        RpcStatus status = RpcStatus.getStatus(url, methodName);
+        AdaptiveLimiter limiter = (AdaptiveLimiter) status.get(LIMITER_KEY);
+        if (limiter == null || limiter.maxLimit != max || ! limiter.algorithm.equals(algorithm)) {
+            synchronized (status) {
+                limiter = (AdaptiveLimiter) status.get(LIMITER_KEY);
+                if (limiter == null || limiter.maxLimit != max || ! limiter.algorithm.equals(algorithm)) {
+                    int initial = limiter == null
+                            ? url.getMethodParameter(methodName, Constants.ADAPTIVE_LIMIT_INITIAL_KEY, Constants.DEFAULT_ADAPTIVE_LIMIT_INITIAL)
+                            : limiter.getLimit();
+                    limiter = new AdaptiveLimiter(algorithm, initial, max, DEFAULT_WINDOW_NANOS, DEFAULT_MIN_SAMPLES);
+                    status.set(LIMITER_KEY, limiter);
+                }
+            }
+        }
+        return limiter;
+    }
+
+    /**
+     * 当前所有限流器，key为服务地址加方法名。取自现存的RpcStatus，服务下线移除统计后不再出现。
+     * 
+     * @return limiters
+     */
+    public static Map<String, AdaptiveLimiter> getLimiters() {
+        Map<String, AdaptiveLimiter> limiters = new TreeMap<String, AdaptiveLimiter>();
+        for (Map.Entry<String, RpcStatus> service : RpcStatus.getStatuses().entrySet()) {
+            for (Map.Entry<String, RpcStatus> method : service.getValue().getMethodStatuses().entrySet()) {
+                AdaptiveLimiter limiter = getLimiter(method.getValue());
+                if (limiter != null) {
+                    limiters.put(service.getKey() + "." + method.getKey(), limiter);
+                }
+            }
+        }
+        return limiters;
+    }
+
+    static AdaptiveLimiter getLimiter(RpcStatus status) {
+        return (AdaptiveLimiter) status.get(LIMITER_KEY);
+    }
+
+    private final String algorithm;
+
+    private final boolean gradient;
+
+    private final int maxLimit;
+
+    private final long windowNanos;
+
+    private final int minSamples;
+
+    private volatile int limit;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    // 当前窗口的采样，窗口切换时整体取走，与并发写入之间允许有少量错位
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong rttSum = new AtomicLong();
+
+    private final AtomicInteger samples = new AtomicInteger();
+
+    private final AtomicLong minRtt = new AtomicLong(Long.MAX_VALUE);
+
+    private final AtomicInteger maxInflight = new AtomicInteger();
+
+    private volatile boolean dropped;
+
+    private final AtomicBoolean updating = new AtomicBoolean();
+
+    // 以下只在持有updating时修改
+    private volatile long noLoadRtt;
+
+    private volatile long rtt;
+
+    private int windows;
+
+    AdaptiveLimiter(String algorithm, int initial, int maxLimit, long windowNanos, int minSamples) {
+        if (Constants.GRADIENT_ADAPTIVE_LIMIT.equals(algorithm)) {
+            this.gradient = true;
+        } else if (Constants.VEGAS_ADAPTIVE_LIMIT.equals(algorithm)) {
+            this.gradient = false;
+        } else {
+            throw new IllegalStateException("Unsupported adaptive limit algorithm " + algorithm
+                    + ", supported: " + Constants.VEGAS_ADAPTIVE_LIMIT + ", " + Constants.GRADIENT_ADAPTIVE_LIMIT);
+        }
+        this.algorithm = algorithm;
+        this.maxLimit = Math.max(MIN_LIMIT, maxLimit);
+        this.limit = Math.max(MIN_LIMIT, Math.min(this.maxLimit, initial));
+        this.windowNanos = windowNanos;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * 在途请求未达到上限时占用一个名额。
+     * 
+     * @return 是否允许调用
+     */
+    public boolean tryAcquire() {
+        for (;;) {
+            int current = inflight.get();
+            if (current >= limit) {
+                return false;
+            }
+            if (inflight.compareAndSet(current, current + 1)) {
+                updateMax(maxInflight, current + 1);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 释放名额并记录本次调用。
+     * 
+     * @param elapsedNanos 调用耗时
+     * @param didDrop 调用是否失败，失败不计入RTT，但会使本窗口收缩上限
+     */
+    public void release(long elapsedNanos, boolean didDrop) {
+        inflight.decrementAndGet();
+        if (didDrop) {
+            dropped = true;
+        } else {
+            rttSum.addAndGet(elapsedNanos);
+            samples.incrementAndGet();
+            updateMin(minRtt, elapsedNanos);
+        }
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start >= windowNanos && (samples.get() >= minSamples || dropped)
+                && updating.compareAndSet(false, true)) {
+            try {
+                if (windowStart.get() == start) {
+                    roll(now);
+                }
+            } finally {
+                updating.set(false);
+            }
+        }
+    }
+
+    private void roll(long now) {
+        int count = samples.getAndSet(0);
+        long sum = rttSum.getAndSet(0);
+        long min = minRtt.getAndSet(Long.MAX_VALUE);
+        int peak = maxInflight.getAndSet(inflight.get());
+        boolean drop = dropped;
+        dropped = false;
+        windowStart.set(now);
+        if (count > 0) {
+            rtt = sum / count;
+            if (noLoadRtt == 0 || min < noLoadRtt || ++ windows >= PROBE_WINDOWS) {
+                noLoadRtt = Math.max(1, min);
+                windows = 0;
+            }
+        }
+        int current = limit;
+        int next = gradient ? gradient(current, peak, drop) : vegas(current, peak, drop);
+        limit = Math.max(MIN_LIMIT, Math.min(maxLimit, next));
+    }
+
+    private int vegas(int current, int peak, boolean drop) {
+        int log = log10(current);
+        if (drop) {
+            return current - log;
+        }
+        // 并发没有用到上限的一半时，RTT不能说明上限是否合适
+        if (peak * 2 < current || rtt == 0) {
+            return current;
+        }
+        int queue = (int) Math.ceil(current * (1 - (double) noLoadRtt / Math.max(rtt, noLoadRtt)));
+        if (queue <= log) {
+            return current + 6 * log;
+        } else if (queue < 3 * log) {
+            return current + log;
+        } else if (queue > 6 * log) {
+            return current - log;
+        }
+        return current;
+    }
+
+    private int gradient(int current, int peak, boolean drop) {
+        if (drop) {
+            return (int) (current * BACKOFF_RATIO);
+        }
+        if (peak * 2 < current || rtt == 0) {
+            return current;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * noLoadRtt / rtt));
+        double next = current * gradient + Math.sqrt(current);
+        double delta = (next - current) * SMOOTHING;
+        return current + (int) (delta > 0 ? Math.ceil(delta) : Math.floor(delta));
+    }
+
+    private static int log10(int value) {
+        return Math.max(1, (int) Math.log10(value));
+    }
+
+    private static void updateMax(AtomicInteger max, int value) {
+        int current;
+        while ((current = max.get()) < value) {
+            if (max.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    private static void updateMin(AtomicLong min, long value) {
+        long current;
+        while ((current = min.get()) > value) {
+            if (min.compareAndSet(current, value)) {
+                return;
+            }
+        }
+    }
+
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * get limit.
+     * 
+     * @return 当前允许的并发数
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * get inflight.
+     * 
+     * @return 在途请求数
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * get no-load rtt.
+     * 
+     * @return 无负载RTT(纳秒)，尚无采样时为0
+     */
+    public long getNoLoadRtt() {
+        return noLoadRtt;
+    }
+
+    /**
+     * get rtt.
+     * 
+     * @return 最近一个窗口的平均RTT(纳秒)
+     */
+    public long getRtt() {
+        return rtt;
+    }
+
+}
@@ -30,6 +30,7 @@ import java.util.concurrent.TimeoutException;
 
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
 import com.alibaba.dubbo.common.utils.NetUtils;
 
 /**
@@ -161,6 +162,17 @@ public class RpcContext {
         return (Future<T>) future;
     }
 
+    /**
+     * get listenable future, to consume the result of an async call by callbacks instead of blocking.
+     *
+     * @param <T>
+     * @return listenable future, null if the last call was not async or the protocol does not support it.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> ListenableFuture<T> getListenableFuture() {
+        return future instanceof ListenableFuture ? (ListenableFuture<T>) future : null;
+    }
+
     /**
      * set future.
      *
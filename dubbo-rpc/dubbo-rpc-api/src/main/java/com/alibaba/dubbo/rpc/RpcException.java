@@ -41,6 +41,8 @@ public final class RpcException extends RuntimeException {
     
     public static final int SERIALIZATION_EXCEPTION = 5;
     
+    public static final int LIMIT_EXCEEDED_EXCEPTION = 6;
+    
     private int code; // RpcException不能有子类，异常类型用ErrorCode表示，以便保持兼容。
 
     public RpcException() {
@@ -106,4 +108,8 @@ public final class RpcException extends RuntimeException {
     public boolean isSerialization() {
         return code == SERIALIZATION_EXCEPTION;
     }
+
+    public boolean isLimitExceeded() {
+        return code == LIMIT_EXCEEDED_EXCEPTION;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.alibaba.dubbo.common.URL;
+
+/**
+ * Peak EWMA latency statistics. (API, Cached, ThreadSafe)
+ * 
+ * 与RpcStatus并列，按URL和方法记录指数加权的移动平均延迟及在途请求数。
+ * 观测值高于当前平均值时直接取峰值，之后按时间衰减，
+ * 使变慢的提供者立即被感知，恢复后又能逐步重新获得流量。
+ * 
+ * @see com.alibaba.dubbo.rpc.filter.LatencyFilter
+ * @see com.alibaba.dubbo.rpc.cluster.loadbalance.PeakEwmaLoadBalance
+ */
+public class RpcLatency {
+
+    /**
+     * 衰减时间常数，超过该时长的旧观测值权重降到1/e以下
+     */
+    public static final long DEFAULT_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private static final ConcurrentMap<String, ConcurrentMap<String, RpcLatency>> METHOD_LATENCIES = new ConcurrentHashMap<String, ConcurrentMap<String, RpcLatency>>();
+
+    /**
+     * 
+     * @param url
+     * @param methodName
+     * @return latency
+     */
+    public static RpcLatency getLatency(URL url, String methodName) {
+        String uri = url.toIdentityString();
+        ConcurrentMap<String, RpcLatency> map = METHOD_LATENCIES.get(uri);
+        if (map == null) {
+            METHOD_LATENCIES.putIfAbsent(uri, new ConcurrentHashMap<String, RpcLatency>());
+            map = METHOD_LATENCIES.get(uri);
+        }
+        RpcLatency latency = map.get(methodName);
+        if (latency == null) {
+            map.putIfAbsent(methodName, new RpcLatency(DEFAULT_DECAY_NANOS));
+            latency = map.get(methodName);
+        }
+        return latency;
+    }
+
+    /**
+     * 
+     * @param url
+     */
+    public static void removeLatency(URL url) {
+        METHOD_LATENCIES.remove(url.toIdentityString());
+    }
+
+    private final AtomicInteger active = new AtomicInteger();
+
+    private final double decayNanos;
+
+    // cost和stamp只在observe中成对修改，读取时允许看到相邻两次观测的混合值
+    private volatile double cost;
+
+    private volatile long stamp;
+
+    RpcLatency(long decayNanos) {
+        this.decayNanos = decayNanos;
+        this.stamp = System.nanoTime();
+    }
+
+    /**
+     * 开始一次调用
+     */
+    public void begin() {
+        active.incrementAndGet();
+    }
+
+    /**
+     * 结束一次调用并记录其耗时
+     * 
+     * @param elapsedNanos
+     */
+    public void end(long elapsedNanos) {
+        active.decrementAndGet();
+        observe(elapsedNanos, System.nanoTime());
+    }
+
+    synchronized void observe(long elapsedNanos, long now) {
+        double rtt = elapsedNanos < 0 ? 0 : elapsedNanos;
+        double current = cost;
+        if (rtt > current) {
+            cost = rtt;
+        } else {
+            double w = weight(now);
+            cost = current * w + rtt * (1 - w);
+        }
+        if (now > stamp) {
+            stamp = now;
+        }
+    }
+
+    private double weight(long now) {
+        long td = now - stamp;
+        return td <= 0 ? 1 : Math.exp(-td / decayNanos);
+    }
+
+    /**
+     * get active.
+     * 
+     * @return active
+     */
+    public int getActive() {
+        return active.get();
+    }
+
+    /**
+     * 获取衰减到当前时刻的平均延迟
+     * 
+     * @return ewma latency in nanoseconds
+     */
+    public double getLatency() {
+        return getLatency(System.nanoTime());
+    }
+
+    double getLatency(long now) {
+        return cost * weight(now);
+    }
+
+}
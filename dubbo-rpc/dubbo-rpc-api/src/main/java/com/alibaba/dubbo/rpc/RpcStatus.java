@@ -15,18 +15,21 @@
  */
 package com.alibaba.dubbo.rpc;
 
+import java.util.Collections;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.StripedCounter;
 
 /**
  * URL statistics. (API, Cached, ThreadSafe)
  * 
  * @see com.alibaba.dubbo.rpc.filter.ActiveLimitFilter
  * @see com.alibaba.dubbo.rpc.filter.ExecuteLimitFilter
+ * @see com.alibaba.dubbo.rpc.filter.AdaptiveLimitFilter
  * @see com.alibaba.dubbo.rpc.cluster.loadbalance.LeastActiveLoadBalance
  * @author william.liangf
  */
@@ -34,8 +37,6 @@ public class RpcStatus {
 
     private static final ConcurrentMap<String, RpcStatus> SERVICE_STATISTICS = new ConcurrentHashMap<String, RpcStatus>();
 
-    private static final ConcurrentMap<String, ConcurrentMap<String, RpcStatus>> METHOD_STATISTICS = new ConcurrentHashMap<String, ConcurrentMap<String, RpcStatus>>();
-
     /**
      * 
      * @param url
@@ -45,12 +46,12 @@ public class RpcStatus {
         String uri = url.toIdentityString();
         RpcStatus status = SERVICE_STATISTICS.get(uri);
         if (status == null) {
-            SERVICE_STATISTICS.putIfAbsent(uri, new RpcStatus());
+            SERVICE_STATISTICS.putIfAbsent(uri, new RpcStatus(null));
             status = SERVICE_STATISTICS.get(uri);
         }
         return status;
     }
-    
+
     /**
      * 
      * @param url
@@ -59,26 +60,16 @@ public class RpcStatus {
         String uri = url.toIdentityString();
         SERVICE_STATISTICS.remove(uri);
     }
-    
+
     /**
+     * 方法级统计挂在服务级统计之下，计数时同时累加到服务级。
      * 
      * @param url
      * @param methodName
      * @return status
      */
     public static RpcStatus getStatus(URL url, String methodName) {
-        String uri = url.toIdentityString();
-        ConcurrentMap<String, RpcStatus> map = METHOD_STATISTICS.get(uri);
-        if (map == null) {
-            METHOD_STATISTICS.putIfAbsent(uri, new ConcurrentHashMap<String, RpcStatus>());
-            map = METHOD_STATISTICS.get(uri);
-        }
-        RpcStatus status = map.get(methodName);
-        if (status == null) {
-            map.putIfAbsent(methodName, new RpcStatus());
-            status = map.get(methodName);
-        }
-        return status;
+        return getStatus(url).getMethodStatus(methodName);
     }
 
     /**
@@ -86,10 +77,9 @@ public class RpcStatus {
      * @param url
      */
     public static void removeStatus(URL url, String methodName) {
-        String uri = url.toIdentityString();
-        ConcurrentMap<String, RpcStatus> map = METHOD_STATISTICS.get(uri);
-        if (map != null) {
-            map.remove(methodName);
+        RpcStatus status = SERVICE_STATISTICS.get(url.toIdentityString());
+        if (status != null) {
+            status.methods.remove(methodName);
         }
     }
 
@@ -98,12 +88,20 @@ public class RpcStatus {
      * @param url
      */
     public static void beginCount(URL url, String methodName) {
-        beginCount(getStatus(url));
         beginCount(getStatus(url, methodName));
     }
-    
-    private static void beginCount(RpcStatus status) {
-        status.active.incrementAndGet();
+
+    /**
+     * 开始计数，status为方法级统计时同时计入其服务级统计。
+     * 调用方应先取得status并在endCount时复用，避免重复查找。
+     * 
+     * @param status
+     */
+    public static void beginCount(RpcStatus status) {
+        status.active.increment();
+        if (status.service != null) {
+            status.service.active.increment();
+        }
     }
 
     /**
@@ -113,41 +111,61 @@ public class RpcStatus {
      * @param succeeded
      */
     public static void endCount(URL url, String methodName, long elapsed, boolean succeeded) {
-        endCount(getStatus(url), elapsed, succeeded);
         endCount(getStatus(url, methodName), elapsed, succeeded);
     }
-    
-    private static void endCount(RpcStatus status, long elapsed, boolean succeeded) {
-        status.active.decrementAndGet();
-        status.total.incrementAndGet();
-        status.totalElapsed.addAndGet(elapsed);
-        if (status.maxElapsed.get() < elapsed) {
-            status.maxElapsed.set(elapsed);
+
+    /**
+     * 
+     * @param status
+     * @param elapsed
+     * @param succeeded
+     */
+    public static void endCount(RpcStatus status, long elapsed, boolean succeeded) {
+        status.end(elapsed, succeeded);
+        if (status.service != null) {
+            status.service.end(elapsed, succeeded);
         }
+    }
+
+    private void end(long elapsed, boolean succeeded) {
+        active.decrement();
+        total.increment();
+        totalElapsed.add(elapsed);
+        updateMax(maxElapsed, elapsed);
         if (succeeded) {
-            if (status.succeededMaxElapsed.get() < elapsed) {
-                status.succeededMaxElapsed.set(elapsed);
-            }
+            updateMax(succeededMaxElapsed, elapsed);
         } else {
-            status.failed.incrementAndGet();
-            status.failedElapsed.addAndGet(elapsed);
-            if (status.failedMaxElapsed.get() < elapsed) {
-                status.failedMaxElapsed.set(elapsed);
+            failed.increment();
+            failedElapsed.add(elapsed);
+            updateMax(failedMaxElapsed, elapsed);
+        }
+    }
+
+    private static void updateMax(AtomicLong max, long elapsed) {
+        long current;
+        while ((current = max.get()) < elapsed) {
+            if (max.compareAndSet(current, elapsed)) {
+                return;
             }
         }
     }
 
     private final ConcurrentMap<String, Object> values = new ConcurrentHashMap<String, Object>();
 
-    private final AtomicInteger active = new AtomicInteger();
+    // 服务级统计持有方法级统计，方法级统计持有其服务级统计
+    private final ConcurrentMap<String, RpcStatus> methods;
 
-    private final AtomicLong total = new AtomicLong();
+    private final RpcStatus service;
 
-    private final AtomicInteger failed = new AtomicInteger();
+    private final StripedCounter active = new StripedCounter();
 
-    private final AtomicLong totalElapsed = new AtomicLong();
+    private final StripedCounter total = new StripedCounter();
 
-    private final AtomicLong failedElapsed = new AtomicLong();
+    private final StripedCounter failed = new StripedCounter();
+
+    private final StripedCounter totalElapsed = new StripedCounter();
+
+    private final StripedCounter failedElapsed = new StripedCounter();
 
     private final AtomicLong maxElapsed = new AtomicLong();
 
@@ -155,7 +173,29 @@ public class RpcStatus {
 
     private final AtomicLong succeededMaxElapsed = new AtomicLong();
     
-    private RpcStatus() {}
+    private RpcStatus(RpcStatus service) {
+        this.service = service;
+        this.methods = service == null ? new ConcurrentHashMap<String, RpcStatus>() : null;
+    }
+
+    // 服务地址 -> 服务级统计
+    static Map<String, RpcStatus> getStatuses() {
+        return Collections.unmodifiableMap(SERVICE_STATISTICS);
+    }
+
+    // 方法名 -> 方法级统计，方法级统计本身返回空
+    Map<String, RpcStatus> getMethodStatuses() {
+        return methods == null ? Collections.<String, RpcStatus>emptyMap() : Collections.unmodifiableMap(methods);
+    }
+
+    private RpcStatus getMethodStatus(String methodName) {
+        RpcStatus status = methods.get(methodName);
+        if (status == null) {
+            methods.putIfAbsent(methodName, new RpcStatus(this));
+            status = methods.get(methodName);
+        }
+        return status;
+    }
 
     /**
      * set value.
@@ -183,7 +223,17 @@ public class RpcStatus {
      * @return active
      */
     public int getActive() {
-        return active.get();
+        return (int) active.sum();
+    }
+
+    /**
+     * get adaptive limit.
+     * 
+     * @return 自适应并发上限，未启用adaptive.limit时为0
+     */
+    public int getLimit() {
+        AdaptiveLimiter limiter = AdaptiveLimiter.getLimiter(this);
+        return limiter == null ? 0 : limiter.getLimit();
     }
 
     /**
@@ -192,7 +242,7 @@ public class RpcStatus {
      * @return total
      */
     public long getTotal() {
-        return total.longValue();
+        return total.sum();
     }
     
     /**
@@ -201,7 +251,7 @@ public class RpcStatus {
      * @return total elapsed
      */
     public long getTotalElapsed() {
-        return totalElapsed.get();
+        return totalElapsed.sum();
     }
 
     /**
@@ -232,7 +282,7 @@ public class RpcStatus {
      * @return failed
      */
     public int getFailed() {
-        return failed.get();
+        return (int) failed.sum();
     }
 
     /**
@@ -241,7 +291,7 @@ public class RpcStatus {
      * @return failed elapsed
      */
     public long getFailedElapsed() {
-        return failedElapsed.get();
+        return failedElapsed.sum();
     }
 
     /**
@@ -15,72 +15,132 @@
  */
 package com.alibaba.dubbo.rpc.filter;
 
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
 import com.alibaba.dubbo.common.Constants;
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
  * LimitInvokerFilter
  * 
+ * 每个服务方法持有一个公平信号量，超过actives的调用按先后顺序排队等待，超过timeout仍未获得许可则失败。
+ * 异步调用在响应future完成时才归还许可并结束计数。
+ * 
  * @author william.liangf
  */
 @Activate(group = Constants.CONSUMER, value = Constants.ACTIVES_KEY)
 public class ActiveLimitFilter implements Filter {
 
+    private static final String PERMITS_KEY = "actives.permits";
+
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
-        int max = invoker.getUrl().getMethodParameter(methodName, Constants.ACTIVES_KEY, 0);
-        RpcStatus count = RpcStatus.getStatus(invoker.getUrl(), invocation.getMethodName());
-        if (max > 0) {
-            long timeout = invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.TIMEOUT_KEY, 0);
-            long start = System.currentTimeMillis();
-            long remain = timeout;
-            int active = count.getActive();
-            if (active >= max) {
-                synchronized (count) {
-                    while ((active = count.getActive()) >= max) {
-                        try {
-                            count.wait(remain);
-                        } catch (InterruptedException e) {
-                        }
-                        long elapsed = System.currentTimeMillis() - start;
-                        remain = timeout - elapsed;
-                        if (remain <= 0) {
-                            throw new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
-                                                   + invoker.getInterface().getName() + ", method: "
-                                                   + invocation.getMethodName() + ", elapsed: " + elapsed
-                                                   + ", timeout: " + timeout + ". concurrent invokes: " + active
-                                                   + ". max concurrent invoke limit: " + max);
-                        }
-                    }
+        int max = url.getMethodParameter(methodName, Constants.ACTIVES_KEY, 0);
+        final RpcStatus count = RpcStatus.getStatus(url, methodName);
+        final Semaphore permits = max > 0 ? acquire(invoker, invocation, count, max) : null;
+        boolean async = RpcUtils.isAsync(url, invocation);
+        if (async) {
+            RpcContext.getContext().setFuture(null);
+        }
+        final long begin = System.currentTimeMillis();
+        RpcStatus.beginCount(count);
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (RuntimeException t) {
+            end(count, permits, begin, false);
+            throw t;
+        } catch (Error e) {
+            end(count, permits, begin, false);
+            throw e;
+        }
+        ListenableFuture<Object> future = async ? RpcContext.getContext().<Object>getListenableFuture() : null;
+        if (future == null) {
+            end(count, permits, begin, true);
+        } else {
+            future.addListener(new FutureListener<Object>() {
+                public void onSuccess(Object value) {
+                    end(count, permits, begin, true);
                 }
-            }
+
+                public void onFailure(Throwable cause) {
+                    end(count, permits, begin, ! (cause instanceof RpcException));
+                }
+            });
         }
+        return result;
+    }
+
+    private Semaphore acquire(Invoker<?> invoker, Invocation invocation, RpcStatus count, int max) {
+        Semaphore permits = getPermits(count, max);
+        long timeout = invoker.getUrl().getMethodParameter(invocation.getMethodName(), Constants.TIMEOUT_KEY, Constants.DEFAULT_TIMEOUT);
+        long start = System.currentTimeMillis();
         try {
-            long begin = System.currentTimeMillis();
-            RpcStatus.beginCount(url, methodName);
-            try {
-                Result result = invoker.invoke(invocation);
-                RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, true);
-                return result;
-            } catch (RuntimeException t) {
-                RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, false);
-                throw t;
+            // 带超时的tryAcquire遵守公平性，不会越过已在排队的线程
+            if (permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                return permits;
             }
-        } finally {
-            if(max>0){
-                synchronized (count) {
-                    count.notify();
-                } 
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RpcException("Interrupted while waiting concurrent invoke in client-side for service:  "
+                                   + invoker.getInterface().getName() + ", method: " + invocation.getMethodName(), e);
+        }
+        long elapsed = System.currentTimeMillis() - start;
+        throw new RpcException("Waiting concurrent invoke timeout in client-side for service:  "
+                               + invoker.getInterface().getName() + ", method: "
+                               + invocation.getMethodName() + ", elapsed: " + elapsed
+                               + ", timeout: " + timeout + ". concurrent invokes: " + count.getActive()
+                               + ". max concurrent invoke limit: " + max);
+    }
+
+    private static Semaphore getPermits(RpcStatus count, int max) {
+        Object permits = count.get(PERMITS_KEY);
+        if (permits instanceof Permits && ((Permits) permits).max == max) {
+            return (Permits) permits;
+        }
+        synchronized (count) {
+            permits = count.get(PERMITS_KEY);
+            if (permits instanceof Permits && ((Permits) permits).max == max) {
+                return (Permits) permits;
             }
+            // actives变更后换用新的信号量，已持有旧许可的调用仍归还给旧信号量
+            Permits created = new Permits(max);
+            count.set(PERMITS_KEY, created);
+            return created;
+        }
+    }
+
+    private static void end(RpcStatus count, Semaphore permits, long begin, boolean succeeded) {
+        RpcStatus.endCount(count, System.currentTimeMillis() - begin, succeeded);
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    private static final class Permits extends Semaphore {
+
+        private static final long serialVersionUID = 2297843591546024457L;
+
+        final int max;
+
+        Permits(int max) {
+            super(max, true);
+            this.max = max;
         }
+
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,61 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.AdaptiveLimiter;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+
+/**
+ * 自适应并发限制，超过当前上限的请求立即拒绝，不在提供者端排队。
+ * 
+ * <pre>
+ * &lt;dubbo:service adaptive.limit="vegas" /&gt; 或 adaptive.limit="gradient"
+ * </pre>
+ * 
+ * @see com.alibaba.dubbo.rpc.AdaptiveLimiter
+ */
+@Activate(group = Constants.PROVIDER, value = Constants.ADAPTIVE_LIMIT_KEY)
+public class AdaptiveLimitFilter implements Filter {
+
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        URL url = invoker.getUrl();
+        String methodName = invocation.getMethodName();
+        AdaptiveLimiter limiter = AdaptiveLimiter.getLimiter(url, methodName);
+        if (limiter == null) {
+            return invoker.invoke(invocation);
+        }
+        if (! limiter.tryAcquire()) {
+            throw new RpcException(RpcException.LIMIT_EXCEEDED_EXCEPTION, "Failed to invoke method " + methodName + " in provider " + url + ", cause: The service concurrency exceeds the adaptive limit " + limiter.getLimit() + " of <dubbo:service adaptive.limit=\"" + limiter.getAlgorithm() + "\" />.");
+        }
+        long begin = System.nanoTime();
+        boolean dropped = true;
+        try {
+            Result result = invoker.invoke(invocation);
+            dropped = false;
+            return result;
+        } finally {
+            limiter.release(System.nanoTime() - begin, dropped);
+        }
+    }
+
+}
@@ -37,15 +37,15 @@ public class ExecuteLimitFilter implements Filter {
         URL url = invoker.getUrl();
         String methodName = invocation.getMethodName();
         int max = url.getMethodParameter(methodName, Constants.EXECUTES_KEY, 0);
+        RpcStatus count = RpcStatus.getStatus(url, methodName);
         if (max > 0) {
-            RpcStatus count = RpcStatus.getStatus(url, invocation.getMethodName());
             if (count.getActive() >= max) {
                 throw new RpcException("Failed to invoke method " + invocation.getMethodName() + " in provider " + url + ", cause: The service using threads greater than <dubbo:service executes=\"" + max + "\" /> limited.");
             }
         }
         long begin = System.currentTimeMillis();
         boolean isException = false;
-        RpcStatus.beginCount(url, methodName);
+        RpcStatus.beginCount(count);
         try {
             Result result = invoker.invoke(invocation);
             return result;
@@ -59,7 +59,7 @@ public class ExecuteLimitFilter implements Filter {
             }
         }
         finally {
-            RpcStatus.endCount(url, methodName, System.currentTimeMillis() - begin, isException);
+            RpcStatus.endCount(count, System.currentTimeMillis() - begin, ! isException);
         }
     }
 
@@ -0,0 +1,80 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcLatency;
+import com.alibaba.dubbo.rpc.support.RpcUtils;
+
+/**
+ * 为peakewma负载均衡记录调用延迟，其它负载均衡策略下直接透传。
+ * 异步调用在响应future完成时才记录延迟并结束计数。
+ * 
+ * @see com.alibaba.dubbo.rpc.RpcLatency
+ */
+@Activate(group = Constants.CONSUMER, value = Constants.LOADBALANCE_KEY)
+public class LatencyFilter implements Filter {
+
+    public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
+        String methodName = invocation.getMethodName();
+        if (! Constants.PEAKEWMA_LOADBALANCE.equals(invoker.getUrl().getMethodParameter(
+                methodName, Constants.LOADBALANCE_KEY, Constants.DEFAULT_LOADBALANCE))) {
+            return invoker.invoke(invocation);
+        }
+        final RpcLatency latency = RpcLatency.getLatency(invoker.getUrl(), methodName);
+        boolean async = RpcUtils.isAsync(invoker.getUrl(), invocation);
+        if (async) {
+            RpcContext.getContext().setFuture(null);
+        }
+        final long begin = System.nanoTime();
+        latency.begin();
+        Result result;
+        try {
+            result = invoker.invoke(invocation);
+        } catch (RuntimeException t) {
+            latency.end(System.nanoTime() - begin);
+            throw t;
+        } catch (Error e) {
+            latency.end(System.nanoTime() - begin);
+            throw e;
+        }
+        ListenableFuture<Object> future = async ? RpcContext.getContext().<Object>getListenableFuture() : null;
+        if (future == null) {
+            latency.end(System.nanoTime() - begin);
+        } else {
+            future.addListener(new FutureListener<Object>() {
+                public void onSuccess(Object value) {
+                    latency.end(System.nanoTime() - begin);
+                }
+
+                public void onFailure(Throwable cause) {
+                    latency.end(System.nanoTime() - begin);
+                }
+            });
+        }
+        return result;
+    }
+
+}
@@ -25,9 +25,11 @@ import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.filter.tps.DefaultTPSLimiter;
 import com.alibaba.dubbo.rpc.filter.tps.TPSLimiter;
+import com.alibaba.dubbo.rpc.filter.tps.TokenBucketTPSLimiter;
 
 /**
  * 限制 service 或方法的 tps.
+ * tps.limiter=bucket 时使用平滑补充的令牌桶，否则按 tps.interval 固定窗口计数.
  *
  * @author <a href="mailto:gang.lvg@alibaba-inc.com">kimi</a>
  */
@@ -36,9 +38,13 @@ public class TpsLimitFilter implements Filter {
 
     private final TPSLimiter tpsLimiter = new DefaultTPSLimiter();
 
+    private final TPSLimiter bucketTpsLimiter = new TokenBucketTPSLimiter();
+
     public Result invoke(Invoker<?> invoker, Invocation invocation) throws RpcException {
 
-        if (!tpsLimiter.isAllowable(invoker.getUrl(), invocation)) {
+        TPSLimiter limiter = Constants.TOKEN_BUCKET_TPS_LIMITER.equals(invoker.getUrl().getParameter(Constants.TPS_LIMITER_KEY))
+                ? bucketTpsLimiter : tpsLimiter;
+        if (!limiter.isAllowable(invoker.getUrl(), invocation)) {
             throw new RpcException(
                     new StringBuilder(64)
                             .append("Failed to invoke service ")
@@ -0,0 +1,147 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.tps;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 令牌桶。
+ * <p>
+ * 桶中令牌数由“理论到达时间”推算：每取一个令牌将其推后interval/rate纳秒，
+ * 不早于now-interval(即桶满时最多积累rate个令牌)，超过now则拒绝。
+ * 令牌随时间平滑补充，不存在固定窗口边界上的两倍突发，也无需定时重置。
+ * <p>
+ * 速率较高时各线程按分段成批预取令牌，本段令牌用完前不再竞争公共的到达时间。
+ * 预取的令牌最多使突发多出 分段数*(批量-1) 个，对应线程不再调用时这些令牌不会归还。
+ */
+class TokenBucket {
+
+    // 每个分段占用16个long(128字节)，避免伪共享
+    private static final int PADDING = 16;
+
+    private static final int STRIPE_BITS = stripeBits();
+
+    private static final int STRIPES = 1 << STRIPE_BITS;
+
+    private static final int MAX_BATCH = 16;
+
+    private final String name;
+
+    private final int rate;
+
+    private final long interval;
+
+    private final long nanosPerToken;
+
+    private final long burstNanos;
+
+    private final int batch;
+
+    private final AtomicLong arrival;
+
+    private final AtomicLongArray stripes;
+
+    TokenBucket(String name, int rate, long interval) {
+        this.name = name;
+        this.rate = rate;
+        this.interval = interval;
+        this.nanosPerToken = Math.max(1L, TimeUnit.MILLISECONDS.toNanos(interval) / rate);
+        this.burstNanos = nanosPerToken * rate;
+        this.batch = Math.max(1, Math.min(MAX_BATCH, rate / (STRIPES * 64)));
+        this.arrival = new AtomicLong(System.nanoTime() - burstNanos);
+        this.stripes = batch > 1 ? new AtomicLongArray(STRIPES * PADDING) : null;
+    }
+
+    public boolean isAllowable() {
+        if (stripes == null) {
+            return take(1);
+        }
+        int index = index();
+        long local;
+        while ((local = stripes.get(index)) > 0) {
+            if (stripes.compareAndSet(index, local, local - 1)) {
+                return true;
+            }
+        }
+        if (take(batch)) {
+            stripes.addAndGet(index, batch - 1);
+            return true;
+        }
+        return take(1);
+    }
+
+    private boolean take(int tokens) {
+        long cost = tokens * nanosPerToken;
+        for (;;) {
+            long now = System.nanoTime();
+            long current = arrival.get();
+            long next = Math.max(current, now - burstNanos) + cost;
+            if (next - now > 0) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 令牌已补满，与新建的令牌桶等价，可以丢弃。
+     */
+    boolean isIdle() {
+        return System.nanoTime() - arrival.get() >= burstNanos;
+    }
+
+    boolean matches(int rate, long interval) {
+        return this.rate == rate && this.interval == interval;
+    }
+
+    /**
+     * 当前可用令牌数(不含分段中已预取的令牌)。
+     * 
+     * @return tokens
+     */
+    long getToken() {
+        long available = (System.nanoTime() - arrival.get()) / nanosPerToken;
+        return Math.max(0L, Math.min(rate, available));
+    }
+
+    private static int index() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h >>> (32 - STRIPE_BITS)) * PADDING;
+    }
+
+    private static int stripeBits() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        int bits = 1;
+        while ((1 << bits) < processors && bits < 6) {
+            bits ++;
+        }
+        return bits;
+    }
+
+    public String toString() {
+        return new StringBuilder(32).append("TokenBucket ")
+            .append("[name=").append(name).append(", ")
+            .append("rate = ").append(rate).append(", ")
+            .append("interval = ").append(interval).append("]")
+            .toString();
+    }
+
+}
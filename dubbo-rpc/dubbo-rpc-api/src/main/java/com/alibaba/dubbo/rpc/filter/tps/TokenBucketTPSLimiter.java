@@ -0,0 +1,120 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.tps;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.RpcContext;
+
+/**
+ * 令牌桶限流，tps.interval内最多tps个请求，令牌随时间平滑补充。
+ * <p>
+ * tps.scope=application时每个消费方应用(未传应用名时按消费方地址)各自一个令牌桶。
+ * 消费方变化时令牌桶数会增长，新建令牌桶使桶数超过上次清理后的两倍(至少SWEEP_THRESHOLD)时，
+ * 清理已补满的令牌桶，它们与新建的桶等价。
+ * 
+ * @see TokenBucket
+ */
+public class TokenBucketTPSLimiter implements TPSLimiter {
+
+    private static final int SWEEP_THRESHOLD = 1024;
+
+    private final ConcurrentMap<String, Buckets> stats = new ConcurrentHashMap<String, Buckets>();
+
+    public boolean isAllowable(URL url, Invocation invocation) {
+        int rate = url.getParameter(Constants.TPS_LIMIT_RATE_KEY, -1);
+        long interval = url.getParameter(Constants.TPS_LIMIT_INTERVAL_KEY, Constants.DEFAULT_TPS_LIMIT_INTERVAL);
+        String serviceKey = url.getServiceKey();
+        if (rate > 0) {
+            Buckets buckets = stats.get(serviceKey);
+            if (buckets == null) {
+                stats.putIfAbsent(serviceKey, new Buckets());
+                buckets = stats.get(serviceKey);
+            }
+            String consumer = getConsumer(url, invocation);
+            TokenBucket bucket = buckets.buckets.get(consumer);
+            if (bucket == null || ! bucket.matches(rate, interval)) {
+                if (bucket == null) {
+                    buckets.sweepIfNecessary();
+                }
+                TokenBucket created = new TokenBucket(serviceKey, rate, interval);
+                if (bucket == null ? buckets.buckets.putIfAbsent(consumer, created) == null
+                        : buckets.buckets.replace(consumer, bucket, created)) {
+                    bucket = created;
+                } else {
+                    bucket = buckets.buckets.get(consumer);
+                    if (bucket == null) {
+                        // 刚被清理，本次直接使用新建的桶
+                        bucket = created;
+                    }
+                }
+            }
+            return bucket.isAllowable();
+        } else {
+            stats.remove(serviceKey);
+        }
+
+        return true;
+    }
+
+    int getBucketCount(URL url) {
+        Buckets buckets = stats.get(url.getServiceKey());
+        return buckets == null ? 0 : buckets.buckets.size();
+    }
+
+    private static String getConsumer(URL url, Invocation invocation) {
+        if (! Constants.APPLICATION_TPS_LIMIT_SCOPE.equals(url.getParameter(Constants.TPS_LIMIT_SCOPE_KEY))) {
+            return "";
+        }
+        String application = invocation.getAttachment(Constants.APPLICATION_KEY);
+        if (application == null || application.length() == 0) {
+            application = RpcContext.getContext().getRemoteHost();
+        }
+        return application == null ? "" : application;
+    }
+
+    private static class Buckets {
+
+        // 消费方 -> 令牌桶
+        final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+
+        private volatile int sweepSize = SWEEP_THRESHOLD;
+
+        void sweepIfNecessary() {
+            if (buckets.size() < sweepSize) {
+                return;
+            }
+            synchronized (this) {
+                if (buckets.size() < sweepSize) {
+                    return;
+                }
+                for (Map.Entry<String, TokenBucket> entry : buckets.entrySet()) {
+                    if (entry.getValue().isIdle()) {
+                        buckets.remove(entry.getKey(), entry.getValue());
+                    }
+                }
+                sweepSize = Math.max(SWEEP_THRESHOLD, buckets.size() * 2);
+            }
+        }
+
+    }
+
+}
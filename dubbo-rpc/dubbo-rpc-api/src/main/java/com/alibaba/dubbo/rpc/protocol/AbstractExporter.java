@@ -19,6 +19,7 @@ import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.rpc.Exporter;
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.RpcStatus;
 
 /**
  * AbstractExporter.
@@ -54,6 +55,8 @@ public abstract class AbstractExporter<T> implements Exporter<T> {
         }
         unexported = true;
         getInvoker().destroy();
+        // 丢弃服务的调用统计及挂在其上的限流器，重新暴露时重新计数
+        RpcStatus.removeStatus(getInvoker().getUrl());
     }
 
     public String toString() {
@@ -28,6 +28,7 @@ import com.alibaba.dubbo.common.logger.LoggerFactory;
 import com.alibaba.dubbo.common.utils.NetUtils;
 import com.alibaba.dubbo.rpc.Invoker;
 import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcLatency;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Result;
@@ -109,6 +110,8 @@ public abstract class AbstractInvoker<T> implements Invoker<T> {
         }
         destroyed = true;
         setAvailable(false);
+        // 提供者下线后以同一地址重新上线时从新的延迟统计开始
+        RpcLatency.removeLatency(getUrl());
     }
     
     public boolean isDestroyed() {
@@ -0,0 +1,103 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+
+public class AdaptiveLimiterTest {
+
+    private static void window(AdaptiveLimiter limiter, long rtt) {
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i ++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        for (int i = 0; i < limit; i ++) {
+            limiter.release(rtt, false);
+        }
+    }
+
+    @Test
+    public void testVegasGrowsWithoutQueueing() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(Constants.VEGAS_ADAPTIVE_LIMIT, 10, 100, 0, 1);
+        window(limiter, 1000000);
+        assertEquals(1000000, limiter.getNoLoadRtt());
+        int limit = limiter.getLimit();
+        assertTrue(limit > 10);
+        window(limiter, 1000000);
+        assertTrue(limiter.getLimit() > limit);
+    }
+
+    @Test
+    public void testVegasShrinksWhenRttGrows() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(Constants.VEGAS_ADAPTIVE_LIMIT, 50, 100, 0, 1);
+        window(limiter, 1000000);
+        int limit = limiter.getLimit();
+        window(limiter, 5000000);
+        assertEquals(1000000, limiter.getNoLoadRtt());
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void testGradientShrinksWhenRttGrows() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(Constants.GRADIENT_ADAPTIVE_LIMIT, 50, 100, 0, 1);
+        window(limiter, 1000000);
+        int limit = limiter.getLimit();
+        assertTrue(limit > 50);
+        window(limiter, 10000000);
+        assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void testDropShrinksAndRespectsBounds() {
+        AdaptiveLimiter limiter = new AdaptiveLimiter(Constants.VEGAS_ADAPTIVE_LIMIT, 2, 3, 0, 1);
+        for (int i = 0; i < 5; i ++) {
+            window(limiter, 1000000);
+        }
+        assertEquals(3, limiter.getLimit());
+        for (int i = 0; i < 5; i ++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(1000000, true);
+        }
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInflight());
+    }
+
+    @Test
+    public void testLimitersFollowRpcStatus() {
+        URL url = URL.valueOf("dubbo://127.0.0.1:20880/AdaptiveLimiterTest?" + Constants.ADAPTIVE_LIMIT_KEY + "=true");
+        String key = url.toIdentityString() + ".say";
+        AdaptiveLimiter limiter = AdaptiveLimiter.getLimiter(url, "say");
+        assertSame(limiter, AdaptiveLimiter.getLimiters().get(key));
+        // 服务下线移除统计后不再报告
+        RpcStatus.removeStatus(url);
+        assertFalse(AdaptiveLimiter.getLimiters().containsKey(key));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUnsupportedAlgorithm() {
+        new AdaptiveLimiter("unknown", 10, 100, 0, 1);
+    }
+
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.protocol.AbstractInvoker;
+
+public class RpcLatencyTest {
+
+    @Test
+    public void testRemovedWhenInvokerDestroyed() {
+        URL url = URL.valueOf("dubbo://127.0.0.1:20880/RpcLatencyTest");
+        Invoker<RpcLatencyTest> invoker = new AbstractInvoker<RpcLatencyTest>(RpcLatencyTest.class, url) {
+            protected Result doInvoke(Invocation invocation) throws Throwable {
+                return new RpcResult();
+            }
+        };
+        RpcLatency latency = RpcLatency.getLatency(url, "say");
+        assertSame(latency, RpcLatency.getLatency(url, "say"));
+        invoker.destroy();
+        assertNotSame(latency, RpcLatency.getLatency(url, "say"));
+    }
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+
+public class RpcStatusTest {
+
+    @Test
+    public void testMethodCountsAggregateToService() {
+        URL url = URL.valueOf("dubbo://127.0.0.1:20880/RpcStatusTest");
+        RpcStatus say = RpcStatus.getStatus(url, "say");
+        RpcStatus hello = RpcStatus.getStatus(url, "hello");
+        assertSame(say, RpcStatus.getStatus(url, "say"));
+
+        RpcStatus.beginCount(say);
+        RpcStatus.beginCount(hello);
+        assertEquals(2, RpcStatus.getStatus(url).getActive());
+        assertEquals(1, say.getActive());
+
+        RpcStatus.endCount(say, 10, true);
+        RpcStatus.endCount(url, "hello", 30, false);
+        RpcStatus service = RpcStatus.getStatus(url);
+        assertEquals(0, service.getActive());
+        assertEquals(2, service.getTotal());
+        assertEquals(1, service.getFailed());
+        assertEquals(40, service.getTotalElapsed());
+        assertEquals(30, service.getMaxElapsed());
+        assertEquals(10, service.getSucceededMaxElapsed());
+        assertEquals(1, hello.getFailed());
+        assertEquals(0, say.getFailed());
+    }
+
+}
@@ -15,15 +15,23 @@
  */
 package com.alibaba.dubbo.rpc.filter;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import org.junit.Test;
 
 import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.RpcStatus;
 import com.alibaba.dubbo.rpc.support.MockInvocation;
 import com.alibaba.dubbo.rpc.support.MyInvoker;
 
@@ -80,4 +88,27 @@ public class ActiveLimitFilterTest {
         }
         assertNotSame(0, count);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testAsyncInvokeHoldsPermitUntilDone() {
+        URL url = URL.valueOf("test://test:11/test?accesslog=true&group=dubbo&version=1.1&actives=1&timeout=10&async=true");
+        final SettableFuture<Object> future = new SettableFuture<Object>();
+        Invoker<ActiveLimitFilterTest> invoker = new MyInvoker<ActiveLimitFilterTest>(url) {
+            public Result invoke(Invocation invocation) throws RpcException {
+                RpcContext.getContext().setFuture(future);
+                return new RpcResult();
+            }
+        };
+        Invocation invocation = new MockInvocation();
+        activeLimitFilter.invoke(invoker, invocation);
+        try {
+            activeLimitFilter.invoke(invoker, invocation);
+            fail();
+        } catch (RpcException expected) {
+            assertTrue(expected.getMessage().contains("Waiting concurrent invoke timeout"));
+        }
+        future.set("done");
+        assertEquals(0, RpcStatus.getStatus(url, invocation.getMethodName()).getActive());
+        activeLimitFilter.invoke(invoker, invocation);
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcStatus;
+import com.alibaba.dubbo.rpc.support.MockInvocation;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+public class AdaptiveLimitFilterTest {
+
+    Filter adaptiveLimitFilter = new AdaptiveLimitFilter();
+
+    @Test
+    public void testInvokeWithoutLimit() {
+        URL url = URL.valueOf("test://test:11/AdaptiveLimitFilterTest?adaptive.limit=false");
+        Invoker<AdaptiveLimitFilterTest> invoker = new MyInvoker<AdaptiveLimitFilterTest>(url);
+        Invocation invocation = new MockInvocation();
+        adaptiveLimitFilter.invoke(invoker, invocation);
+        assertEquals(0, RpcStatus.getStatus(url, invocation.getMethodName()).getLimit());
+    }
+
+    @Test
+    public void testRejectOverLimit() throws Exception {
+        URL url = URL.valueOf("test://test:12/AdaptiveLimitFilterTest?adaptive.limit=vegas&adaptive.limit.initial=1");
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final Invoker<AdaptiveLimitFilterTest> invoker = new MyInvoker<AdaptiveLimitFilterTest>(url) {
+            public Result invoke(Invocation invocation) throws RpcException {
+                entered.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.invoke(invocation);
+            }
+        };
+        final Invocation invocation = new MockInvocation();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                adaptiveLimitFilter.invoke(invoker, invocation);
+            }
+        });
+        thread.start();
+        entered.await();
+        try {
+            adaptiveLimitFilter.invoke(invoker, invocation);
+            fail();
+        } catch (RpcException expected) {
+            assertTrue(expected.isLimitExceeded());
+        }
+        assertEquals(1, RpcStatus.getStatus(url, invocation.getMethodName()).getLimit());
+        release.countDown();
+        thread.join();
+    }
+
+}
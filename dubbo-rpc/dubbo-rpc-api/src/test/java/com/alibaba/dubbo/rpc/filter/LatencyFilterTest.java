@@ -0,0 +1,57 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
+import com.alibaba.dubbo.rpc.Filter;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcContext;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcLatency;
+import com.alibaba.dubbo.rpc.RpcResult;
+import com.alibaba.dubbo.rpc.support.MockInvocation;
+import com.alibaba.dubbo.rpc.support.MyInvoker;
+
+public class LatencyFilterTest {
+
+    Filter latencyFilter = new LatencyFilter();
+
+    @Test
+    public void testAsyncInvokeEndsOnCompletion() {
+        URL url = URL.valueOf("test://test:11/test?group=dubbo&version=1.1&loadbalance=peakewma&async=true");
+        final SettableFuture<Object> future = new SettableFuture<Object>();
+        Invoker<LatencyFilterTest> invoker = new MyInvoker<LatencyFilterTest>(url) {
+            public Result invoke(Invocation invocation) throws RpcException {
+                RpcContext.getContext().setFuture(future);
+                return new RpcResult();
+            }
+        };
+        Invocation invocation = new MockInvocation();
+        RpcLatency latency = RpcLatency.getLatency(url, invocation.getMethodName());
+        latencyFilter.invoke(invoker, invocation);
+        assertEquals(1, latency.getActive());
+        future.set("done");
+        assertEquals(0, latency.getActive());
+    }
+
+}
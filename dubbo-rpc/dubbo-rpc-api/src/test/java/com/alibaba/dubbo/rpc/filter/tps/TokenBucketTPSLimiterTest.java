@@ -0,0 +1,94 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.filter.tps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+
+public class TokenBucketTPSLimiterTest {
+
+    private final TPSLimiter limiter = new TokenBucketTPSLimiter();
+
+    @Test
+    public void testBurstThenRefill() throws Exception {
+        TokenBucket bucket = new TokenBucket("test", 5, 500L);
+        for (int i = 0; i < 5; i ++) {
+            assertTrue(bucket.isAllowable());
+        }
+        assertFalse(bucket.isAllowable());
+        assertEquals(0, bucket.getToken());
+        // 每100ms补充一个令牌，不会在窗口边界一次补满
+        Thread.sleep(150L);
+        assertTrue(bucket.isAllowable());
+        assertFalse(bucket.isAllowable());
+    }
+
+    @Test
+    public void testHighRateStaysWithinBurst() {
+        int rate = 1000000;
+        TokenBucket bucket = new TokenBucket("test", rate, 60000L);
+        int allowed = 0;
+        for (int i = 0; i < rate + 1000; i ++) {
+            if (bucket.isAllowable()) {
+                allowed ++;
+            }
+        }
+        assertTrue(allowed >= rate);
+        assertTrue(allowed <= rate + 64 * 16);
+    }
+
+    @Test
+    public void testApplicationScope() {
+        URL url = URL.valueOf("test://test/TokenBucketService?tps=2&tps.scope=application");
+        RpcInvocation foo = new RpcInvocation();
+        foo.setAttachment(Constants.APPLICATION_KEY, "foo");
+        RpcInvocation bar = new RpcInvocation();
+        bar.setAttachment(Constants.APPLICATION_KEY, "bar");
+        assertTrue(limiter.isAllowable(url, foo));
+        assertTrue(limiter.isAllowable(url, foo));
+        assertFalse(limiter.isAllowable(url, foo));
+        assertTrue(limiter.isAllowable(url, bar));
+        assertTrue(limiter.isAllowable(url.addParameter(Constants.TPS_LIMIT_RATE_KEY, 3), foo));
+        assertTrue(limiter.isAllowable(url.removeParameter(Constants.TPS_LIMIT_RATE_KEY), foo));
+    }
+
+    @Test
+    public void testIdleBucketsExpire() throws Exception {
+        TokenBucketTPSLimiter limiter = new TokenBucketTPSLimiter();
+        URL url = URL.valueOf("test://test/TokenBucketService?tps=1&tps.interval=10&tps.scope=application");
+        for (int i = 0; i < 1024; i ++) {
+            RpcInvocation invocation = new RpcInvocation();
+            invocation.setAttachment(Constants.APPLICATION_KEY, "app" + i);
+            limiter.isAllowable(url, invocation);
+        }
+        assertEquals(1024, limiter.getBucketCount(url));
+        // 已补满的令牌桶在新消费方到来时被清理
+        Thread.sleep(50L);
+        RpcInvocation invocation = new RpcInvocation();
+        invocation.setAttachment(Constants.APPLICATION_KEY, "other");
+        assertTrue(limiter.isAllowable(url, invocation));
+        assertFalse(limiter.isAllowable(url, invocation));
+        assertEquals(1, limiter.getBucketCount(url));
+    }
+
+}
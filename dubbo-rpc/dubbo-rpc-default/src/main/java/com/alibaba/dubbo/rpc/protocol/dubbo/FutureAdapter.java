@@ -16,27 +16,62 @@
 package com.alibaba.dubbo.rpc.protocol.dubbo;
 
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
+import com.alibaba.dubbo.common.concurrent.Function;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
+import com.alibaba.dubbo.common.concurrent.SettableFuture;
 import com.alibaba.dubbo.common.utils.StringUtils;
 import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
 import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcException;
 
 /**
  * FutureAdapter
+ * <p>
+ * Owns the single callback slot of the underlying {@link ResponseFuture}; further listeners
+ * must be registered through {@link #addListener(FutureListener)}.
  * 
  * @author william.liangf
  */
-public class FutureAdapter<V> implements Future<V> {
+public class FutureAdapter<V> implements ListenableFuture<V> {
     
     private final ResponseFuture future;
 
+    private final SettableFuture<V> listenable = new SettableFuture<V>();
+
     public FutureAdapter(ResponseFuture future){
         this.future = future;
+        future.setCallback(new ResponseCallback() {
+            @SuppressWarnings("unchecked")
+            public void done(Object response) {
+                if (! (response instanceof Result)) {
+                    listenable.setException(new IllegalStateException("invalid result " + response
+                            + ", expected " + Result.class.getName()));
+                    return;
+                }
+                Result result = (Result) response;
+                if (result.hasException()) {
+                    listenable.setException(result.getException());
+                } else {
+                    listenable.set((V) result.getValue());
+                }
+            }
+
+            public void caught(Throwable exception) {
+                // 与同步调用一致，传输层异常以RpcException通知，便于与业务异常区分
+                if (exception instanceof com.alibaba.dubbo.remoting.TimeoutException) {
+                    exception = new RpcException(RpcException.TIMEOUT_EXCEPTION, exception.getMessage(), exception);
+                } else if (! (exception instanceof RpcException)) {
+                    exception = new RpcException(RpcException.NETWORK_EXCEPTION, exception.getMessage(), exception);
+                }
+                listenable.setException(exception);
+            }
+        });
     }
 
     public ResponseFuture getFuture() {
@@ -80,4 +115,16 @@ public class FutureAdapter<V> implements Future<V> {
         }
     }
 
-}
\ No newline at end of file
+    public void addListener(FutureListener<? super V> listener) {
+        listenable.addListener(listener);
+    }
+
+    public <R> ListenableFuture<R> transform(Function<? super V, ? extends R> function) {
+        return listenable.transform(function);
+    }
+
+    public <R> ListenableFuture<R> compose(Function<? super V, ? extends ListenableFuture<R>> function) {
+        return listenable.compose(function);
+    }
+
+}
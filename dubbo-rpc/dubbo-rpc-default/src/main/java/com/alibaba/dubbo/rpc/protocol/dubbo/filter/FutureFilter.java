@@ -20,11 +20,11 @@ import java.lang.reflect.Method;
 import java.util.concurrent.Future;
 
 import com.alibaba.dubbo.common.Constants;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
 import com.alibaba.dubbo.common.extension.Activate;
 import com.alibaba.dubbo.common.logger.Logger;
 import com.alibaba.dubbo.common.logger.LoggerFactory;
-import com.alibaba.dubbo.remoting.exchange.ResponseCallback;
-import com.alibaba.dubbo.remoting.exchange.ResponseFuture;
 import com.alibaba.dubbo.rpc.Filter;
 import com.alibaba.dubbo.rpc.Invocation;
 import com.alibaba.dubbo.rpc.Invoker;
@@ -32,7 +32,6 @@ import com.alibaba.dubbo.rpc.Result;
 import com.alibaba.dubbo.rpc.RpcContext;
 import com.alibaba.dubbo.rpc.RpcException;
 import com.alibaba.dubbo.rpc.StaticContext;
-import com.alibaba.dubbo.rpc.protocol.dubbo.FutureAdapter;
 import com.alibaba.dubbo.rpc.support.RpcUtils;
 
 /**
@@ -70,30 +69,14 @@ public class FutureFilter implements Filter {
 
     private void asyncCallback(final Invoker<?> invoker, final Invocation invocation) {
         Future<?> f = RpcContext.getContext().getFuture();
-        if (f instanceof FutureAdapter) {
-            ResponseFuture future = ((FutureAdapter<?>) f).getFuture();
-            future.setCallback(new ResponseCallback() {
-                public void done(Object rpcResult) {
-                    if (rpcResult == null) {
-                        logger.error(new IllegalStateException("invalid result value : null, expected " + Result
-                                .class.getName()));
-                        return;
-                    }
-                    ///must be rpcResult
-                    if (!(rpcResult instanceof Result)) {
-                        logger.error(new IllegalStateException("invalid result type :" + rpcResult.getClass() + ", " +
-                                "expected " + Result.class.getName()));
-                        return;
-                    }
-                    Result result = (Result) rpcResult;
-                    if (result.hasException()) {
-                        fireThrowCallback(invoker, invocation, result.getException());
-                    } else {
-                        fireReturnCallback(invoker, invocation, result.getValue());
-                    }
+        if (f instanceof ListenableFuture) {
+            // the response future has a single callback slot owned by the adapter, so listen on the adapter.
+            ((ListenableFuture<?>) f).addListener(new FutureListener<Object>() {
+                public void onSuccess(Object value) {
+                    fireReturnCallback(invoker, invocation, value);
                 }
 
-                public void caught(Throwable exception) {
+                public void onFailure(Throwable exception) {
                     fireThrowCallback(invoker, invocation, exception);
                 }
             });
@@ -0,0 +1,60 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo.status;
+
+import java.util.Map;
+
+import com.alibaba.dubbo.common.extension.Activate;
+import com.alibaba.dubbo.common.status.Status;
+import com.alibaba.dubbo.common.status.StatusChecker;
+import com.alibaba.dubbo.rpc.AdaptiveLimiter;
+
+/**
+ * AdaptiveLimitStatusChecker
+ */
+@Activate
+public class AdaptiveLimitStatusChecker implements StatusChecker {
+
+    public Status check() {
+        Map<String, AdaptiveLimiter> limiters = AdaptiveLimiter.getLimiters();
+        StringBuilder msg = new StringBuilder();
+        Status.Level level = Status.Level.OK;
+        for (Map.Entry<String, AdaptiveLimiter> entry : limiters.entrySet()) {
+            AdaptiveLimiter limiter = entry.getValue();
+            int limit = limiter.getLimit();
+            int inflight = limiter.getInflight();
+            if (inflight >= limit) {
+                level = Status.Level.WARN;
+            }
+            if (msg.length() > 0) {
+                msg.append(";");
+            }
+            msg.append(entry.getKey()
+                    + " " + limiter.getAlgorithm()
+                    + " limit:" + limit
+                    + ", max:" + limiter.getMaxLimit()
+                    + ", inflight:" + inflight
+                    + ", rtt:" + toMillis(limiter.getRtt()) + "ms"
+                    + ", noload:" + toMillis(limiter.getNoLoadRtt()) + "ms");
+        }
+        return msg.length() == 0 ? new Status(Status.Level.UNKNOWN) : new Status(level, msg.toString());
+    }
+
+    private static String toMillis(long nanos) {
+        return String.valueOf(Math.round(nanos / 10000.0) / 100.0);
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.protocol.dubbo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+import com.alibaba.dubbo.common.concurrent.Function;
+import com.alibaba.dubbo.common.concurrent.FutureListener;
+import com.alibaba.dubbo.common.concurrent.ListenableFuture;
+import com.alibaba.dubbo.remoting.exchange.support.SimpleFuture;
+import com.alibaba.dubbo.rpc.RpcResult;
+
+public class FutureAdapterTest {
+
+    @Test
+    public void testListenOnValue() throws Exception {
+        FutureAdapter<String> future = new FutureAdapter<String>(new SimpleFuture(new RpcResult("hello")));
+        final AtomicReference<String> value = new AtomicReference<String>();
+        future.addListener(new FutureListener<String>() {
+            public void onSuccess(String result) {
+                value.set(result);
+            }
+
+            public void onFailure(Throwable cause) {
+            }
+        });
+        assertEquals("hello", value.get());
+        ListenableFuture<Integer> length = future.transform(new Function<String, Integer>() {
+            public Integer apply(String input) {
+                return input.length();
+            }
+        });
+        assertEquals(Integer.valueOf(5), length.get());
+        assertEquals("hello", future.get());
+    }
+
+    @Test
+    public void testListenOnException() throws Exception {
+        FutureAdapter<String> future = new FutureAdapter<String>(new SimpleFuture(new RpcResult(new IllegalStateException())));
+        final AtomicReference<Throwable> caught = new AtomicReference<Throwable>();
+        future.addListener(new FutureListener<String>() {
+            public void onSuccess(String result) {
+            }
+
+            public void onFailure(Throwable cause) {
+                caught.set(cause);
+            }
+        });
+        assertTrue(caught.get() instanceof IllegalStateException);
+        try {
+            future.transform(new Function<String, Integer>() {
+                public Integer apply(String input) {
+                    return input.length();
+                }
+            }).get();
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IllegalStateException);
+        }
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 内存映射的定长块文件，每个序列占一块，块内为若干long值。
+ * 文件按REGION_BLOCKS块一个区段映射，区段首次写入时才扩展文件，未写过的区段读为0。
+ * 块号应是文件内稠密的编号(见StatisticsStore的目录序列索引)，文件大小与实际写入的块数成正比，
+ * 不依赖文件系统支持稀疏文件。
+ * 单线程写，多线程读。
+ */
+class MappedSegment {
+
+    // 每个区段的块数，文件最多多扩展一个区段
+    private static final int REGION_BLOCKS = 64;
+
+    private final File file;
+
+    private final int blockLongs;
+
+    private final long blockBytes;
+
+    private final int regionBlocks;
+
+    private final long regionBytes;
+
+    private final ConcurrentMap<Integer, MappedByteBuffer> regions = new ConcurrentHashMap<Integer, MappedByteBuffer>();
+
+    MappedSegment(File file, int blockLongs) {
+        this.file = file;
+        this.blockLongs = blockLongs;
+        this.blockBytes = blockLongs * 8L;
+        this.regionBlocks = REGION_BLOCKS;
+        this.regionBytes = regionBlocks * blockBytes;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long get(int block, int offset) throws IOException {
+        MappedByteBuffer region = getRegion(block, false);
+        return region == null ? 0 : region.getLong(position(block, offset));
+    }
+
+    public long[] get(int block, int offset, int length) throws IOException {
+        long[] values = new long[length];
+        MappedByteBuffer region = getRegion(block, false);
+        if (region != null) {
+            int position = position(block, offset);
+            for (int i = 0; i < length; i ++) {
+                values[i] = region.getLong(position + i * 8);
+            }
+        }
+        return values;
+    }
+
+    public void set(int block, int offset, long value) throws IOException {
+        getRegion(block, true).putLong(position(block, offset), value);
+    }
+
+    public void add(int block, int offset, long value) throws IOException {
+        MappedByteBuffer region = getRegion(block, true);
+        int position = position(block, offset);
+        region.putLong(position, region.getLong(position) + value);
+    }
+
+    public void max(int block, int offset, long value) throws IOException {
+        MappedByteBuffer region = getRegion(block, true);
+        int position = position(block, offset);
+        if (value > region.getLong(position)) {
+            region.putLong(position, value);
+        }
+    }
+
+    public void force() {
+        for (MappedByteBuffer region : regions.values()) {
+            region.force();
+        }
+    }
+
+    private int position(int block, int offset) {
+        if (offset < 0 || offset >= blockLongs) {
+            throw new IndexOutOfBoundsException("offset: " + offset + ", block longs: " + blockLongs);
+        }
+        return (int) ((block % regionBlocks) * blockBytes) + offset * 8;
+    }
+
+    private MappedByteBuffer getRegion(int block, boolean create) throws IOException {
+        Integer index = block / regionBlocks;
+        MappedByteBuffer region = regions.get(index);
+        if (region == null) {
+            synchronized (this) {
+                region = regions.get(index);
+                if (region == null) {
+                    long start = index * regionBytes;
+                    if (! create && file.length() < start + regionBytes) {
+                        return null;
+                    }
+                    File dir = file.getParentFile();
+                    if (dir != null && ! dir.exists()) {
+                        dir.mkdirs();
+                    }
+                    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+                    try {
+                        // 映射后即使关闭文件仍然有效
+                        region = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, start, regionBytes);
+                    } finally {
+                        raf.close();
+                    }
+                    regions.put(index, region);
+                }
+            }
+        }
+        return region;
+    }
+
+}
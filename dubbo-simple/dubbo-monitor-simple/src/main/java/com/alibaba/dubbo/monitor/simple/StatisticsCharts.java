@@ -0,0 +1,361 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.imageio.ImageIO;
+
+import org.jfree.chart.ChartFactory;
+import org.jfree.chart.JFreeChart;
+import org.jfree.chart.axis.DateAxis;
+import org.jfree.chart.plot.XYPlot;
+import org.jfree.data.time.Minute;
+import org.jfree.data.time.TimeSeries;
+import org.jfree.data.time.TimeSeriesCollection;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.LatencyHistogram;
+import com.alibaba.dubbo.monitor.MonitorService;
+
+/**
+ * 监控图表，写入时只把对应服务方法的图表标记为脏，页面请求时只重绘脏图表。
+ * 图表状态按日期/服务/方法存放在ConcurrentHashMap中，随活跃方法数增长，进入新的一天时丢弃之前日期的状态。
+ * 重启后或非当天的图表以图表文件是否晚于数据的最后写入判断是否为脏。
+ * 
+ * @see com.alibaba.dubbo.monitor.simple.StatisticsStore
+ */
+public class StatisticsCharts {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsCharts.class);
+
+    public static final String PERCENTILE = "percentile";
+
+    private static final String[] TYPES = new String[] {MonitorService.CONSUMER, MonitorService.PROVIDER};
+
+    private final StatisticsStore store;
+
+    private final String chartsDirectory;
+
+    // 日期 -> 服务 -> 方法 -> 图表状态
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, ChartState>>> charts = new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<String, ChartState>>>();
+
+    // 最近写入的日期，只由写线程更新
+    private volatile Day today;
+
+    public StatisticsCharts(StatisticsStore store, String chartsDirectory) {
+        this.store = store;
+        this.chartsDirectory = chartsDirectory;
+    }
+
+    /**
+     * 数据写入StatisticsStore后调用，标记图表为脏。不读取存储。
+     */
+    public void update(Date time, String service, String method) {
+        Day day = today;
+        long millis = time.getTime();
+        if (day == null || millis < day.start || millis >= day.end) {
+            Day other = new Day(time);
+            if (day == null || other.start > day.start) {
+                // 进入新的一天，之前日期的状态不再由写入维护
+                charts.keySet().retainAll(Collections.singleton(other.date));
+                today = other;
+            } else if (! charts.containsKey(other.date)) {
+                return; // 迟到的旧数据，由图表文件时间判断
+            }
+            day = other;
+        }
+        ChartState state = getState(day.date, service, method, true);
+        state.update();
+    }
+
+    /**
+     * 重绘服务在指定日期的脏图表。
+     * 
+     * @return 有数据的方法，按名称排序
+     */
+    public List<String> render(String date, String service) throws IOException {
+        Map<String, StatisticsStore.Series[]> methods = getMethods(date, service);
+        for (Map.Entry<String, StatisticsStore.Series[]> entry : methods.entrySet()) {
+            try {
+                render(date, service, entry.getKey(), entry.getValue());
+            } catch (Throwable t) {
+                logger.error("Failed to render chart of " + service + "." + entry.getKey() + ", cause: " + t.getMessage(), t);
+            }
+        }
+        return new ArrayList<String>(methods.keySet());
+    }
+
+    public File getChartDirectory(String date, String service, String method) {
+        return new File(chartsDirectory + "/" + date + "/" + service + "/" + method);
+    }
+
+    private void render(String date, String service, String method, StatisticsStore.Series[] sides) throws IOException {
+        ChartState state = getState(date, service, method, false);
+        synchronized (state) {
+            long version = state.version;
+            if (version == state.rendered) {
+                return; // 没有新数据
+            }
+            draw(date, service, method, sides);
+            state.rendered = version;
+        }
+    }
+
+    private ChartState getState(String date, String service, String method, boolean dirty) {
+        ConcurrentMap<String, ConcurrentMap<String, ChartState>> services = charts.get(date);
+        if (services == null) {
+            charts.putIfAbsent(date, new ConcurrentHashMap<String, ConcurrentMap<String, ChartState>>());
+            services = charts.get(date);
+        }
+        ConcurrentMap<String, ChartState> methods = services.get(service);
+        if (methods == null) {
+            services.putIfAbsent(service, new ConcurrentHashMap<String, ChartState>());
+            methods = services.get(service);
+        }
+        ChartState state = methods.get(method);
+        if (state == null) {
+            state = new ChartState();
+            if (! dirty) {
+                File chart = new File(getChartDirectory(date, service, method), MonitorService.SUCCESS + ".png");
+                if (chart.exists() && chart.lastModified() >= store.getLastModified(date, service, method)) {
+                    state.rendered = state.version;
+                }
+            }
+            methods.putIfAbsent(method, state);
+            state = methods.get(method);
+        }
+        return state;
+    }
+
+    // 图表数据及标题中的汇总值均取自存储的分钟数据
+    private void draw(String date, String service, String method, StatisticsStore.Series[] sides) throws IOException {
+        File dir = getChartDirectory(date, service, method);
+        // 汇总数据优先取消费方
+        int summarySide = sides[0] != null ? 0 : 1;
+        long[][] success = new long[2][];
+        long[][] elapsed = new long[2][];
+        long[][] percentile = new long[2][];
+        long elapsedMax = 0;
+        int first = StatisticsStore.MINUTES;
+        int last = -1;
+        for (int i = 0; i < sides.length; i ++) {
+            if (sides[i] == null) {
+                success[i] = new long[StatisticsStore.MINUTES];
+                elapsed[i] = new long[StatisticsStore.MINUTES];
+                percentile[i] = new long[StatisticsStore.MINUTES];
+                continue;
+            }
+            success[i] = store.getMinutes(date, sides[i], MonitorService.SUCCESS);
+            elapsed[i] = store.getMinutes(date, sides[i], MonitorService.ELAPSED);
+            percentile[i] = store.getMinutes(date, sides[i], StatisticsStore.PERCENTILE);
+            long[] failure = store.getMinutes(date, sides[i], MonitorService.FAILURE);
+            for (int m = 0; m < StatisticsStore.MINUTES; m ++) {
+                if (success[i][m] != 0 || failure[m] != 0 || elapsed[i][m] != 0) {
+                    first = Math.min(first, m);
+                    last = Math.max(last, m);
+                }
+            }
+            elapsedMax = Math.max(elapsedMax, store.getDay(date, sides[i], MonitorService.MAX_ELAPSED));
+        }
+        if (last < 0) {
+            return;
+        }
+        Map<String, long[]> successData = new HashMap<String, long[]>();
+        Map<String, long[]> elapsedData = new HashMap<String, long[]>();
+        Map<String, long[]> percentileData = new HashMap<String, long[]>();
+        DecimalFormat minuteFormat = new DecimalFormat("0000");
+        double[] successSummary = new double[] {0, -1, 0, 0};
+        long successSum = 0;
+        long elapsedSum = 0;
+        for (int m = first; m <= last; m ++) {
+            String key = minuteFormat.format(m / 60 * 100 + m % 60);
+            long[] successValues = new long[2];
+            long[] elapsedValues = new long[2];
+            long[] percentileValues = new long[2];
+            for (int i = 0; i < 2; i ++) {
+                successValues[i] = success[i][m] / 60;
+                elapsedValues[i] = success[i][m] == 0 ? 0 : elapsed[i][m] / success[i][m];
+                percentileValues[i] = percentile[i][m];
+                successSummary[0] = Math.max(successSummary[0], success[i][m]);
+                successSummary[1] = successSummary[1] < 0 ? success[i][m] : Math.min(successSummary[1], success[i][m]);
+            }
+            successSum += success[summarySide][m];
+            elapsedSum += elapsed[summarySide][m];
+            successData.put(key, successValues);
+            elapsedData.put(key, elapsedValues);
+            percentileData.put(key, percentileValues);
+        }
+        successSummary[0] = successSummary[0] / 60;
+        successSummary[1] = successSummary[1] / 60;
+        successSummary[2] = (double) successSum / (last - first + 1) / 60;
+        successSummary[3] = successSum;
+        double[] elapsedSummary = new double[] {elapsedMax, -1, successSum == 0 ? 0 : (double) elapsedSum / successSum, -1};
+        createChart("t/s", service, method, date, TYPES, successData, successSummary, new File(dir, MonitorService.SUCCESS + ".png").getAbsolutePath());
+        createChart("ms/t", service, method, date, TYPES, elapsedData, elapsedSummary, new File(dir, MonitorService.ELAPSED + ".png").getAbsolutePath());
+        LatencyHistogram histogram = store.getHistogram(date, sides[summarySide]);
+        if (! histogram.isEmpty()) {
+            DecimalFormat numberFormat = new DecimalFormat("###,##0.##");
+            String title = "p50: " + numberFormat.format(histogram.getValueAtPercentile(50))
+                    + " p90: " + numberFormat.format(histogram.getValueAtPercentile(90))
+                    + " p99: " + numberFormat.format(histogram.getValueAtPercentile(99))
+                    + " p999: " + numberFormat.format(histogram.getValueAtPercentile(99.9));
+            createChart(title, "ms/p99", service, method, date, TYPES, percentileData, new File(dir, PERCENTILE + ".png").getAbsolutePath());
+        }
+    }
+
+    // 方法 -> 消费方、提供方汇总序列
+    private Map<String, StatisticsStore.Series[]> getMethods(String date, String service) {
+        Map<String, StatisticsStore.Series[]> methods = new TreeMap<String, StatisticsStore.Series[]>();
+        for (StatisticsStore.Series series : store.getAggregateSeries(date, service)) {
+            StatisticsStore.Series[] sides = methods.get(series.getMethod());
+            if (sides == null) {
+                sides = new StatisticsStore.Series[2];
+                methods.put(series.getMethod(), sides);
+            }
+            sides[MonitorService.CONSUMER.equals(series.getSide()) ? 0 : 1] = series;
+        }
+        return methods;
+    }
+
+    private static void createChart(String key, String service, String method, String date, String[] types, Map<String, long[]> data, double[] summary, String path) {
+        DecimalFormat numberFormat = new DecimalFormat("###,##0.##");
+        String title = "max: " + numberFormat.format(summary[0]) + (summary[1] >=0 ? " min: " + numberFormat.format(summary[1]) : "") 
+                + " avg: " + numberFormat.format(summary[2]) + (summary[3] >=0 ? " sum: " + numberFormat.format(summary[3]) : "");
+        createChart(title, key, service, method, date, types, data, path);
+    }
+    
+    private static void createChart(String title, String key, String service, String method, String date, String[] types, Map<String, long[]> data, String path) {
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyyMMddHHmm");
+        TimeSeriesCollection xydataset = new TimeSeriesCollection();
+        for (int i = 0; i < types.length; i ++) {
+            String type = types[i];
+            TimeSeries timeseries = new TimeSeries(type);
+            for (Map.Entry<String, long[]> entry : data.entrySet()) {
+                try {
+                    timeseries.add(new Minute(dateFormat.parse(date + entry.getKey())), entry.getValue()[i]);
+                } catch (ParseException e) {
+                    logger.error(e.getMessage(), e);
+                }
+            }
+            xydataset.addSeries(timeseries);
+        }
+        JFreeChart jfreechart = ChartFactory.createTimeSeriesChart(title, 
+                toDisplayService(service) + "  " + method + "  " + toDisplayDate(date), key, xydataset, true, true, false);
+        jfreechart.setBackgroundPaint(Color.WHITE);
+        XYPlot xyplot = (XYPlot) jfreechart.getPlot();
+        xyplot.setBackgroundPaint(Color.WHITE);
+        xyplot.setDomainGridlinePaint(Color.GRAY);
+        xyplot.setRangeGridlinePaint(Color.GRAY);
+        xyplot.setDomainGridlinesVisible(true);
+        xyplot.setRangeGridlinesVisible(true);
+        DateAxis dateaxis = (DateAxis) xyplot.getDomainAxis();
+        dateaxis.setDateFormatOverride(new SimpleDateFormat("HH:mm"));
+        BufferedImage image = jfreechart.createBufferedImage(600, 300);
+        try {
+            if (logger.isInfoEnabled()) {
+                logger.info("write chart: " + path);
+            }
+            File methodChartFile = new File(path);
+            File methodChartDir = methodChartFile.getParentFile();
+            if (methodChartDir != null && ! methodChartDir.exists()) {
+                methodChartDir.mkdirs();
+            }
+            FileOutputStream output = new FileOutputStream(methodChartFile);
+            try {
+                ImageIO.write(image, "png", output);
+                output.flush();
+            } finally {
+                output.close();
+            }
+        } catch (IOException e) {
+            logger.warn(e.getMessage(), e);
+        }
+    }
+    
+    private static String toDisplayService(String service) {
+        int i = service.lastIndexOf('.');
+        if (i >= 0) {
+            return service.substring(i + 1);
+        }
+        return service;
+    }
+    
+    private static String toDisplayDate(String date) {
+        try {
+            return new SimpleDateFormat("yyyy-MM-dd").format(new SimpleDateFormat("yyyyMMdd").parse(date));
+        } catch (ParseException e) {
+            return date;
+        }
+    }
+
+    private static class ChartState {
+
+        // 只由写线程递增
+        private volatile long version = 1;
+
+        // 已绘制的版本，持有本对象锁时读写
+        private long rendered = -1;
+
+        void update() {
+            version ++;
+        }
+
+    }
+
+    // 一天的起止时间，写入时不必逐条格式化日期
+    private static class Day {
+
+        private final String date;
+
+        private final long start;
+
+        private final long end;
+
+        Day(Date time) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(time);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            this.start = calendar.getTimeInMillis();
+            calendar.add(Calendar.DAY_OF_MONTH, 1);
+            this.end = calendar.getTimeInMillis();
+            this.date = new SimpleDateFormat("yyyyMMdd").format(time);
+        }
+
+    }
+
+}
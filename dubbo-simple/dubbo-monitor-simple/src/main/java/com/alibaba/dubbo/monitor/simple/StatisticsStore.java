@@ -0,0 +1,660 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.alibaba.dubbo.common.logger.Logger;
+import com.alibaba.dubbo.common.logger.LoggerFactory;
+import com.alibaba.dubbo.monitor.LatencyHistogram;
+import com.alibaba.dubbo.monitor.MonitorService;
+
+/**
+ * 监控数据存储，按列存放定长的分钟、小时、天数据块，写入时同步汇总。
+ * <pre>
+ * series.idx              序列索引: id side service method consumer provider
+ * yyyyMMdd/series.idx     当天出现的序列id
+ * yyyyMMdd/minute.dat     分钟数据，每序列一块，块内按列存放1440个值
+ * yyyyMMdd/histogram.dat  全天延迟直方图，每序列一块
+ * yyyyMM/series.idx       当月出现的序列id
+ * yyyyMM/hour.dat         小时汇总，每序列一块，块内按列存放744个值
+ * yyyy/series.idx         当年出现的序列id
+ * yyyy/day.dat            天汇总，每序列一块，块内按列存放366个值
+ * </pre>
+ * 数据文件中的块号是序列在所在目录series.idx中的行号，而不是全局序列id，
+ * 文件大小只与当天(月、年)出现的序列数有关。
+ * 每个服务方法另有consumer和provider均为"*"的汇总序列，供页面和图表直接读取。
+ * 单线程写，多线程读。
+ * 
+ * @see com.alibaba.dubbo.monitor.simple.MappedSegment
+ */
+public class StatisticsStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(StatisticsStore.class);
+
+    public static final String ANY = "*";
+
+    public static final String PERCENTILE = "p99";
+
+    public static final String[] COLUMNS = {MonitorService.SUCCESS, MonitorService.FAILURE, MonitorService.ELAPSED, MonitorService.CONCURRENT,
+                                            MonitorService.MAX_ELAPSED, MonitorService.MAX_CONCURRENT, PERCENTILE};
+
+    // 累加的列，其余列取最大值
+    private static final boolean[] SUMMED = {true, true, true, false, false, false, false};
+
+    private static final int PERCENTILE_COLUMN = COLUMNS.length - 1;
+
+    public static final int MINUTES = 24 * 60;
+
+    public static final int HOURS = 31 * 24;
+
+    public static final int DAYS = 366;
+
+    private static final String SERIES_INDEX = "series.idx";
+
+    private static final String MINUTE_SEGMENT = "minute.dat";
+
+    private static final String HISTOGRAM_SEGMENT = "histogram.dat";
+
+    private static final String HOUR_SEGMENT = "hour.dat";
+
+    private static final String DAY_SEGMENT = "day.dat";
+
+    private static final int MAX_OPEN_SEGMENTS = 64;
+
+    private final File directory;
+
+    private final ConcurrentMap<String, Series> seriesMap = new ConcurrentHashMap<String, Series>();
+
+    private final List<Series> seriesList = new ArrayList<Series>();
+
+    // 目录(日期、月份、年份) -> 目录内出现的序列id及其块号
+    private final ConcurrentMap<String, SeriesIndex> indexes = new ConcurrentHashMap<String, SeriesIndex>();
+
+    // 日期 -> 服务 -> 当天出现的方法汇总序列，首次查询某日期时由当天序列id建立
+    private final Map<String, Map<String, List<Series>>> dailyAggregates = new HashMap<String, Map<String, List<Series>>>();
+
+    // 日期/服务/方法 -> 最后写入时间
+    private final ConcurrentMap<String, Long> lastModified = new ConcurrentHashMap<String, Long>();
+
+    // 序列id -> 当前分钟合并的直方图，用于计算分钟分位数，进入新的分钟时清空
+    private final Map<Integer, LatencyHistogram> minuteHistograms = new HashMap<Integer, LatencyHistogram>();
+
+    private long histogramMinute;
+
+    // 写线程按分钟缓存的时间字段
+    private AppendTime appendTime;
+
+    private final Map<String, MappedSegment> segments = new LinkedHashMap<String, MappedSegment>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, MappedSegment> eldest) {
+            if (size() > MAX_OPEN_SEGMENTS) {
+                eldest.getValue().force();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public StatisticsStore(File directory) throws IOException {
+        this.directory = directory;
+        if (! directory.exists()) {
+            directory.mkdirs();
+        }
+        loadSeries();
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 写入一条统计数据，同时计入方法汇总序列及小时、天汇总。只由一个线程写入。
+     * 
+     * @param time 统计时间
+     * @param values 各列的值，下标同COLUMNS，分位数列由histogram计算
+     * @param histogram 延迟直方图，可为null
+     */
+    public void append(Date time, String side, String service, String method, String consumer, String provider,
+                       long[] values, LatencyHistogram histogram) throws IOException {
+        long timeMinute = time.getTime() / 60000;
+        AppendTime t = appendTime;
+        if (t == null || t.timeMinute != timeMinute) {
+            t = new AppendTime(time, timeMinute);
+            appendTime = t;
+        }
+        String date = t.date;
+        int minute = t.minute;
+        int hour = t.hour;
+        int day = t.day;
+        Series[] targets = new Series[] {getSeries(side, service, method, consumer, provider),
+                                         getSeries(side, service, method, ANY, ANY)};
+        for (Series series : targets) {
+            int id = series.getId();
+            int daily = addDailySeries(date, series);
+            int monthly = getIndex(t.month).add(id);
+            int yearly = getIndex(t.year).add(id);
+            MappedSegment minutes = getSegment(date + "/" + MINUTE_SEGMENT, COLUMNS.length * MINUTES);
+            MappedSegment hours = getSegment(t.month + "/" + HOUR_SEGMENT, COLUMNS.length * HOURS);
+            MappedSegment days = getSegment(t.year + "/" + DAY_SEGMENT, COLUMNS.length * DAYS);
+            for (int i = 0; i < PERCENTILE_COLUMN; i ++) {
+                long value = values[i];
+                if (value == 0) {
+                    continue;
+                }
+                if (SUMMED[i]) {
+                    minutes.add(daily, i * MINUTES + minute, value);
+                    hours.add(monthly, i * HOURS + hour, value);
+                    days.add(yearly, i * DAYS + day, value);
+                } else {
+                    minutes.max(daily, i * MINUTES + minute, value);
+                    hours.max(monthly, i * HOURS + hour, value);
+                    days.max(yearly, i * DAYS + day, value);
+                }
+            }
+            if (histogram != null && ! histogram.isEmpty()) {
+                MappedSegment histograms = getSegment(date + "/" + HISTOGRAM_SEGMENT, LatencyHistogram.BUCKET_COUNT);
+                for (int i = 0; i < LatencyHistogram.BUCKET_COUNT; i ++) {
+                    long count = histogram.getBucketCount(i);
+                    if (count != 0) {
+                        histograms.add(daily, i, count);
+                    }
+                }
+                int offset = PERCENTILE_COLUMN * MINUTES + minute;
+                if (timeMinute > histogramMinute) {
+                    minuteHistograms.clear();
+                    histogramMinute = timeMinute;
+                }
+                long percentile;
+                if (timeMinute == histogramMinute) {
+                    // 同一分钟的多份数据合并后重新计算
+                    LatencyHistogram current = minuteHistograms.get(id);
+                    if (current == null) {
+                        current = new LatencyHistogram();
+                        minuteHistograms.put(id, current);
+                    }
+                    current.add(histogram);
+                    percentile = current.getValueAtPercentile(99);
+                    minutes.set(daily, offset, percentile);
+                } else {
+                    // 迟到的数据单独计算，取较大值
+                    percentile = histogram.getValueAtPercentile(99);
+                    minutes.max(daily, offset, percentile);
+                }
+                // 小时、天的分位数取分钟分位数的最大值
+                hours.max(monthly, PERCENTILE_COLUMN * HOURS + hour, percentile);
+                days.max(yearly, PERCENTILE_COLUMN * DAYS + day, percentile);
+            }
+        }
+        lastModified.put(date + "/" + service + "/" + method, System.currentTimeMillis());
+    }
+
+    /**
+     * 有数据的日期，升序。
+     */
+    public List<String> getDates() {
+        List<String> dates = new ArrayList<String>();
+        File[] dirs = directory.listFiles();
+        if (dirs != null) {
+            for (File dir : dirs) {
+                if (dir.getName().length() == 8 && new File(dir, SERIES_INDEX).exists()) {
+                    dates.add(dir.getName());
+                }
+            }
+        }
+        Collections.sort(dates);
+        return dates;
+    }
+
+    public List<Series> getSeries(String date) {
+        return getSeries(date, null);
+    }
+
+    public List<Series> getSeries(String date, String service) {
+        List<Series> result = new ArrayList<Series>();
+        for (Integer id : getIndex(date).getIds()) {
+            Series series = getSeries(id);
+            if (series != null && (service == null || service.equals(series.getService()))) {
+                result.add(series);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 服务在指定日期的方法汇总序列，不遍历当天的全部序列。
+     */
+    public List<Series> getAggregateSeries(String date, String service) {
+        synchronized (dailyAggregates) {
+            Map<String, List<Series>> services = dailyAggregates.get(date);
+            if (services == null) {
+                services = new HashMap<String, List<Series>>();
+                for (Integer id : getIndex(date).getIds()) {
+                    addAggregate(services, getSeries(id));
+                }
+                dailyAggregates.put(date, services);
+            }
+            List<Series> aggregates = services.get(service);
+            return aggregates == null ? new ArrayList<Series>(0) : new ArrayList<Series>(aggregates);
+        }
+    }
+
+    public long[] getMinutes(String date, Series series, String column) throws IOException {
+        int block = getIndex(date).getBlock(series.getId());
+        MappedSegment segment = findSegment(date + "/" + MINUTE_SEGMENT, COLUMNS.length * MINUTES);
+        if (block < 0 || segment == null) {
+            return new long[MINUTES];
+        }
+        return segment.get(block, getColumn(column) * MINUTES, MINUTES);
+    }
+
+    /**
+     * @param month yyyyMM
+     * @return 按(日 - 1) * 24 + 时排列的小时汇总
+     */
+    public long[] getHours(String month, Series series, String column) throws IOException {
+        int block = getIndex(month).getBlock(series.getId());
+        MappedSegment segment = findSegment(month + "/" + HOUR_SEGMENT, COLUMNS.length * HOURS);
+        if (block < 0 || segment == null) {
+            return new long[HOURS];
+        }
+        return segment.get(block, getColumn(column) * HOURS, HOURS);
+    }
+
+    public long getDay(String date, Series series, String column) throws IOException {
+        String year = date.substring(0, 4);
+        int block = getIndex(year).getBlock(series.getId());
+        MappedSegment segment = findSegment(year + "/" + DAY_SEGMENT, COLUMNS.length * DAYS);
+        if (block < 0 || segment == null) {
+            return 0;
+        }
+        Calendar calendar = Calendar.getInstance();
+        try {
+            calendar.setTime(new SimpleDateFormat("yyyyMMdd").parse(date));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Invalid date " + date);
+        }
+        return segment.get(block, getColumn(column) * DAYS + calendar.get(Calendar.DAY_OF_YEAR) - 1);
+    }
+
+    public LatencyHistogram getHistogram(String date, Series series) throws IOException {
+        LatencyHistogram histogram = new LatencyHistogram();
+        int block = getIndex(date).getBlock(series.getId());
+        MappedSegment segment = findSegment(date + "/" + HISTOGRAM_SEGMENT, LatencyHistogram.BUCKET_COUNT);
+        if (block >= 0 && segment != null) {
+            long[] counts = segment.get(block, 0, LatencyHistogram.BUCKET_COUNT);
+            for (int i = 0; i < counts.length; i ++) {
+                histogram.addBucketCount(i, counts[i]);
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * 服务方法在指定日期最后写入的时间，重启前写入的数据以分钟数据文件的修改时间为准。
+     */
+    public long getLastModified(String date, String service, String method) {
+        Long modified = lastModified.get(date + "/" + service + "/" + method);
+        if (modified != null) {
+            return modified;
+        }
+        return new File(directory, date + "/" + MINUTE_SEGMENT).lastModified();
+    }
+
+    public void close() {
+        synchronized (segments) {
+            for (MappedSegment segment : segments.values()) {
+                segment.force();
+            }
+            segments.clear();
+        }
+    }
+
+    static int getColumn(String column) {
+        for (int i = 0; i < COLUMNS.length; i ++) {
+            if (COLUMNS[i].equals(column)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown column " + column + ", supported: " + Arrays.toString(COLUMNS));
+    }
+
+    private MappedSegment getSegment(String name, int blockLongs) {
+        synchronized (segments) {
+            MappedSegment segment = segments.get(name);
+            if (segment == null) {
+                segment = new MappedSegment(new File(directory, name), blockLongs);
+                segments.put(name, segment);
+            }
+            return segment;
+        }
+    }
+
+    // 只读时文件不存在则不创建
+    private MappedSegment findSegment(String name, int blockLongs) {
+        synchronized (segments) {
+            MappedSegment segment = segments.get(name);
+            if (segment == null) {
+                File file = new File(directory, name);
+                if (! file.exists()) {
+                    return null;
+                }
+                segment = new MappedSegment(file, blockLongs);
+                segments.put(name, segment);
+            }
+            return segment;
+        }
+    }
+
+    private Series getSeries(int id) {
+        synchronized (seriesList) {
+            return id < seriesList.size() ? seriesList.get(id) : null;
+        }
+    }
+
+    private Series getSeries(String side, String service, String method, String consumer, String provider) throws IOException {
+        String key = toKey(side, service, method, consumer, provider);
+        Series series = seriesMap.get(key);
+        if (series == null) {
+            synchronized (seriesList) {
+                series = seriesMap.get(key);
+                if (series == null) {
+                    series = new Series(seriesList.size(), side, service, method, consumer, provider);
+                    appendLine(new File(directory, SERIES_INDEX), series.getId() + "\t" + key);
+                    seriesList.add(series);
+                    seriesMap.put(key, series);
+                }
+            }
+        }
+        return series;
+    }
+
+    private void loadSeries() throws IOException {
+        File file = new File(directory, SERIES_INDEX);
+        if (! file.exists()) {
+            return;
+        }
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", -1);
+                if (parts.length != 6) {
+                    // 写入中断的残行
+                    logger.warn("Ignore invalid series index line: " + line);
+                    continue;
+                }
+                int id = Integer.parseInt(parts[0]);
+                if (id < seriesList.size()) {
+                    logger.warn("Ignore duplicated series index line: " + line);
+                    continue;
+                }
+                while (seriesList.size() < id) {
+                    seriesList.add(null);
+                }
+                Series series = new Series(id, parts[1], parts[2], parts[3], parts[4], parts[5]);
+                seriesList.add(series);
+                seriesMap.put(toKey(parts[1], parts[2], parts[3], parts[4], parts[5]), series);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private SeriesIndex getIndex(String name) {
+        SeriesIndex index = indexes.get(name);
+        if (index == null) {
+            indexes.putIfAbsent(name, new SeriesIndex(new File(directory, name + "/" + SERIES_INDEX)));
+            index = indexes.get(name);
+        }
+        return index;
+    }
+
+    // 返回序列在当天数据文件中的块号
+    private int addDailySeries(String date, Series series) throws IOException {
+        SeriesIndex index = getIndex(date);
+        int block = index.getBlock(series.getId());
+        if (block < 0) {
+            synchronized (dailyAggregates) {
+                block = index.add(series.getId());
+                Map<String, List<Series>> services = dailyAggregates.get(date);
+                if (services != null) {
+                    addAggregate(services, series);
+                }
+            }
+        }
+        return block;
+    }
+
+    private static void addAggregate(Map<String, List<Series>> services, Series series) {
+        if (series == null || ! series.isAggregate()) {
+            return;
+        }
+        List<Series> aggregates = services.get(series.getService());
+        if (aggregates == null) {
+            aggregates = new ArrayList<Series>();
+            services.put(series.getService(), aggregates);
+        }
+        aggregates.add(series);
+    }
+
+    private static void appendLine(File file, String line) throws IOException {
+        File dir = file.getParentFile();
+        if (dir != null && ! dir.exists()) {
+            dir.mkdirs();
+        }
+        FileWriter writer = new FileWriter(file, true);
+        try {
+            writer.write(line + "\n");
+            writer.flush();
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * 目录内出现过的序列id，按首次出现的顺序编号，编号即该目录下数据文件的块号。
+     */
+    private static class SeriesIndex {
+
+        private final File file;
+
+        private final ConcurrentMap<Integer, Integer> blocks = new ConcurrentHashMap<Integer, Integer>();
+
+        private volatile boolean loaded;
+
+        SeriesIndex(File file) {
+            this.file = file;
+        }
+
+        Set<Integer> getIds() {
+            load();
+            return blocks.keySet();
+        }
+
+        // 未出现过返回-1
+        int getBlock(int id) {
+            load();
+            Integer block = blocks.get(id);
+            return block == null ? -1 : block;
+        }
+
+        synchronized int add(int id) throws IOException {
+            int block = getBlock(id);
+            if (block < 0) {
+                appendLine(file, String.valueOf(id));
+                block = blocks.size();
+                blocks.put(id, block);
+            }
+            return block;
+        }
+
+        private void load() {
+            if (! loaded) {
+                synchronized (this) {
+                    if (! loaded) {
+                        if (file.exists()) {
+                            read();
+                        }
+                        loaded = true;
+                    }
+                }
+            }
+        }
+
+        private void read() {
+            try {
+                BufferedReader reader = new BufferedReader(new FileReader(file));
+                try {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        line = line.trim();
+                        if (line.length() > 0) {
+                            Integer id = Integer.valueOf(line);
+                            if (! blocks.containsKey(id)) {
+                                blocks.put(id, blocks.size());
+                            }
+                        }
+                    }
+                } finally {
+                    reader.close();
+                }
+            } catch (IOException e) {
+                logger.warn(e.getMessage(), e);
+            } catch (NumberFormatException e) {
+                logger.warn("Invalid series index " + file + ", cause: " + e.getMessage(), e);
+            }
+        }
+
+    }
+
+    /**
+     * 一分钟内的统计时间对应的日期及各数据文件中的下标。
+     */
+    private static class AppendTime {
+
+        final long timeMinute;
+
+        final String date;
+
+        final String month;
+
+        final String year;
+
+        final int minute;
+
+        final int hour;
+
+        final int day;
+
+        AppendTime(Date time, long timeMinute) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTime(time);
+            this.timeMinute = timeMinute;
+            this.date = new SimpleDateFormat("yyyyMMdd").format(time);
+            this.month = date.substring(0, 6);
+            this.year = date.substring(0, 4);
+            int hourOfDay = calendar.get(Calendar.HOUR_OF_DAY);
+            this.minute = hourOfDay * 60 + calendar.get(Calendar.MINUTE);
+            this.hour = (calendar.get(Calendar.DAY_OF_MONTH) - 1) * 24 + hourOfDay;
+            this.day = calendar.get(Calendar.DAY_OF_YEAR) - 1;
+        }
+
+    }
+
+    private static String toKey(String side, String service, String method, String consumer, String provider) {
+        return side + "\t" + service + "\t" + method + "\t" + consumer + "\t" + provider;
+    }
+
+    public static class Series {
+
+        private final int id;
+
+        private final String side;
+
+        private final String service;
+
+        private final String method;
+
+        private final String consumer;
+
+        private final String provider;
+
+        Series(int id, String side, String service, String method, String consumer, String provider) {
+            this.id = id;
+            this.side = side;
+            this.service = service;
+            this.method = method;
+            this.consumer = consumer;
+            this.provider = provider;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getSide() {
+            return side;
+        }
+
+        public String getService() {
+            return service;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public String getConsumer() {
+            return consumer;
+        }
+
+        public String getProvider() {
+            return provider;
+        }
+
+        // consumer和provider均为"*"的方法汇总序列
+        public boolean isAggregate() {
+            return ANY.equals(consumer) && ANY.equals(provider);
+        }
+
+        @Override
+        public String toString() {
+            return side + " " + service + "/" + method + " " + consumer + " -> " + provider;
+        }
+
+    }
+
+}
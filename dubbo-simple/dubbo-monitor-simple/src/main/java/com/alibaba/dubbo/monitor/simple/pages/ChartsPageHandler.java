@@ -16,6 +16,7 @@
 package com.alibaba.dubbo.monitor.simple.pages;
 
 import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
@@ -26,6 +27,7 @@ import com.alibaba.dubbo.container.page.Page;
 import com.alibaba.dubbo.container.page.PageHandler;
 import com.alibaba.dubbo.monitor.MonitorService;
 import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.StatisticsCharts;
 
 /**
  * ChartsPageHandler
@@ -46,14 +48,15 @@ public class ChartsPageHandler implements PageHandler {
         List<List<String>> rows = new ArrayList<List<String>>();
         String directory = SimpleMonitorService.getInstance().getChartsDirectory();
         File chartsDir = new File(directory);
-        String filename = directory + "/" + date + "/" + service;
-        File serviceDir = new File(filename);
-        if (serviceDir.exists()) {
-            File[] methodDirs = serviceDir.listFiles();
-            for (File methodDir : methodDirs) {
-                String methodUri = chartsDir.getName() + "/" + date + "/" + service + "/" + methodDir.getName() + "/";
-                rows.add(toRow(methodDir, methodUri));
+        try {
+            // 只重绘有新数据的图表
+            StatisticsCharts charts = SimpleMonitorService.getInstance().getStatisticsCharts();
+            for (String method : charts.render(date, service)) {
+                String methodUri = chartsDir.getName() + "/" + date + "/" + service + "/" + method + "/";
+                rows.add(toRow(method, charts.getChartDirectory(date, service, method), methodUri));
             }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to render charts of " + service + ", cause: " + e.getMessage(), e);
         }
         StringBuilder nav = new StringBuilder();
         nav.append("<a href=\"services.html\">Services</a> &gt; ");
@@ -72,12 +75,12 @@ public class ChartsPageHandler implements PageHandler {
         nav.append(service);
         nav.append("&date=' + this.value;}\" />");
         return new Page(nav.toString(), "Charts (" + rows.size() + ")",
-                new String[] { "Method", "Requests per second (QPS)", "Average response time (ms)"}, rows);
+                new String[] { "Method", "Requests per second (QPS)", "Average response time (ms)", "99th percentile response time (ms)"}, rows);
     }
     
-    private List<String> toRow(File dir, String uri) {
+    private List<String> toRow(String method, File dir, String uri) {
         List<String> row = new ArrayList<String>();
-        row.add(dir.getName());
+        row.add(method);
         if (new File(dir, MonitorService.SUCCESS + ".png").exists()) {
             String url = uri + MonitorService.SUCCESS + ".png";
             row.add("<a href=\"" + url + "\" target=\"_blank\"><img src=\"" + url + "\" style=\"width: 100%;\" border=\"0\" /></a>");
@@ -90,6 +93,12 @@ public class ChartsPageHandler implements PageHandler {
         } else {
             row.add("");
         }
+        if (new File(dir, StatisticsCharts.PERCENTILE + ".png").exists()) {
+            String url = uri + StatisticsCharts.PERCENTILE + ".png";
+            row.add("<a href=\"" + url + "\" target=\"_blank\"><img src=\"" + url + "\" style=\"width: 100%;\" border=\"0\" /></a>");
+        } else {
+            row.add("");
+        }
         return row;
     }
     
@@ -15,20 +15,22 @@
  */
 package com.alibaba.dubbo.monitor.simple.pages;
 
-import java.io.File;
+import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 import com.alibaba.dubbo.common.URL;
 import com.alibaba.dubbo.container.page.Page;
 import com.alibaba.dubbo.container.page.PageHandler;
+import com.alibaba.dubbo.monitor.LatencyHistogram;
 import com.alibaba.dubbo.monitor.MonitorService;
-import com.alibaba.dubbo.monitor.simple.CountUtils;
 import com.alibaba.dubbo.monitor.simple.SimpleMonitorService;
+import com.alibaba.dubbo.monitor.simple.StatisticsStore;
 
 /**
  * StatisticsPageHandler
@@ -48,41 +50,48 @@ public class StatisticsPageHandler implements PageHandler {
         }
         String expand = url.getParameter("expand");
         List<List<String>> rows = new ArrayList<List<String>>();
-        String directory = SimpleMonitorService.getInstance().getStatisticsDirectory();
-        String filename = directory + "/" + date + "/" + service;
-        File serviceDir = new File(filename);
-        if (serviceDir.exists()) {
-            File[] methodDirs = serviceDir.listFiles();
-            for (File methodDir : methodDirs) {
-                long[] statistics = newStatistics();
-                Map<String, long[]> expandMap = new HashMap<String, long[]>();
-                File[] consumerDirs = methodDir.listFiles();
-                for (File consumerDir : consumerDirs) {
-                    long[] expandStatistics = null;
-                    if (MonitorService.CONSUMER.equals(expand)) {
-                        expandStatistics = newStatistics();
-                        expandMap.put(consumerDir.getName(), expandStatistics);
+        try {
+            StatisticsStore store = SimpleMonitorService.getInstance().getStatisticsStore();
+            // 方法 -> 汇总，方法 -> 消费方或提供方 -> 汇总
+            Map<String, Statistics> methodMap = new TreeMap<String, Statistics>();
+            Map<String, Map<String, Statistics>> expandMap = new HashMap<String, Map<String, Statistics>>();
+            for (StatisticsStore.Series series : store.getSeries(date, service)) {
+                Statistics statistics;
+                if (series.isAggregate()) {
+                    statistics = methodMap.get(series.getMethod());
+                    if (statistics == null) {
+                        statistics = new Statistics();
+                        methodMap.put(series.getMethod(), statistics);
                     }
-                    File[] providerDirs = consumerDir.listFiles();
-                    for (File providerDir : providerDirs) {
-                        if (MonitorService.PROVIDER.equals(expand)) {
-                            expandStatistics = newStatistics();
-                            expandMap.put(providerDir.getName(), expandStatistics);
-                        }
-                        appendStatistics(providerDir, statistics);
-                        if (expandStatistics != null) {
-                            appendStatistics(providerDir, expandStatistics);
-                        }
+                } else if (MonitorService.CONSUMER.equals(expand) || MonitorService.PROVIDER.equals(expand)) {
+                    Map<String, Statistics> nodes = expandMap.get(series.getMethod());
+                    if (nodes == null) {
+                        nodes = new TreeMap<String, Statistics>();
+                        expandMap.put(series.getMethod(), nodes);
                     }
+                    String node = MonitorService.CONSUMER.equals(expand) ? series.getConsumer() : series.getProvider();
+                    statistics = nodes.get(node);
+                    if (statistics == null) {
+                        statistics = new Statistics();
+                        nodes.put(node, statistics);
+                    }
+                } else {
+                    continue;
                 }
-                rows.add(toRow(methodDir.getName(), statistics));
-                if (expandMap != null && expandMap.size() > 0) {
-                    for (Map.Entry<String, long[]> entry : expandMap.entrySet()) {
+                appendStatistics(store, date, series, statistics);
+            }
+            for (Map.Entry<String, Statistics> method : methodMap.entrySet()) {
+                rows.add(toRow(method.getKey(), method.getValue()));
+                Map<String, Statistics> nodes = expandMap.get(method.getKey());
+                if (nodes != null && nodes.size() > 0) {
+                    for (Map.Entry<String, Statistics> entry : nodes.entrySet()) {
                         String node = MonitorService.CONSUMER.equals(expand) ? "&lt;--" : "--&gt;";
                         rows.add(toRow(" &nbsp;&nbsp;&nbsp;&nbsp; |" + node + " " + entry.getKey(), entry.getValue()));
                     }
                 }
             }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to read statistics of " + service + ", cause: " + e.getMessage(), e);
         }
         StringBuilder nav = new StringBuilder();
         nav.append("<a href=\"services.html\">Services</a> &gt; ");
@@ -133,27 +142,23 @@ public class StatisticsPageHandler implements PageHandler {
         }
         return new Page(nav.toString(), "Statistics (" + rows.size() + ")",
                 new String[] { "Method:", "Success", "Failure", "Avg Elapsed (ms)",
-                        "Max Elapsed (ms)", "Max Concurrent" }, rows);
-    }
-    
-    private long[] newStatistics() {
-        return new long[10];
+                        "Max Elapsed (ms)", "P99 Elapsed (ms)", "P999 Elapsed (ms)", "Max Concurrent" }, rows);
     }
     
-    private void appendStatistics(File providerDir, long[] statistics) {
-        statistics[0] += CountUtils.sum(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.SUCCESS));
-        statistics[1] += CountUtils.sum(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.SUCCESS));
-        statistics[2] += CountUtils.sum(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.FAILURE));
-        statistics[3] += CountUtils.sum(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.FAILURE));
-        statistics[4] += CountUtils.sum(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.ELAPSED));
-        statistics[5] += CountUtils.sum(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.ELAPSED));
-        statistics[6] = Math.max(statistics[6], CountUtils.max(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.MAX_ELAPSED)));
-        statistics[7] = Math.max(statistics[7], CountUtils.max(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.MAX_ELAPSED)));
-        statistics[8] = Math.max(statistics[8], CountUtils.max(new File(providerDir, MonitorService.CONSUMER + "." + MonitorService.MAX_CONCURRENT)));
-        statistics[9] = Math.max(statistics[9], CountUtils.max(new File(providerDir, MonitorService.PROVIDER + "." + MonitorService.MAX_CONCURRENT)));
+    private void appendStatistics(StatisticsStore store, String date, StatisticsStore.Series series, Statistics target) throws IOException {
+        long[] statistics = target.numbers;
+        int side = MonitorService.CONSUMER.equals(series.getSide()) ? 0 : 1;
+        statistics[side] += store.getDay(date, series, MonitorService.SUCCESS);
+        statistics[2 + side] += store.getDay(date, series, MonitorService.FAILURE);
+        statistics[4 + side] += store.getDay(date, series, MonitorService.ELAPSED);
+        statistics[6 + side] = Math.max(statistics[6 + side], store.getDay(date, series, MonitorService.MAX_ELAPSED));
+        statistics[8 + side] = Math.max(statistics[8 + side], store.getDay(date, series, MonitorService.MAX_CONCURRENT));
+        target.histograms[side].add(store.getHistogram(date, series));
     }
     
-    private List<String> toRow(String name, long[] statistics) {
+    private List<String> toRow(String name, Statistics target) {
+        long[] statistics = target.numbers;
+        LatencyHistogram[] histograms = target.histograms;
         List<String> row = new ArrayList<String>();
         row.add(name);
         row.add(String.valueOf(statistics[0]) + " --&gt; " + String.valueOf(statistics[1]));
@@ -161,8 +166,25 @@ public class StatisticsPageHandler implements PageHandler {
         row.add(String.valueOf(statistics[0] == 0 ? 0 : statistics[4] / statistics[0]) 
                 + " --&gt; " + String.valueOf(statistics[1] == 0 ? 0 : statistics[5] / statistics[1]));
         row.add(String.valueOf(statistics[6]) + " --&gt; " + String.valueOf(statistics[7]));
+        row.add(String.valueOf(percentile(histograms[0], 99, statistics[6])) + " --&gt; " + String.valueOf(percentile(histograms[1], 99, statistics[7])));
+        row.add(String.valueOf(percentile(histograms[0], 99.9, statistics[6])) + " --&gt; " + String.valueOf(percentile(histograms[1], 99.9, statistics[7])));
         row.add(String.valueOf(statistics[8]) + " --&gt; " + String.valueOf(statistics[9]));
         return row;
     }
 
+    // 直方图给出的是桶上界，不超过实际最大耗时
+    private long percentile(LatencyHistogram histogram, double percentile, long max) {
+        long value = histogram.getValueAtPercentile(percentile);
+        return max > 0 && value > max ? max : value;
+    }
+
+    // 0-1 成功数，2-3 失败数，4-5 总耗时，6-7 最大耗时，8-9 最大并发，各项依次为消费方、提供方
+    private static class Statistics {
+
+        private final long[] numbers = new long[10];
+
+        private final LatencyHistogram[] histograms = new LatencyHistogram[] {new LatencyHistogram(), new LatencyHistogram()};
+
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.monitor.MonitorService;
+
+/**
+ * StatisticsChartsTest
+ */
+public class StatisticsChartsTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File("target/statistics-charts-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void testRenderDirtyOnly() throws Exception {
+        Date time = new SimpleDateFormat("yyyyMMddHHmm").parse("201207031005");
+        StatisticsStore store = new StatisticsStore(new File(directory, "statistics"));
+        StatisticsCharts charts = new StatisticsCharts(store, new File(directory, "charts").getPath());
+        append(store, charts, time, "findPerson");
+        append(store, charts, time, "findAll");
+
+        Assert.assertEquals(Arrays.asList("findAll", "findPerson"), charts.render("20120703", "MemberService"));
+        File success = new File(charts.getChartDirectory("20120703", "MemberService", "findPerson"), MonitorService.SUCCESS + ".png");
+        Assert.assertTrue(success.exists());
+
+        // 没有新数据不重绘
+        success.setLastModified(1000);
+        charts.render("20120703", "MemberService");
+        Assert.assertEquals(1000, success.lastModified());
+
+        append(store, charts, new Date(time.getTime() + 60000), "findPerson");
+        charts.render("20120703", "MemberService");
+        Assert.assertTrue(success.lastModified() > 1000);
+
+        // 重启后图表晚于数据则不重绘
+        success.setLastModified(System.currentTimeMillis() + 60000);
+        long modified = success.lastModified();
+        charts = new StatisticsCharts(store, new File(directory, "charts").getPath());
+        charts.render("20120703", "MemberService");
+        Assert.assertEquals(modified, success.lastModified());
+        store.close();
+    }
+
+    private static void append(StatisticsStore store, StatisticsCharts charts, Date time, String method) throws Exception {
+        long[] values = new long[StatisticsStore.COLUMNS.length];
+        values[0] = 10;
+        values[2] = 30;
+        values[4] = 5;
+        store.append(time, MonitorService.CONSUMER, "MemberService", method, "10.20.153.11", "10.20.153.10", values, null);
+        charts.update(time, "MemberService", method);
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.monitor.simple;
+
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.alibaba.dubbo.monitor.LatencyHistogram;
+import com.alibaba.dubbo.monitor.MonitorService;
+
+/**
+ * StatisticsStoreTest
+ */
+public class StatisticsStoreTest {
+
+    private File directory;
+
+    @Before
+    public void setUp() {
+        directory = new File("target/statistics-store-" + System.nanoTime());
+    }
+
+    @After
+    public void tearDown() {
+        delete(directory);
+    }
+
+    @Test
+    public void testAppend() throws Exception {
+        Date time = new SimpleDateFormat("yyyyMMddHHmm").parse("201207031005");
+        LatencyHistogram fast = new LatencyHistogram();
+        fast.record(2, 10);
+        LatencyHistogram slow = new LatencyHistogram();
+        slow.record(300);
+        StatisticsStore store = new StatisticsStore(directory);
+        store.append(time, MonitorService.CONSUMER, "MemberService", "findPerson", "10.20.153.11", "10.20.153.10",
+                values(10, 1, 20, 2, 5, 3), fast);
+        store.append(time, MonitorService.CONSUMER, "MemberService", "findPerson", "10.20.153.11", "10.20.153.12",
+                values(1, 0, 300, 1, 300, 1), slow);
+        store.close();
+
+        store = new StatisticsStore(directory);
+        Assert.assertEquals("20120703", store.getDates().get(0));
+        List<StatisticsStore.Series> series = store.getSeries("20120703", "MemberService");
+        Assert.assertEquals(3, series.size());
+        Assert.assertEquals(0, store.getSeries("20120703", "OtherService").size());
+        StatisticsStore.Series aggregate = null;
+        for (StatisticsStore.Series s : series) {
+            if (s.isAggregate()) {
+                aggregate = s;
+            }
+        }
+        Assert.assertNotNull(aggregate);
+        long[] success = store.getMinutes("20120703", aggregate, MonitorService.SUCCESS);
+        Assert.assertEquals(StatisticsStore.MINUTES, success.length);
+        Assert.assertEquals(11, success[10 * 60 + 5]);
+        Assert.assertEquals(0, success[10 * 60 + 6]);
+        Assert.assertEquals(300, store.getMinutes("20120703", aggregate, MonitorService.MAX_ELAPSED)[10 * 60 + 5]);
+        Assert.assertTrue(store.getMinutes("20120703", aggregate, StatisticsStore.PERCENTILE)[10 * 60 + 5] >= 300);
+        Assert.assertEquals(11, store.getHours("201207", aggregate, MonitorService.SUCCESS)[2 * 24 + 10]);
+        Assert.assertEquals(11, store.getDay("20120703", aggregate, MonitorService.SUCCESS));
+        Assert.assertEquals(1, store.getDay("20120703", aggregate, MonitorService.FAILURE));
+        Assert.assertEquals(3, store.getDay("20120703", aggregate, MonitorService.MAX_CONCURRENT));
+        Assert.assertEquals(0, store.getDay("20120704", aggregate, MonitorService.SUCCESS));
+        LatencyHistogram histogram = store.getHistogram("20120703", aggregate);
+        Assert.assertEquals(11, histogram.getCount());
+        Assert.assertEquals(2, histogram.getValueAtPercentile(90));
+        Assert.assertTrue(store.getLastModified("20120703", "MemberService", "findPerson") > 0);
+
+        // 重新打开后追加，序列id保持不变
+        store.append(time, MonitorService.CONSUMER, "MemberService", "findPerson", "10.20.153.11", "10.20.153.10",
+                values(5, 0, 5, 1, 1, 1), null);
+        Assert.assertEquals(3, store.getSeries("20120703").size());
+        Assert.assertEquals(Arrays.asList(aggregate), store.getAggregateSeries("20120703", "MemberService"));
+        // 索引建立后当天新出现的汇总序列同步加入
+        store.append(time, MonitorService.PROVIDER, "MemberService", "findPerson", "10.20.153.11", "10.20.153.10",
+                values(1, 0, 1, 1, 1, 1), null);
+        Assert.assertEquals(2, store.getAggregateSeries("20120703", "MemberService").size());
+        Assert.assertEquals(0, store.getAggregateSeries("20120703", "OtherService").size());
+        Assert.assertEquals(16, store.getDay("20120703", aggregate, MonitorService.SUCCESS));
+        store.close();
+    }
+
+    @Test
+    public void testFileSizeFollowsDailySeries() throws Exception {
+        SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmm");
+        StatisticsStore store = new StatisticsStore(directory);
+        for (int i = 0; i < 100; i ++) {
+            store.append(format.parse("201207031005"), MonitorService.CONSUMER, "MemberService", "method" + i, "10.20.153.11", "10.20.153.10",
+                    values(1, 0, 1, 1, 1, 1), null);
+        }
+        // 次日只出现一个方法，数据文件按当天的序列编号，不随全局序列id增长
+        store.append(format.parse("201207041005"), MonitorService.CONSUMER, "MemberService", "method99", "10.20.153.11", "10.20.153.10",
+                values(7, 0, 1, 1, 1, 1), null);
+        store.close();
+
+        long blockBytes = StatisticsStore.COLUMNS.length * StatisticsStore.MINUTES * 8L;
+        Assert.assertTrue(new File(directory, "20120703/minute.dat").length() >= 200 * blockBytes);
+        Assert.assertTrue(new File(directory, "20120704/minute.dat").length() <= 64 * blockBytes);
+
+        store = new StatisticsStore(directory);
+        List<StatisticsStore.Series> aggregates = store.getAggregateSeries("20120704", "MemberService");
+        Assert.assertEquals(1, aggregates.size());
+        StatisticsStore.Series aggregate = aggregates.get(0);
+        Assert.assertEquals(7, store.getMinutes("20120704", aggregate, MonitorService.SUCCESS)[10 * 60 + 5]);
+        Assert.assertEquals(1, store.getMinutes("20120703", aggregate, MonitorService.SUCCESS)[10 * 60 + 5]);
+        Assert.assertEquals(1, store.getDay("20120703", aggregate, MonitorService.SUCCESS));
+        Assert.assertEquals(7, store.getDay("20120704", aggregate, MonitorService.SUCCESS));
+        Assert.assertEquals(8, store.getHours("201207", aggregate, MonitorService.SUCCESS)[2 * 24 + 10]
+                + store.getHours("201207", aggregate, MonitorService.SUCCESS)[3 * 24 + 10]);
+        store.close();
+    }
+
+    private static long[] values(long success, long failure, long elapsed, long concurrent, long maxElapsed, long maxConcurrent) {
+        long[] values = new long[StatisticsStore.COLUMNS.length];
+        values[0] = success;
+        values[1] = failure;
+        values[2] = elapsed;
+        values[3] = concurrent;
+        values[4] = maxElapsed;
+        values[5] = maxConcurrent;
+        return values;
+    }
+
+    private static void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+}
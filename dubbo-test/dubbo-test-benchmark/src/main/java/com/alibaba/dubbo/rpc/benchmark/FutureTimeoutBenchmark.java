@@ -0,0 +1,119 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.alibaba.dubbo.common.timer.HashedWheelTimer;
+import com.alibaba.dubbo.common.timer.Timeout;
+import com.alibaba.dubbo.common.timer.TimerTask;
+import com.alibaba.dubbo.common.utils.NamedThreadFactory;
+
+/**
+ * Compares the response timeout detection of the former DefaultFuture scan thread
+ * (walk every outstanding future every 30ms) with the hashed wheel timer, at 10k, 100k
+ * and 1M outstanding futures.
+ * <p>
+ * Usage: java com.alibaba.dubbo.rpc.benchmark.FutureTimeoutBenchmark [outstanding...]
+ */
+public class FutureTimeoutBenchmark {
+
+    private static final int SCAN_INTERVAL = 30;
+
+    private static final int ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[] { 10000, 100000, 1000000 } : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        for (int size : sizes) {
+            scan(size);
+            wheel(size);
+        }
+    }
+
+    private static void scan(int outstanding) {
+        Map<Long, long[]> futures = new ConcurrentHashMap<Long, long[]>();
+        long now = System.currentTimeMillis();
+        for (long id = 0; id < outstanding; id++) {
+            // {start, timeout}, none of them expires during the run.
+            futures.put(id, new long[] { now, 60 * 1000 });
+        }
+        long expired = 0;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < ROUNDS; round++) {
+            long begin = System.nanoTime();
+            for (long[] future : futures.values()) {
+                if (System.currentTimeMillis() - future[0] > future[1]) {
+                    expired++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - begin);
+        }
+        System.out.println(String.format("scan  outstanding=%-8d pass=%.3fms cpu=%.1f%% of one core (one pass per %dms)%s",
+                outstanding, best / 1e6, best / 1e4 / SCAN_INTERVAL, SCAN_INTERVAL, expired > 0 ? " !" : ""));
+    }
+
+    private static void wheel(int outstanding) throws Exception {
+        HashedWheelTimer timer = new HashedWheelTimer(new NamedThreadFactory("benchmark-timer", true),
+                10, TimeUnit.MILLISECONDS, 512);
+        TimerTask noop = new TimerTask() {
+            public void run(Timeout timeout) {
+            }
+        };
+        try {
+            timer.start();
+            Timeout[] timeouts = new Timeout[outstanding];
+            long begin = System.nanoTime();
+            for (int i = 0; i < outstanding; i++) {
+                timeouts[i] = timer.newTimeout(noop, 60, TimeUnit.SECONDS);
+            }
+            long schedule = System.nanoTime() - begin;
+
+            // measure the lateness of timeouts that really expire while the wheel is loaded.
+            final int samples = 1000;
+            final CountDownLatch latch = new CountDownLatch(samples);
+            final AtomicLong lateness = new AtomicLong();
+            for (int i = 0; i < samples; i++) {
+                final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100 + i % 200);
+                timer.newTimeout(new TimerTask() {
+                    public void run(Timeout timeout) {
+                        lateness.addAndGet(System.nanoTime() - deadline);
+                        latch.countDown();
+                    }
+                }, 100 + i % 200, TimeUnit.MILLISECONDS);
+            }
+            latch.await();
+
+            begin = System.nanoTime();
+            for (int i = 0; i < outstanding; i++) {
+                timeouts[i].cancel();
+            }
+            long cancel = System.nanoTime() - begin;
+            System.out.println(String.format("wheel outstanding=%-8d schedule=%.1fns/op cancel=%.1fns/op avg lateness=%.3fms",
+                    outstanding, (double) schedule / outstanding, (double) cancel / outstanding,
+                    lateness.get() / 1e6 / samples));
+        } finally {
+            timer.stop();
+        }
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.benchmark;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.AtomicPositiveInteger;
+import com.alibaba.dubbo.rpc.Invocation;
+import com.alibaba.dubbo.rpc.Invoker;
+import com.alibaba.dubbo.rpc.Result;
+import com.alibaba.dubbo.rpc.RpcException;
+import com.alibaba.dubbo.rpc.RpcInvocation;
+import com.alibaba.dubbo.rpc.cluster.LoadBalance;
+import com.alibaba.dubbo.rpc.cluster.loadbalance.RoundRobinLoadBalance;
+
+/**
+ * Compares the smooth weighted round robin with the former weighted round robin: cost of a
+ * selection and the longest run of consecutive picks of one invoker, over invokers of random
+ * weights between 1 and 100.
+ * <p>
+ * Selections run on one thread. The smooth round robin takes no lock, so concurrent callers of
+ * the same method do not serialize on it, but they may see a slightly less even sequence.
+ * <p>
+ * Usage: java com.alibaba.dubbo.rpc.benchmark.RoundRobinBenchmark [invokers...]
+ */
+public class RoundRobinBenchmark {
+
+    private static final int SELECTIONS = 1000000;
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = args.length == 0 ? new int[] { 10, 100 } : new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            sizes[i] = Integer.parseInt(args[i]);
+        }
+        Invocation invocation = new RpcInvocation("sayHello", new Class<?>[0], new Object[0]);
+        for (int size : sizes) {
+            List<Invoker<Object>> invokers = newInvokers(size);
+            for (int round = 0; round < 3; round++) {
+                run("legacy", new LegacyRoundRobinLoadBalance(), invokers, invocation, size);
+                run("smooth", new RoundRobinLoadBalance(), invokers, invocation, size);
+            }
+        }
+    }
+
+    private static void run(String name, LoadBalance loadBalance, List<Invoker<Object>> invokers,
+                            Invocation invocation, int size) {
+        URL url = invokers.get(0).getUrl();
+        Invoker<Object> last = null;
+        int run = 0;
+        int longestRun = 0;
+        long begin = System.nanoTime();
+        for (int i = 0; i < SELECTIONS; i++) {
+            Invoker<Object> selected = loadBalance.select(invokers, url, invocation);
+            run = selected == last ? run + 1 : 1;
+            longestRun = Math.max(longestRun, run);
+            last = selected;
+        }
+        long elapsed = System.nanoTime() - begin;
+        System.out.println(String.format("%-6s invokers=%-4d select=%.1fns longest run=%d",
+                name, size, (double) elapsed / SELECTIONS, longestRun));
+    }
+
+    private static List<Invoker<Object>> newInvokers(int size) {
+        Random random = new Random(size);
+        List<Invoker<Object>> invokers = new ArrayList<Invoker<Object>>(size);
+        for (int i = 0; i < size; i++) {
+            invokers.add(new WeightedInvoker(URL.valueOf("dubbo://10.0.0." + i + ":20880/DemoService?weight="
+                    + (1 + random.nextInt(100)))));
+        }
+        return invokers;
+    }
+
+    private static class WeightedInvoker implements Invoker<Object> {
+
+        private final URL url;
+
+        WeightedInvoker(URL url) {
+            this.url = url;
+        }
+
+        public Class<Object> getInterface() {
+            return Object.class;
+        }
+
+        public Result invoke(Invocation invocation) throws RpcException {
+            throw new UnsupportedOperationException();
+        }
+
+        public URL getUrl() {
+            return url;
+        }
+
+        public boolean isAvailable() {
+            return true;
+        }
+
+        public void destroy() {
+        }
+    }
+
+    /**
+     * the weighted round robin before the smooth one, kept here for comparison.
+     */
+    private static class LegacyRoundRobinLoadBalance extends RoundRobinLoadBalance {
+
+        private final Map<String, AtomicPositiveInteger> sequences = new LinkedHashMap<String, AtomicPositiveInteger>();
+
+        private static final class IntegerWrapper {
+
+            private int value;
+
+            IntegerWrapper(int value) {
+                this.value = value;
+            }
+        }
+
+        @Override
+        protected <T> Invoker<T> doSelect(List<Invoker<T>> invokers, URL url, Invocation invocation) {
+            String key = invokers.get(0).getUrl().getServiceKey() + "." + invocation.getMethodName();
+            int length = invokers.size();
+            int maxWeight = 0;
+            int minWeight = Integer.MAX_VALUE;
+            final LinkedHashMap<Invoker<T>, IntegerWrapper> invokerToWeightMap = new LinkedHashMap<Invoker<T>, IntegerWrapper>();
+            int weightSum = 0;
+            for (int i = 0; i < length; i++) {
+                int weight = getWeight(invokers.get(i), invocation);
+                maxWeight = Math.max(maxWeight, weight);
+                minWeight = Math.min(minWeight, weight);
+                if (weight > 0) {
+                    invokerToWeightMap.put(invokers.get(i), new IntegerWrapper(weight));
+                    weightSum += weight;
+                }
+            }
+            AtomicPositiveInteger sequence = sequences.get(key);
+            if (sequence == null) {
+                sequence = new AtomicPositiveInteger();
+                sequences.put(key, sequence);
+            }
+            int currentSequence = sequence.getAndIncrement();
+            if (maxWeight > 0 && minWeight < maxWeight) {
+                int mod = currentSequence % weightSum;
+                for (int i = 0; i < maxWeight; i++) {
+                    for (Map.Entry<Invoker<T>, IntegerWrapper> each : invokerToWeightMap.entrySet()) {
+                        final Invoker<T> k = each.getKey();
+                        final IntegerWrapper v = each.getValue();
+                        if (mod == 0 && v.value > 0) {
+                            return k;
+                        }
+                        if (v.value > 0) {
+                            v.value--;
+                            mod--;
+                        }
+                    }
+                }
+            }
+            return invokers.get(currentSequence % length);
+        }
+    }
+
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 1999-2011 Alibaba Group.
+ *  
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *  
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *  
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.dubbo.rpc.benchmark;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+
+import com.alibaba.dubbo.common.URL;
+import com.alibaba.dubbo.common.utils.NetUtils;
+import com.alibaba.dubbo.remoting.RemotingException;
+import com.alibaba.dubbo.remoting.exchange.ExchangeChannel;
+import com.alibaba.dubbo.remoting.exchange.ExchangeClient;
+import com.alibaba.dubbo.remoting.exchange.ExchangeServer;
+import com.alibaba.dubbo.remoting.exchange.Exchangers;
+import com.alibaba.dubbo.remoting.exchange.support.Replier;
+
+/**
+ * Compares the throughput and latency of transporters over loopback: one shared connection,
+ * concurrent callers sending a byte array that the server echoes back.
+ * <p>
+ * Usage: java com.alibaba.dubbo.rpc.benchmark.TransporterBenchmark [threads] [seconds] [payload bytes] [transporter...]
+ * <br>
+ * Defaults to 32 threads, 10 seconds, 1024 bytes, netty and netty4.
+ */
+public class TransporterBenchmark {
+
+    private static final int WARMUP_SECONDS = 3;
+
+    // latency samples kept per caller thread.
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 32;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int payload = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+        String[] transporters = args.length > 3 ? Arrays.copyOfRange(args, 3, args.length)
+                : new String[] { "netty", "netty4" };
+        for (String transporter : transporters) {
+            run(transporter, threads, seconds, payload);
+        }
+        System.exit(0);
+    }
+
+    private static void run(String transporter, int threads, int seconds, int payload) throws Exception {
+        int port = NetUtils.getAvailablePort();
+        URL url = URL.valueOf("exchange://127.0.0.1:" + port + "?transporter=" + transporter + "&timeout=10000");
+        ExchangeServer server = Exchangers.bind(url, new Replier<byte[]>() {
+            public Object reply(ExchangeChannel channel, byte[] request) throws RemotingException {
+                return request;
+            }
+        });
+        ExchangeClient client = Exchangers.connect(url);
+        try {
+            measure(client, threads, WARMUP_SECONDS, payload);
+            long[][] latencies = measure(client, threads, seconds, payload);
+            report(transporter, latencies, seconds);
+        } finally {
+            client.close();
+            server.close();
+        }
+    }
+
+    private static long[][] measure(final ExchangeClient client, int threads, int seconds, final int payload)
+            throws InterruptedException {
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final long[][] latencies = new long[threads][];
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            new Thread("TransporterBenchmark-" + i) {
+                public void run() {
+                    long[] samples = new long[1024];
+                    int count = 0;
+                    byte[] request = new byte[payload];
+                    try {
+                        long now;
+                        while ((now = System.nanoTime()) < deadline) {
+                            client.request(request).get();
+                            if (count == samples.length && count < MAX_SAMPLES) {
+                                samples = Arrays.copyOf(samples, count * 2);
+                            }
+                            if (count < samples.length) {
+                                samples[count++] = System.nanoTime() - now;
+                            }
+                        }
+                    } catch (RemotingException e) {
+                        e.printStackTrace();
+                    } finally {
+                        latencies[index] = Arrays.copyOf(samples, count);
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        return latencies;
+    }
+
+    private static void report(String transporter, long[][] latencies, int seconds) {
+        int total = 0;
+        for (long[] samples : latencies) {
+            total += samples.length;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        long sum = 0;
+        for (long[] samples : latencies) {
+            System.arraycopy(samples, 0, all, offset, samples.length);
+            offset += samples.length;
+            for (long sample : samples) {
+                sum += sample;
+            }
+        }
+        Arrays.sort(all);
+        if (total == 0) {
+            System.out.println(transporter + ": no request completed");
+            return;
+        }
+        System.out.println(String.format("%-8s tps=%-9d avg=%.3fms p50=%.3fms p99=%.3fms p999=%.3fms",
+                transporter, total / seconds, sum / 1e6 / total, all[total / 2] / 1e6,
+                all[(int) (total * 0.99)] / 1e6, all[(int) (total * 0.999)] / 1e6));
+    }
+
+}
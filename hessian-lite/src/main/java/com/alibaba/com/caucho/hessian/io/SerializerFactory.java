@@ -52,6 +52,7 @@ import java.io.*;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.management.*;
@@ -83,9 +84,12 @@ public class SerializerFactory extends AbstractSerializerFactory
   
   private Deserializer _hashMapDeserializer;
   private Deserializer _arrayListDeserializer;
-  private HashMap _cachedSerializerMap;
-  private HashMap _cachedDeserializerMap;
-  private HashMap _cachedTypeDeserializerMap;
+  private final ConcurrentHashMap _cachedSerializerMap
+    = new ConcurrentHashMap(8);
+  private final ConcurrentHashMap _cachedDeserializerMap
+    = new ConcurrentHashMap(8);
+  private final ConcurrentHashMap _cachedTypeDeserializerMap
+    = new ConcurrentHashMap(8);
 
   private boolean _isAllowNonSerializable;
 
@@ -160,14 +164,9 @@ public class SerializerFactory extends AbstractSerializerFactory
     if (serializer != null)
       return serializer;
 
-    if (_cachedSerializerMap != null) {
-      synchronized (_cachedSerializerMap) {
-	serializer = (Serializer) _cachedSerializerMap.get(cl);
-      }
-      
-      if (serializer != null)
-	return serializer;
-    }
+    serializer = (Serializer) _cachedSerializerMap.get(cl);
+    if (serializer != null)
+      return serializer;
 
     for (int i = 0;
 	 serializer == null && _factories != null && i < _factories.size();
@@ -232,12 +231,7 @@ public class SerializerFactory extends AbstractSerializerFactory
     if (serializer == null)
       serializer = getDefaultSerializer(cl);
 
-    if (_cachedSerializerMap == null)
-      _cachedSerializerMap = new HashMap(8);
-
-    synchronized (_cachedSerializerMap) {
-      _cachedSerializerMap.put(cl, serializer);
-    }
+    _cachedSerializerMap.put(cl, serializer);
 
     return serializer;
   }
@@ -280,14 +274,9 @@ public class SerializerFactory extends AbstractSerializerFactory
     if (deserializer != null)
       return deserializer;
 
-    if (_cachedDeserializerMap != null) {
-      synchronized (_cachedDeserializerMap) {
-	deserializer = (Deserializer) _cachedDeserializerMap.get(cl);
-      }
-      
-      if (deserializer != null)
-	return deserializer;
-    }
+    deserializer = (Deserializer) _cachedDeserializerMap.get(cl);
+    if (deserializer != null)
+      return deserializer;
 
 
     for (int i = 0;
@@ -326,12 +315,7 @@ public class SerializerFactory extends AbstractSerializerFactory
     else
       deserializer = getDefaultDeserializer(cl);
 
-    if (_cachedDeserializerMap == null)
-      _cachedDeserializerMap = new HashMap(8);
-
-    synchronized (_cachedDeserializerMap) {
-      _cachedDeserializerMap.put(cl, deserializer);
-    }
+    _cachedDeserializerMap.put(cl, deserializer);
 
     return deserializer;
   }
@@ -498,14 +482,9 @@ public class SerializerFactory extends AbstractSerializerFactory
 
     Deserializer deserializer;
     
-    if (_cachedTypeDeserializerMap != null) {
-      synchronized (_cachedTypeDeserializerMap) {
-	deserializer = (Deserializer) _cachedTypeDeserializerMap.get(type);
-      }
-
-      if (deserializer != null)
-	return deserializer;
-    }
+    deserializer = (Deserializer) _cachedTypeDeserializerMap.get(type);
+    if (deserializer != null)
+      return deserializer;
 
 
     deserializer = (Deserializer) _staticTypeMap.get(type);
@@ -531,14 +510,8 @@ public class SerializerFactory extends AbstractSerializerFactory
       }
     }
 
-    if (deserializer != null) {
-      if (_cachedTypeDeserializerMap == null)
-	_cachedTypeDeserializerMap = new HashMap(8);
-
-      synchronized (_cachedTypeDeserializerMap) {
-	_cachedTypeDeserializerMap.put(type, deserializer);
-      }
-    }
+    if (deserializer != null)
+      _cachedTypeDeserializerMap.put(type, deserializer);
 
     return deserializer;
   }